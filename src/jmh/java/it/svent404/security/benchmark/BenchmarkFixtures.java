@@ -0,0 +1,88 @@
+package it.svent404.security.benchmark;
+
+import it.svent404.security.properties.SsoSecurityProperties;
+import it.svent404.security.repository.InMemoryTokenRepository;
+import it.svent404.security.service.LocalJwtService;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+final class BenchmarkFixtures {
+
+    static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret";
+
+    private BenchmarkFixtures() {
+    }
+
+    static SsoSecurityProperties properties() {
+        SsoSecurityProperties.Jwt jwt = new SsoSecurityProperties.Jwt();
+        jwt.setSecret(SECRET);
+
+        SsoSecurityProperties props = new SsoSecurityProperties();
+        props.setMode("local");
+        props.setJwt(jwt);
+        return props;
+    }
+
+    static LocalJwtService localJwtService(SsoSecurityProperties props, Clock clock) {
+        return new LocalJwtService(props, clock, new InMemoryTokenRepository(clock));
+    }
+
+    static Authentication user(int roleCount) {
+        List<SimpleGrantedAuthority> authorities = new ArrayList<>(roleCount);
+        for (int i = 0; i < roleCount; i++) {
+            authorities.add(new SimpleGrantedAuthority("ROLE_APP_PERMISSION_" + i));
+        }
+        return new UsernamePasswordAuthenticationToken("benchmark-user", null, authorities);
+    }
+
+    static String tamper(String token) {
+        char last = token.charAt(token.length() - 1);
+        return token.substring(0, token.length() - 1) + (last == 'A' ? 'B' : 'A');
+    }
+
+    static Clock pastClock(Duration offset) {
+        return Clock.offset(Clock.systemUTC(), offset.negated());
+    }
+
+    /**
+     * Claims shaped like a Keycloak access token of a user with a typical realm and several clients.
+     */
+    static Jwt keycloakJwt(int realmRoles, int clients, int rolesPerClient) {
+        Map<String, Object> resourceAccess = new LinkedHashMap<>();
+        for (int c = 0; c < clients; c++) {
+            resourceAccess.put("client-" + c, Map.of("roles", roles("client-" + c + "-role-", rolesPerClient)));
+        }
+
+        Instant now = Instant.now();
+        return Jwt.withTokenValue("benchmark")
+                .header("alg", "RS256")
+                .header("kid", "benchmark-kid")
+                .subject("6f1c2a0e-4d1b-4a53-9d0c-8f3b2e6a7c11")
+                .issuer("http://localhost:9090/realms/benchmark")
+                .issuedAt(now)
+                .expiresAt(now.plusSeconds(300))
+                .claim("preferred_username", "benchmark-user")
+                .claim("scope", "openid profile email offline_access")
+                .claim("realm_access", Map.of("roles", roles("realm-role-", realmRoles)))
+                .claim("resource_access", resourceAccess)
+                .build();
+    }
+
+    private static List<String> roles(String prefix, int count) {
+        List<String> roles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            roles.add(prefix + i);
+        }
+        return roles;
+    }
+}
@@ -0,0 +1,75 @@
+package it.svent404.security.benchmark;
+
+import it.svent404.security.properties.SsoSecurityProperties;
+import it.svent404.security.service.LocalJwtService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Default versus compact token profile for the same user. The resulting {@code Authorization}
+ * header sizes are listed in the README next to the compact profile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+public class CompactTokenBenchmark {
+
+    @Param({"default", "compact"})
+    String profile;
+
+    @Param({"2", "20"})
+    int roleCount;
+
+    private LocalJwtService service;
+    private Authentication user;
+    private String token;
+
+    // generate() fills the refresh token store, so each iteration starts from an empty one
+    @Setup(Level.Iteration)
+    public void setup() {
+        user = BenchmarkFixtures.user(roleCount);
+
+        SsoSecurityProperties props = BenchmarkFixtures.properties();
+        if (profile.equals("compact")) {
+            List<String> dictionary = new ArrayList<>();
+            for (GrantedAuthority authority : user.getAuthorities()) {
+                dictionary.add(authority.getAuthority());
+            }
+            props.getJwt().getCompact().setEnabled(true);
+            props.getJwt().getCompact().setRoles(dictionary);
+        }
+
+        service = BenchmarkFixtures.localJwtService(props, Clock.systemUTC());
+        token = service.generate(user).accessToken();
+    }
+
+    @Benchmark
+    public String generate() {
+        return service.generate(user).accessToken();
+    }
+
+    @Benchmark
+    public Authentication toAuthentication() {
+        return service.toAuthentication(token);
+    }
+}
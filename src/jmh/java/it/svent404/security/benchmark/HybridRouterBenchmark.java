@@ -0,0 +1,87 @@
+package it.svent404.security.benchmark;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import it.svent404.security.key.SigningKeyRing;
+import it.svent404.security.metrics.SsoMetrics;
+import it.svent404.security.properties.SsoSecurityProperties;
+import it.svent404.security.service.HybridTokenRouter;
+import it.svent404.security.service.LocalJwtService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-request cost {@code hybrid} mode adds in front of verification: routing a local
+ * token (header only) and an IdP token (header and {@code iss}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HybridRouterBenchmark {
+
+    private static final String IDP_ISSUER = "https://idp.example/realms/benchmark";
+
+    private HybridTokenRouter router;
+    private String localToken;
+    private String idpToken;
+
+    @Setup
+    public void setup() throws JOSEException {
+        SsoSecurityProperties props = BenchmarkFixtures.properties();
+        LocalJwtService service = BenchmarkFixtures.localJwtService(props, Clock.systemUTC());
+        localToken = service.generate(BenchmarkFixtures.user(5)).accessToken();
+
+        // HMAC keys all share one kid, so a ring built from the same properties knows it
+        SigningKeyRing keyRing = SigningKeyRing.from(props.getJwt(), Clock.systemUTC());
+        router = new HybridTokenRouter(keyRing, List.of(IDP_ISSUER), SsoMetrics.NOOP);
+
+        RSAKey key = new RSAKeyGenerator(2048).keyID("stub-key").generate();
+        SignedJWT jwt = new SignedJWT(
+                new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(),
+                new JWTClaimsSet.Builder()
+                        .issuer(IDP_ISSUER)
+                        .subject("benchmark-user")
+                        .claim("preferred_username", "benchmark-user")
+                        .claim("realm_access", Map.of("roles", List.of("user", "admin", "auditor")))
+                        .issueTime(new Date())
+                        .expirationTime(Date.from(Instant.now().plusSeconds(3600)))
+                        .build()
+        );
+        jwt.sign(new RSASSASigner(key));
+        idpToken = jwt.serialize();
+    }
+
+    @Benchmark
+    public HybridTokenRouter.Route routeLocal() {
+        return router.route(localToken);
+    }
+
+    @Benchmark
+    public HybridTokenRouter.Route routeIdp() {
+        return router.route(idpToken);
+    }
+}
@@ -0,0 +1,83 @@
+package it.svent404.security.benchmark;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import it.svent404.security.key.CachingJwkSource;
+import it.svent404.security.metrics.SsoMetrics;
+import it.svent404.security.properties.SsoSecurityProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding an IdP token through the cached JWK Set served by {@link StubJwksServer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwksDecoderBenchmark {
+
+    private StubJwksServer idp;
+    private JwtDecoder decoder;
+    private String token;
+
+    @Setup
+    public void setup() throws IOException, JOSEException {
+        RSAKey key = new RSAKeyGenerator(2048).keyID("stub-key").generate();
+        idp = new StubJwksServer(new JWKSet(key));
+
+        CachingJwkSource source = CachingJwkSource.from(
+                idp.uri(), new SsoSecurityProperties.Jwks(), Clock.systemUTC(), SsoMetrics.NOOP);
+        decoder = NimbusJwtDecoder.withJwkSource(source).build();
+
+        SignedJWT jwt = new SignedJWT(
+                new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(),
+                new JWTClaimsSet.Builder()
+                        .subject("benchmark-user")
+                        .issueTime(new Date())
+                        .expirationTime(Date.from(Instant.now().plusSeconds(3600)))
+                        .build()
+        );
+        jwt.sign(new RSASSASigner(key));
+        token = jwt.serialize();
+
+        decoder.decode(token);
+    }
+
+    @TearDown
+    public void tearDown() {
+        idp.close();
+    }
+
+    @Benchmark
+    public Jwt decode() {
+        return decoder.decode(token);
+    }
+}
@@ -0,0 +1,52 @@
+package it.svent404.security.benchmark;
+
+import it.svent404.security.service.JwtConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtConverterBenchmark {
+
+    /**
+     * realm roles / clients / roles per client
+     */
+    @Param({"5/1/3", "30/8/15"})
+    String claimShape;
+
+    private JwtConverter converter;
+    private Jwt jwt;
+
+    @Setup
+    public void setup() {
+        String[] shape = claimShape.split("/");
+        converter = new JwtConverter("preferred_username", "client-0");
+        jwt = BenchmarkFixtures.keycloakJwt(
+                Integer.parseInt(shape[0]),
+                Integer.parseInt(shape[1]),
+                Integer.parseInt(shape[2])
+        );
+    }
+
+    @Benchmark
+    public AbstractAuthenticationToken convert() {
+        return converter.convert(jwt);
+    }
+}
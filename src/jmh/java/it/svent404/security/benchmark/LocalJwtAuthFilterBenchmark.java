@@ -0,0 +1,77 @@
+package it.svent404.security.benchmark;
+
+import it.svent404.security.filter.LocalJwtAuthFilter;
+import it.svent404.security.service.LocalJwtService;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocalJwtAuthFilterBenchmark {
+
+    private LocalJwtAuthFilter filter;
+    private String validHeader;
+    private String tamperedHeader;
+
+    @Setup
+    public void setup() {
+        LocalJwtService service = BenchmarkFixtures.localJwtService(BenchmarkFixtures.properties(), Clock.systemUTC());
+        filter = new LocalJwtAuthFilter(service);
+
+        String token = service.generate(BenchmarkFixtures.user(5)).accessToken();
+        validHeader = "Bearer " + token;
+        tamperedHeader = "Bearer " + BenchmarkFixtures.tamper(token);
+    }
+
+    @Benchmark
+    public int authenticatedRequest() throws ServletException, IOException {
+        return run(validHeader);
+    }
+
+    @Benchmark
+    public int rejectedRequest() throws ServletException, IOException {
+        return run(tamperedHeader);
+    }
+
+    @Benchmark
+    public int anonymousRequest() throws ServletException, IOException {
+        return run(null);
+    }
+
+    private int run(String authorization) throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/orders");
+        request.setServletPath("/api/orders");
+        if (authorization != null) {
+            request.addHeader("Authorization", authorization);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        try {
+            filter.doFilter(request, response, new MockFilterChain());
+            return response.getStatus();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package it.svent404.security.benchmark;
+
+import it.svent404.security.model.response.IntrospectionResponse;
+import it.svent404.security.model.response.TokenResponse;
+import it.svent404.security.model.response.UserInfoResponse;
+import it.svent404.security.properties.SsoSecurityProperties;
+import it.svent404.security.service.LocalJwtService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+public class LocalJwtServiceBenchmark {
+
+    @Param({"2", "20"})
+    int roleCount;
+
+    private LocalJwtService service;
+    private Authentication user;
+    private String valid;
+    private String expired;
+    private String tampered;
+    private String revoked;
+
+    // generate() fills the refresh token store, so each iteration starts from an empty one
+    @Setup(Level.Iteration)
+    public void setup() {
+        SsoSecurityProperties props = BenchmarkFixtures.properties();
+        service = BenchmarkFixtures.localJwtService(props, Clock.systemUTC());
+        user = BenchmarkFixtures.user(roleCount);
+
+        valid = service.generate(user).accessToken();
+        tampered = BenchmarkFixtures.tamper(valid);
+        // another subject: a token for the same user and second would equal valid
+        revoked = service.generate(new UsernamePasswordAuthenticationToken(
+                "revoked-user", null, user.getAuthorities())).accessToken();
+        service.invalidate(revoked);
+
+        LocalJwtService past = BenchmarkFixtures.localJwtService(props, BenchmarkFixtures.pastClock(Duration.ofDays(1)));
+        expired = past.generate(user).accessToken();
+    }
+
+    @Benchmark
+    public TokenResponse generate() {
+        return service.generate(user);
+    }
+
+    @Benchmark
+    public Authentication toAuthenticationValid() {
+        return service.toAuthentication(valid);
+    }
+
+    @Benchmark
+    public String toAuthenticationName() {
+        return service.toAuthentication(valid).getName();
+    }
+
+    @Benchmark
+    public UserInfoResponse userInfo() {
+        return UserInfoResponse.from(service.toAuthentication(valid));
+    }
+
+    @Benchmark
+    public boolean validateValid() {
+        return service.validate(valid);
+    }
+
+    @Benchmark
+    public boolean validateExpired() {
+        return service.validate(expired);
+    }
+
+    @Benchmark
+    public boolean validateTampered() {
+        return service.validate(tampered);
+    }
+
+    @Benchmark
+    public boolean validateRevoked() {
+        return service.validate(revoked);
+    }
+
+    @Benchmark
+    public IntrospectionResponse introspect() {
+        return service.introspect(valid);
+    }
+}
@@ -0,0 +1,83 @@
+package it.svent404.security.benchmark;
+
+import it.svent404.security.cache.ExpiringCache;
+import it.svent404.security.metrics.SsoMetrics;
+import it.svent404.security.service.CachingOpaqueTokenIntrospector;
+import it.svent404.security.service.ClaimAuthorityPlan;
+import it.svent404.security.service.OpaqueTokenPrincipalConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
+import org.springframework.security.oauth2.server.resource.introspection.SpringOpaqueTokenIntrospector;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Introspecting an opaque token against {@link StubIntrospectionServer}: every call remote
+ * versus served from the result cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpaqueIntrospectionBenchmark {
+
+    private static final String TOKEN = "opaque-benchmark-token";
+
+    private StubIntrospectionServer idp;
+    private SpringOpaqueTokenIntrospector remote;
+    private CachingOpaqueTokenIntrospector cached;
+
+    @Setup
+    public void setup() throws IOException {
+        idp = new StubIntrospectionServer();
+        idp.activate(TOKEN, Map.of(
+                "sub", "benchmark-user",
+                "exp", System.currentTimeMillis() / 1000 + 3600,
+                "scope", "openid profile",
+                "realm_access", Map.of("roles", List.of("user", "admin"))
+        ));
+
+        remote = SpringOpaqueTokenIntrospector.withIntrospectionUri(idp.uri())
+                .clientId("benchmark")
+                .clientSecret("benchmark")
+                .build();
+        remote.setAuthenticationConverter(new OpaqueTokenPrincipalConverter(null, ClaimAuthorityPlan.defaults(null)));
+
+        Clock clock = Clock.systemUTC();
+        cached = new CachingOpaqueTokenIntrospector(remote, new ExpiringCache<>(10_000, clock),
+                new ExpiringCache<>(1_000, clock), clock,
+                Duration.ofMinutes(5), Duration.ofSeconds(10), SsoMetrics.NOOP);
+    }
+
+    @TearDown
+    public void tearDown() {
+        idp.close();
+    }
+
+    @Benchmark
+    public OAuth2AuthenticatedPrincipal remote() {
+        return remote.introspect(TOKEN);
+    }
+
+    @Benchmark
+    public OAuth2AuthenticatedPrincipal cached() {
+        return cached.introspect(TOKEN);
+    }
+}
@@ -0,0 +1,59 @@
+package it.svent404.security.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start of a servlet context with the starter in local mode: every fork refreshes one
+ * context in a fresh JVM, so the score includes class loading and key generation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+public class StartupBenchmark {
+
+    @Param({"HS256", "RS256"})
+    public String algorithm;
+
+    @Benchmark
+    public int refresh() {
+        try (AnnotationConfigWebApplicationContext context = new AnnotationConfigWebApplicationContext()) {
+            context.setServletContext(new MockServletContext());
+            context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("sso", Map.of(
+                    "sso.enabled", "true",
+                    "sso.mode", "local",
+                    "sso.jwt.algorithm", algorithm,
+                    "sso.jwt.generate-keys", "true",
+                    "sso.jwt.secret", BenchmarkFixtures.SECRET)));
+            context.register(Application.class);
+            context.refresh();
+            return context.getBeanDefinitionCount();
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @EnableAutoConfiguration
+    @EnableWebMvc
+    static class Application {
+    }
+}
@@ -0,0 +1,110 @@
+package it.svent404.security.benchmark;
+
+import com.nimbusds.jose.util.JSONObjectUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loopback RFC 7662 introspection endpoint, standing in for the IdP. Registered tokens are
+ * reported active with their claims, anything else as inactive; availability and response
+ * delay can be changed while it runs.
+ */
+public final class StubIntrospectionServer implements AutoCloseable {
+
+    public static final String PATH = "/protocol/openid-connect/token/introspect";
+
+    private final HttpServer server;
+    private final Map<String, Map<String, Object>> activeTokens = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile boolean available = true;
+    private volatile long delayMillis;
+
+    public StubIntrospectionServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(PATH, this::handle);
+        server.start();
+    }
+
+    public String uri() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + PATH;
+    }
+
+    public void activate(String token, Map<String, Object> claims) {
+        activeTokens.put(token, claims);
+    }
+
+    public void deactivate(String token) {
+        activeTokens.remove(token);
+    }
+
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    public void setDelayMillis(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    public int requestCount() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (exchange) {
+            if (delayMillis > 0) {
+                Thread.sleep(delayMillis);
+            }
+            if (!available) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            String token = tokenParameter(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            Map<String, Object> claims = token != null ? activeTokens.get(token) : null;
+            Map<String, Object> response = claims != null
+                    ? withActive(claims)
+                    : Map.of("active", false);
+
+            byte[] payload = JSONObjectUtils.toJSONString(response).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, payload.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(payload);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Map<String, Object> withActive(Map<String, Object> claims) {
+        Map<String, Object> response = new HashMap<>(claims);
+        response.put("active", true);
+        return response;
+    }
+
+    private static String tokenParameter(String form) {
+        for (String pair : form.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals("token")) {
+                return URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,80 @@
+package it.svent404.security.benchmark;
+
+import com.nimbusds.jose.jwk.JWKSet;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loopback HTTP server publishing a JWK Set, standing in for the IdP's certs endpoint. The key
+ * set, availability and response delay can be changed while it runs, to reproduce rotations,
+ * outages and slow responses.
+ */
+public final class StubJwksServer implements AutoCloseable {
+
+    public static final String PATH = "/protocol/openid-connect/certs";
+
+    private final HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile byte[] body;
+    private volatile boolean available = true;
+    private volatile long delayMillis;
+
+    public StubJwksServer(JWKSet keys) throws IOException {
+        setKeys(keys);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(PATH, this::handle);
+        server.start();
+    }
+
+    public String uri() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + PATH;
+    }
+
+    public void setKeys(JWKSet keys) {
+        body = keys.toPublicJWKSet().toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    public void setDelayMillis(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    public int requestCount() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (exchange) {
+            if (delayMillis > 0) {
+                Thread.sleep(delayMillis);
+            }
+            if (!available) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            byte[] payload = body;
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, payload.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(payload);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
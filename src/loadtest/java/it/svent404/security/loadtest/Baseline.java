@@ -0,0 +1,64 @@
+package it.svent404.security.loadtest;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Figures of an earlier run on the same machine, which the relative limits of {@link Thresholds}
+ * are measured against: {@code <mode>.throughput}, {@code <mode>.p99-millis} and
+ * {@code <mode>.allocation-kb}. The file belongs to the machine and is not committed.
+ */
+final class Baseline {
+
+    private final Properties figures;
+
+    private Baseline(Properties figures) {
+        this.figures = figures;
+    }
+
+    static Baseline empty() {
+        return new Baseline(new Properties());
+    }
+
+    static Baseline load(Path file) throws IOException {
+        Properties figures = new Properties();
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file)) {
+                figures.load(reader);
+            }
+        }
+        return new Baseline(figures);
+    }
+
+    boolean covers(String mode) {
+        return figures.containsKey(mode + ".throughput");
+    }
+
+    double get(String mode, String name) {
+        return Double.parseDouble(figures.getProperty(mode + "." + name));
+    }
+
+    void record(ModeReport report) {
+        String mode = report.mode();
+        figures.setProperty(mode + ".throughput", format(report.throughput()));
+        figures.setProperty(mode + ".p99-millis", format(report.total().p99Millis()));
+        figures.setProperty(mode + ".allocation-kb", format(report.allocatedKbPerRequest()));
+    }
+
+    void save(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            figures.store(writer, "Load test baseline for this machine, see src/loadtest/thresholds.properties");
+        }
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+}
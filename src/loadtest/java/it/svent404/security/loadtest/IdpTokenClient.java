@@ -0,0 +1,69 @@
+package it.svent404.security.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tokens from the {@link StubIdentityProvider}, over loopback HTTP like a real client.
+ */
+final class IdpTokenClient implements TokenClient {
+
+    private final HttpClient http;
+    private final StubIdentityProvider idp;
+
+    IdpTokenClient(HttpClient http, StubIdentityProvider idp) {
+        this.http = http;
+        this.idp = idp;
+    }
+
+    @Override
+    public Tokens login(String username) {
+        HttpResponse<String> response = post(idp.tokenUri(), "grant_type=password&client_id="
+                + StubIdentityProvider.CLIENT_ID + "&username=" + encode(username) + "&password=" + encode(username));
+        return tokens(response);
+    }
+
+    @Override
+    public Tokens refresh(Tokens tokens) {
+        return tokens(post(idp.tokenUri(), "grant_type=refresh_token&client_id="
+                + StubIdentityProvider.CLIENT_ID + "&refresh_token=" + encode(tokens.refreshToken())));
+    }
+
+    @Override
+    public boolean logout(Tokens tokens) {
+        return post(idp.logoutUri(), "client_id=" + StubIdentityProvider.CLIENT_ID
+                + "&refresh_token=" + encode(tokens.refreshToken())).statusCode() == 204;
+    }
+
+    private HttpResponse<String> post(String uri, String form) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(uri))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+        try {
+            return http.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (IOException ex) {
+            throw new IllegalStateException("IdP request failed", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", ex);
+        }
+    }
+
+    private static Tokens tokens(HttpResponse<String> response) {
+        if (response.statusCode() != 200) {
+            return null;
+        }
+        return new Tokens(TokenClient.member(response.body(), "access_token"),
+                TokenClient.member(response.body(), "refresh_token"));
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,67 @@
+package it.svent404.security.loadtest;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Every latency one virtual user recorded during a phase, per operation. Confined to that
+ * user's thread; logs are merged once the phase is over.
+ */
+final class LatencyLog {
+
+    private final long[][] latencies = new long[Operation.values().length][1024];
+    private final int[] counts = new int[Operation.values().length];
+    private final int[] errors = new int[Operation.values().length];
+
+    void record(Operation operation, long nanos, boolean ok) {
+        int i = operation.ordinal();
+        if (counts[i] == latencies[i].length) {
+            latencies[i] = Arrays.copyOf(latencies[i], counts[i] * 2);
+        }
+        latencies[i][counts[i]++] = nanos;
+        if (!ok) {
+            errors[i]++;
+        }
+    }
+
+    /**
+     * The statistics of {@code operation} over all {@code logs}, or of every operation if it
+     * is {@code null}.
+     */
+    static Stats merge(List<LatencyLog> logs, Operation operation) {
+        int count = 0;
+        int errorCount = 0;
+        for (LatencyLog log : logs) {
+            for (Operation op : Operation.values()) {
+                if (operation == null || op == operation) {
+                    count += log.counts[op.ordinal()];
+                    errorCount += log.errors[op.ordinal()];
+                }
+            }
+        }
+
+        long[] all = new long[count];
+        int n = 0;
+        for (LatencyLog log : logs) {
+            for (Operation op : Operation.values()) {
+                if (operation == null || op == operation) {
+                    System.arraycopy(log.latencies[op.ordinal()], 0, all, n, log.counts[op.ordinal()]);
+                    n += log.counts[op.ordinal()];
+                }
+            }
+        }
+        Arrays.sort(all);
+        return new Stats(count, errorCount, percentile(all, 0.50), percentile(all, 0.99));
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    record Stats(int count, int errors, double p50Millis, double p99Millis) {
+    }
+}
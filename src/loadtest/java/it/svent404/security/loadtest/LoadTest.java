@@ -0,0 +1,191 @@
+package it.svent404.security.loadtest;
+
+import com.sun.management.ThreadMXBean;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.lang.management.ManagementFactory;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end load test: boots {@link SampleApplication} once per {@code sso.mode} and drives
+ * it with closed-loop virtual users, then compares the measured phase against the thresholds
+ * file. Exits with status 1 when a threshold is crossed, which fails {@code mvn -P loadtest
+ * verify}. Runs offline: the IdP is a {@link StubIdentityProvider} on the loopback interface.
+ *
+ * <p>Relative limits are checked against the {@link Baseline} file. A mode the baseline does not
+ * cover yet is recorded in it instead, as is every mode when {@code loadtest.update-baseline}
+ * is set.
+ *
+ * <p>Settings are system properties: {@code loadtest.modes} (comma separated),
+ * {@code loadtest.users}, {@code loadtest.warmup-seconds}, {@code loadtest.duration-seconds},
+ * {@code loadtest.thresholds}, {@code loadtest.baseline}, {@code loadtest.update-baseline}
+ * and {@code loadtest.result}.
+ */
+public final class LoadTest {
+
+    private static final String LOCAL_SECRET = "loadtest-secret-loadtest-secret-loadtest-secret";
+    private static final long IDP_TOKEN_TTL_SECONDS = 300;
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> modes = List.of(System.getProperty("loadtest.modes", "local,oauth2,hybrid").split(","));
+        int users = Integer.getInteger("loadtest.users", 16);
+        long warmupSeconds = Long.getLong("loadtest.warmup-seconds", 10);
+        long durationSeconds = Long.getLong("loadtest.duration-seconds", 20);
+        Path thresholdsFile = Path.of(System.getProperty("loadtest.thresholds", "src/loadtest/thresholds.properties"));
+        Path baselineFile = Path.of(System.getProperty("loadtest.baseline", "src/loadtest/baseline.properties"));
+        boolean updateBaseline = Boolean.getBoolean("loadtest.update-baseline");
+        Path resultFile = Path.of(System.getProperty("loadtest.result", "target/loadtest/loadtest-result.json"));
+
+        Path userFile = userFile(users);
+        List<ModeReport> reports = new ArrayList<>();
+        try (StubIdentityProvider idp = new StubIdentityProvider(IDP_TOKEN_TTL_SECONDS)) {
+            for (String mode : modes) {
+                System.out.printf("Running %s mode: %d users, %ds warmup, %ds measured%n",
+                        mode.trim(), users, warmupSeconds, durationSeconds);
+                reports.add(run(mode.trim(), users, warmupSeconds, durationSeconds, idp, userFile));
+            }
+        } finally {
+            Files.deleteIfExists(userFile);
+        }
+
+        System.out.printf("%n%-8s %-9s %9s %7s %9s %9s%n", "mode", "operation", "requests", "errors", "p50 ms", "p99 ms");
+        reports.forEach(report -> report.rows().forEach(System.out::println));
+
+        Files.createDirectories(resultFile.toAbsolutePath().getParent());
+        Files.writeString(resultFile, "[" + String.join(",\n", reports.stream().map(ModeReport::toJson).toList()) + "]\n");
+        System.out.println("\nResults written to " + resultFile);
+
+        Thresholds thresholds = Thresholds.load(thresholdsFile);
+        // recalibrating: the old figures may come from another machine, so they are not checked
+        Baseline baseline = updateBaseline ? Baseline.empty() : Baseline.load(baselineFile);
+        Baseline recorded = Baseline.load(baselineFile);
+        List<String> violations = new ArrayList<>();
+        List<String> newModes = new ArrayList<>();
+        for (ModeReport report : reports) {
+            if (!baseline.covers(report.mode())) {
+                recorded.record(report);
+                newModes.add(report.mode());
+            }
+            violations.addAll(thresholds.violations(report, baseline));
+        }
+        if (!newModes.isEmpty()) {
+            recorded.save(baselineFile);
+            System.out.println("\nBaseline for " + String.join(", ", newModes) + " written to " + baselineFile
+                    + "; relative limits apply to these modes from the next run");
+        }
+        if (!violations.isEmpty()) {
+            System.out.println("\nThresholds crossed (" + thresholdsFile + "):");
+            violations.forEach(violation -> System.out.println("  " + violation));
+            System.exit(1);
+        }
+        System.out.println("All thresholds met (" + thresholdsFile + ")");
+    }
+
+    private static ModeReport run(String mode, int userCount, long warmupSeconds, long durationSeconds,
+                                  StubIdentityProvider idp, Path userFile) throws Exception {
+        try (SampleApplication app = SampleApplication.start(properties(mode, idp, userFile));
+             HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()) {
+
+            TokenClient local = new LocalTokenClient(app);
+            TokenClient remote = new IdpTokenClient(http, idp);
+            List<VirtualUser> users = new ArrayList<>();
+            for (int i = 0; i < userCount; i++) {
+                TokenClient tokens = switch (mode) {
+                    case "local" -> local;
+                    case "oauth2" -> remote;
+                    case "hybrid" -> i % 2 == 0 ? local : remote;
+                    default -> throw new IllegalArgumentException("Unknown mode " + mode);
+                };
+                users.add(new VirtualUser(username(i), tokens, app, i));
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(userCount, Thread.ofPlatform()
+                    .name("loadtest-user-", 0)
+                    .factory());
+            try {
+                phase(executor, users, warmupSeconds);
+
+                long allocatedBefore = allocatedBytes();
+                long start = System.nanoTime();
+                List<LatencyLog> logs = phase(executor, users, durationSeconds);
+                long elapsed = System.nanoTime() - start;
+                return ModeReport.of(mode, logs, elapsed, allocatedBytes() - allocatedBefore);
+            } finally {
+                executor.shutdownNow();
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private static List<LatencyLog> phase(ExecutorService executor, List<VirtualUser> users, long seconds)
+            throws InterruptedException, ExecutionException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<LatencyLog>> running = new ArrayList<>();
+        for (VirtualUser user : users) {
+            running.add(executor.submit(() -> user.runUntil(deadline)));
+        }
+        List<LatencyLog> logs = new ArrayList<>();
+        for (Future<LatencyLog> log : running) {
+            logs.add(log.get());
+        }
+        return logs;
+    }
+
+    private static Map<String, Object> properties(String mode, StubIdentityProvider idp, Path userFile) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("sso.enabled", "true");
+        properties.put("sso.mode", mode);
+        // one client address for every user: the limits would measure the limiter, not the auth path
+        properties.put("sso.rate-limit.enabled", "false");
+
+        if (!mode.equals("oauth2")) {
+            properties.put("sso.jwt.secret", LOCAL_SECRET);
+            properties.put("sso.users.file", userFile.toString());
+            properties.put("sso.users.reload-interval-seconds", "0");
+        }
+        if (!mode.equals("local")) {
+            properties.put("sso.jwt.auth.converter.resource-id", StubIdentityProvider.CLIENT_ID);
+            properties.put("sso.jwt.auth.converter.principle-attribute", "preferred_username");
+            properties.put("sso.hybrid.oauth2-issuers", idp.issuer());
+            properties.put("spring.security.oauth2.resourceserver.jwt.jwk-set-uri", idp.jwksUri());
+        }
+        return properties;
+    }
+
+    /**
+     * Users whose password is their name, hashed at BCrypt's lowest cost so that logins weigh
+     * on the token path rather than on hashing alone.
+     */
+    private static Path userFile(int users) throws Exception {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(4);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            lines.add(username(i) + "," + encoder.encode(username(i)) + ",USER;READER");
+        }
+        Path file = Files.createTempFile("sso-loadtest-users", ".csv");
+        Files.write(file, lines);
+        return file;
+    }
+
+    private static String username(int i) {
+        return "user-" + i;
+    }
+
+    private static long allocatedBytes() {
+        return ((ThreadMXBean) ManagementFactory.getThreadMXBean()).getTotalThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,53 @@
+package it.svent404.security.loadtest;
+
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.UnsupportedEncodingException;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Tokens from the local issuer's {@code /auth} endpoints of the sample application.
+ */
+final class LocalTokenClient implements TokenClient {
+
+    private final SampleApplication app;
+
+    LocalTokenClient(SampleApplication app) {
+        this.app = app;
+    }
+
+    @Override
+    public Tokens login(String username) {
+        return tokens(app.perform(post("/auth/token")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"username\":\"" + username + "\",\"password\":\"" + username + "\"}")));
+    }
+
+    @Override
+    public Tokens refresh(Tokens tokens) {
+        return tokens(app.perform(post("/auth/refresh")
+                .contentType(MediaType.TEXT_PLAIN)
+                .content(tokens.refreshToken())));
+    }
+
+    @Override
+    public boolean logout(Tokens tokens) {
+        return app.perform(post("/auth/logout")
+                .contentType(MediaType.TEXT_PLAIN)
+                .content(tokens.accessToken())).getStatus() == 200;
+    }
+
+    private static Tokens tokens(MockHttpServletResponse response) {
+        if (response.getStatus() != 200) {
+            return null;
+        }
+        try {
+            String body = response.getContentAsString();
+            return new Tokens(TokenClient.member(body, "accessToken"), TokenClient.member(body, "refreshToken"));
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package it.svent404.security.loadtest;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The measured phase of one {@code sso.mode}. Allocation is what the whole JVM allocated while
+ * it ran, divided by the requests: it includes the harness and, in oauth2 mode, the stub IdP,
+ * so it tracks regressions rather than giving an absolute per-request figure.
+ */
+record ModeReport(String mode,
+                  double seconds,
+                  LatencyLog.Stats total,
+                  Map<Operation, LatencyLog.Stats> operations,
+                  double throughput,
+                  double allocatedKbPerRequest) {
+
+    static ModeReport of(String mode, List<LatencyLog> logs, long elapsedNanos, long allocatedBytes) {
+        Map<Operation, LatencyLog.Stats> operations = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            operations.put(operation, LatencyLog.merge(logs, operation));
+        }
+        LatencyLog.Stats total = LatencyLog.merge(logs, null);
+        double seconds = elapsedNanos / 1e9;
+        return new ModeReport(mode, seconds, total, operations,
+                total.count() / seconds,
+                total.count() == 0 ? 0 : allocatedBytes / 1024.0 / total.count());
+    }
+
+    List<String> rows() {
+        List<String> rows = new ArrayList<>();
+        operations.forEach((operation, stats) ->
+                rows.add(row(operation.name().toLowerCase(Locale.ROOT), stats, "")));
+        rows.add(row("all", total, String.format(Locale.ROOT, "%10.0f req/s %8.1f KB/req",
+                throughput, allocatedKbPerRequest)));
+        return rows;
+    }
+
+    String toJson() {
+        StringBuilder json = new StringBuilder()
+                .append("{\"mode\":\"").append(mode).append('"')
+                .append(",\"seconds\":").append(format(seconds))
+                .append(",\"throughput\":").append(format(throughput))
+                .append(",\"allocatedKbPerRequest\":").append(format(allocatedKbPerRequest))
+                .append(",\"total\":").append(json(total))
+                .append(",\"operations\":{");
+        String separator = "";
+        for (Map.Entry<Operation, LatencyLog.Stats> entry : operations.entrySet()) {
+            json.append(separator).append('"').append(entry.getKey().name().toLowerCase(Locale.ROOT)).append("\":")
+                    .append(json(entry.getValue()));
+            separator = ",";
+        }
+        return json.append("}}").toString();
+    }
+
+    private String row(String operation, LatencyLog.Stats stats, String extra) {
+        return String.format(Locale.ROOT, "%-8s %-9s %9d %7d %9.3f %9.3f %s",
+                mode, operation, stats.count(), stats.errors(), stats.p50Millis(), stats.p99Millis(), extra);
+    }
+
+    private static String json(LatencyLog.Stats stats) {
+        return "{\"count\":" + stats.count() + ",\"errors\":" + stats.errors()
+                + ",\"p50Millis\":" + format(stats.p50Millis()) + ",\"p99Millis\":" + format(stats.p99Millis()) + "}";
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+}
@@ -0,0 +1,38 @@
+package it.svent404.security.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * What a virtual user does in one step. A user without tokens logs in; otherwise it picks one
+ * of the other operations by weight.
+ */
+enum Operation {
+    LOGIN(0),
+    CALL(80),
+    INVALID(10),
+    REFRESH(7),
+    LOGOUT(3);
+
+    private static final int TOTAL_WEIGHT = Arrays.stream(values()).mapToInt(operation -> operation.weight).sum();
+
+    private final int weight;
+
+    Operation(int weight) {
+        this.weight = weight;
+    }
+
+    static Operation pick(int roll) {
+        int bound = 0;
+        for (Operation operation : values()) {
+            bound += operation.weight;
+            if (roll < bound) {
+                return operation;
+            }
+        }
+        return CALL;
+    }
+
+    static int totalWeight() {
+        return TOTAL_WEIGHT;
+    }
+}
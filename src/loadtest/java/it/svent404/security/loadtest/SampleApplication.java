@@ -0,0 +1,90 @@
+package it.svent404.security.loadtest;
+
+import jakarta.servlet.Filter;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import java.util.Map;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+
+/**
+ * A servlet application using the starter, with one protected endpoint. Requests go through
+ * the full security filter chain and {@code DispatcherServlet} in process: no servlet container
+ * is needed, so the network and container overhead are not part of the figures.
+ */
+public final class SampleApplication implements AutoCloseable {
+
+    static final String ME = "/api/me";
+
+    private static final long ASYNC_TIMEOUT_MILLIS = 30_000;
+
+    private final AnnotationConfigWebApplicationContext context;
+    private final MockMvc mvc;
+
+    private SampleApplication(AnnotationConfigWebApplicationContext context) {
+        this.context = context;
+        this.mvc = MockMvcBuilders.webAppContextSetup(context)
+                .addFilters(context.getBean("springSecurityFilterChain", Filter.class))
+                .build();
+    }
+
+    public static SampleApplication start(Map<String, Object> properties) {
+        AnnotationConfigWebApplicationContext context = new AnnotationConfigWebApplicationContext();
+        context.setServletContext(new MockServletContext());
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("loadtest", properties));
+        context.register(Application.class);
+        context.refresh();
+        return new SampleApplication(context);
+    }
+
+    /**
+     * Performs the request, waiting for and dispatching an asynchronous result if it has one.
+     */
+    public MockHttpServletResponse perform(RequestBuilder request) {
+        try {
+            MvcResult result = mvc.perform(request).andReturn();
+            if (result.getRequest().isAsyncStarted()) {
+                result.getAsyncResult(ASYNC_TIMEOUT_MILLIS);
+                result = mvc.perform(asyncDispatch(result)).andReturn();
+            }
+            return result.getResponse();
+        } catch (Exception ex) {
+            throw new IllegalStateException("Request failed: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @EnableAutoConfiguration
+    @EnableWebMvc
+    @Import(MeController.class)
+    static class Application {
+    }
+
+    @RestController
+    static class MeController {
+
+        @GetMapping(ME)
+        Map<String, Object> me(Authentication authentication) {
+            return Map.of("name", authentication.getName(), "authorities", authentication.getAuthorities().size());
+        }
+    }
+}
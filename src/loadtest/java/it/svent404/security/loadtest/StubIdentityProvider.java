@@ -0,0 +1,177 @@
+package it.svent404.security.loadtest;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loopback stand-in for a Keycloak realm: it publishes a JWK Set and issues RS256 access
+ * tokens with Keycloak's claim layout through the password and refresh token grants. Any
+ * user whose password equals its username may log in. Refresh tokens are single use and
+ * logout revokes them.
+ */
+public final class StubIdentityProvider implements AutoCloseable {
+
+    public static final String REALM_PATH = "/realms/loadtest";
+    public static final String CLIENT_ID = "loadtest-app";
+
+    private static final String OIDC_PATH = REALM_PATH + "/protocol/openid-connect";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(4, Thread.ofPlatform()
+            .name("stub-idp-", 0)
+            .daemon()
+            .factory());
+    private final JWSSigner signer;
+    private final String kid;
+    private final byte[] jwks;
+    private final long tokenTtlSeconds;
+    private final Map<String, String> refreshTokens = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    public StubIdentityProvider(long tokenTtlSeconds) throws IOException, JOSEException {
+        RSAKey key = new RSAKeyGenerator(2048).keyID("loadtest-" + UUID.randomUUID()).generate();
+        this.signer = new RSASSASigner(key);
+        this.kid = key.getKeyID();
+        this.jwks = new JWKSet(key).toPublicJWKSet().toString().getBytes(StandardCharsets.UTF_8);
+        this.tokenTtlSeconds = tokenTtlSeconds;
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext(OIDC_PATH + "/certs", exchange -> respond(exchange, 200, jwks));
+        server.createContext(OIDC_PATH + "/token", this::token);
+        server.createContext(OIDC_PATH + "/logout", this::logout);
+        server.start();
+    }
+
+    public String issuer() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + REALM_PATH;
+    }
+
+    public String jwksUri() {
+        return issuer() + "/protocol/openid-connect/certs";
+    }
+
+    public String tokenUri() {
+        return issuer() + "/protocol/openid-connect/token";
+    }
+
+    public String logoutUri() {
+        return issuer() + "/protocol/openid-connect/logout";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void token(HttpExchange exchange) throws IOException {
+        Map<String, String> form = form(exchange);
+        String username = switch (form.getOrDefault("grant_type", "")) {
+            case "password" -> form.getOrDefault("username", "").equals(form.get("password"))
+                    ? form.get("username")
+                    : null;
+            case "refresh_token" -> refreshTokens.remove(form.getOrDefault("refresh_token", ""));
+            default -> null;
+        };
+        if (username == null) {
+            respond(exchange, 400, "{\"error\":\"invalid_grant\"}".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        String refreshToken = randomToken();
+        refreshTokens.put(refreshToken, username);
+        String body = "{\"access_token\":\"" + accessToken(username) + "\","
+                + "\"refresh_token\":\"" + refreshToken + "\","
+                + "\"token_type\":\"Bearer\",\"expires_in\":" + tokenTtlSeconds + "}";
+        respond(exchange, 200, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void logout(HttpExchange exchange) throws IOException {
+        boolean revoked = refreshTokens.remove(form(exchange).getOrDefault("refresh_token", "")) != null;
+        respond(exchange, revoked ? 204 : 400, null);
+    }
+
+    private String accessToken(String username) {
+        Instant now = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer(issuer())
+                .subject(UUID.nameUUIDFromBytes(username.getBytes(StandardCharsets.UTF_8)).toString())
+                .jwtID(UUID.randomUUID().toString())
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plusSeconds(tokenTtlSeconds)))
+                .claim("azp", CLIENT_ID)
+                .claim("preferred_username", username)
+                .claim("realm_access", Map.of("roles", List.of("offline_access", "uma_authorization", "user")))
+                .claim("resource_access", Map.of(CLIENT_ID, Map.of("roles", List.of("reader", "writer"))))
+                .claim("scope", "openid profile email")
+                .build();
+        try {
+            SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(kid).build(), claims);
+            jwt.sign(signer);
+            return jwt.serialize();
+        } catch (JOSEException ex) {
+            throw new IllegalStateException("Cannot sign token", ex);
+        }
+    }
+
+    private String randomToken() {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static Map<String, String> form(HttpExchange exchange) throws IOException {
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        Map<String, String> form = new HashMap<>();
+        for (String pair : body.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                form.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return form;
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        try (exchange) {
+            if (body == null) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package it.svent404.security.loadtest;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Regression limits per mode, read from a properties file. Relative limits compare a run with
+ * the {@link Baseline} of the same machine: {@code <mode>.throughput.min-ratio},
+ * {@code <mode>.p99.max-ratio} and {@code <mode>.allocation.max-ratio}. Absolute limits only
+ * make sense on one known machine: {@code <mode>.throughput.min} (requests per second),
+ * {@code <mode>.p99.max-millis}, {@code <mode>.allocation.max-kb} (per request) and
+ * {@code <mode>.errors.max}. A limit that is not set, or a relative one without a baseline
+ * for its mode, is not checked.
+ */
+final class Thresholds {
+
+    private final Properties limits;
+
+    private Thresholds(Properties limits) {
+        this.limits = limits;
+    }
+
+    static Thresholds load(Path file) throws IOException {
+        Properties limits = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            limits.load(reader);
+        }
+        return new Thresholds(limits);
+    }
+
+    List<String> violations(ModeReport report, Baseline baseline) {
+        List<String> violations = new ArrayList<>();
+        String mode = report.mode();
+        check(violations, mode, "throughput.min", report.throughput(), true);
+        check(violations, mode, "p99.max-millis", report.total().p99Millis(), false);
+        check(violations, mode, "allocation.max-kb", report.allocatedKbPerRequest(), false);
+        check(violations, mode, "errors.max", report.total().errors(), false);
+        if (baseline.covers(mode)) {
+            checkRatio(violations, mode, "throughput.min-ratio", report.throughput(),
+                    baseline.get(mode, "throughput"), true);
+            checkRatio(violations, mode, "p99.max-ratio", report.total().p99Millis(),
+                    baseline.get(mode, "p99-millis"), false);
+            checkRatio(violations, mode, "allocation.max-ratio", report.allocatedKbPerRequest(),
+                    baseline.get(mode, "allocation-kb"), false);
+        }
+        return violations;
+    }
+
+    private void check(List<String> violations, String mode, String name, double actual, boolean minimum) {
+        String limit = limits.getProperty(mode + "." + name);
+        if (limit == null) {
+            return;
+        }
+        double bound = Double.parseDouble(limit.trim());
+        if (minimum ? actual < bound : actual > bound) {
+            violations.add(String.format(Locale.ROOT, "%s.%s: %.3f is %s the limit of %s",
+                    mode, name, actual, minimum ? "below" : "above", limit.trim()));
+        }
+    }
+
+    private void checkRatio(List<String> violations, String mode, String name, double actual, double baseline,
+                            boolean minimum) {
+        String limit = limits.getProperty(mode + "." + name);
+        if (limit == null) {
+            return;
+        }
+        double bound = baseline * Double.parseDouble(limit.trim());
+        if (minimum ? actual < bound : actual > bound) {
+            violations.add(String.format(Locale.ROOT, "%s.%s: %.3f is %s %s x the baseline of %.3f",
+                    mode, name, actual, minimum ? "below" : "above", limit.trim(), baseline));
+        }
+    }
+}
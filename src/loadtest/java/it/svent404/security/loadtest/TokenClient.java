@@ -0,0 +1,37 @@
+package it.svent404.security.loadtest;
+
+/**
+ * How a virtual user obtains, refreshes and gives up its tokens: from the application's own
+ * {@code /auth} endpoints or from the IdP.
+ */
+interface TokenClient {
+
+    /**
+     * @return the tokens, or {@code null} if the login was refused
+     */
+    Tokens login(String username);
+
+    /**
+     * @return the new tokens, or {@code null} if the refresh token was refused
+     */
+    Tokens refresh(Tokens tokens);
+
+    boolean logout(Tokens tokens);
+
+    record Tokens(String accessToken, String refreshToken) {
+    }
+
+    /**
+     * The string member {@code name} of a flat JSON object, enough for token responses.
+     */
+    static String member(String json, String name) {
+        String key = "\"" + name + "\":\"";
+        int start = json.indexOf(key);
+        if (start < 0) {
+            return null;
+        }
+        start += key.length();
+        int end = json.indexOf('"', start);
+        return end < 0 ? null : json.substring(start, end);
+    }
+}
@@ -0,0 +1,77 @@
+package it.svent404.security.loadtest;
+
+import org.springframework.http.HttpHeaders;
+
+import java.util.SplittableRandom;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * One user in a closed loop: log in, then call the protected endpoint, present a forged token,
+ * refresh or log out, with no think time. Each step checks the status it expects, so a run
+ * that degrades into rejections counts errors instead of looking faster.
+ */
+final class VirtualUser {
+
+    private final String username;
+    private final TokenClient tokenClient;
+    private final SampleApplication app;
+    private final SplittableRandom random;
+    private TokenClient.Tokens tokens;
+
+    VirtualUser(String username, TokenClient tokenClient, SampleApplication app, long seed) {
+        this.username = username;
+        this.tokenClient = tokenClient;
+        this.app = app;
+        this.random = new SplittableRandom(seed);
+    }
+
+    LatencyLog runUntil(long deadlineNanos) {
+        LatencyLog log = new LatencyLog();
+        while (System.nanoTime() < deadlineNanos) {
+            Operation operation = tokens == null
+                    ? Operation.LOGIN
+                    : Operation.pick(random.nextInt(Operation.totalWeight()));
+
+            long start = System.nanoTime();
+            boolean ok;
+            try {
+                ok = step(operation);
+            } catch (RuntimeException ex) {
+                ok = false;
+            }
+            log.record(operation, System.nanoTime() - start, ok);
+            if (!ok) {
+                tokens = null;
+            }
+        }
+        return log;
+    }
+
+    private boolean step(Operation operation) {
+        return switch (operation) {
+            case LOGIN -> (tokens = tokenClient.login(username)) != null;
+            case CALL -> call(tokens.accessToken()) == 200;
+            case INVALID -> call(forge(tokens.accessToken())) == 401;
+            case REFRESH -> (tokens = tokenClient.refresh(tokens)) != null;
+            case LOGOUT -> {
+                boolean loggedOut = tokenClient.logout(tokens);
+                tokens = null;
+                yield loggedOut;
+            }
+        };
+    }
+
+    private int call(String accessToken) {
+        return app.perform(get(SampleApplication.ME)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)).getStatus();
+    }
+
+    /**
+     * The token with its signature changed: well formed, so it reaches verification.
+     */
+    private static String forge(String token) {
+        char last = token.charAt(token.length() - 2);
+        return token.substring(0, token.length() - 2) + (last == 'A' ? 'B' : 'A') + token.charAt(token.length() - 1);
+    }
+}
@@ -0,0 +1,75 @@
+package it.svent404.security.aot;
+
+import it.svent404.security.model.request.BatchTokenRequest;
+import it.svent404.security.model.request.LoginRequest;
+import it.svent404.security.model.response.IntrospectionResponse;
+import it.svent404.security.model.response.TokenResponse;
+import it.svent404.security.model.response.UserInfoResponse;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+
+import java.util.List;
+
+/**
+ * Reflection a native image of an application using this library needs. jjwt's API jar looks
+ * its implementation up by class name (builders, algorithm registries and the static bridges
+ * behind {@code Keys} and {@code Jwks}), and the {@code /auth} request and response records are
+ * bound by Jackson. Registered through {@code META-INF/spring/aot.factories}, so Spring AOT
+ * writes them into the application's reachability metadata.
+ */
+public class SsoRuntimeHints implements RuntimeHintsRegistrar {
+
+    static final List<String> JJWT_IMPLEMENTATIONS = List.of(
+            "io.jsonwebtoken.impl.DefaultClaimsBuilder",
+            "io.jsonwebtoken.impl.DefaultJwtBuilder",
+            "io.jsonwebtoken.impl.DefaultJwtHeaderBuilder",
+            "io.jsonwebtoken.impl.DefaultJwtParserBuilder",
+            "io.jsonwebtoken.impl.io.StandardCompressionAlgorithms",
+            "io.jsonwebtoken.impl.security.DefaultDynamicJwkBuilder",
+            "io.jsonwebtoken.impl.security.DefaultJwkParserBuilder",
+            "io.jsonwebtoken.impl.security.DefaultJwkSetBuilder",
+            "io.jsonwebtoken.impl.security.DefaultJwkSetParserBuilder",
+            "io.jsonwebtoken.impl.security.DefaultKeyOperationBuilder",
+            "io.jsonwebtoken.impl.security.DefaultKeyOperationPolicyBuilder",
+            "io.jsonwebtoken.impl.security.StandardCurves",
+            "io.jsonwebtoken.impl.security.StandardEncryptionAlgorithms",
+            "io.jsonwebtoken.impl.security.StandardHashAlgorithms",
+            "io.jsonwebtoken.impl.security.StandardKeyAlgorithms",
+            "io.jsonwebtoken.impl.security.StandardKeyOperations",
+            "io.jsonwebtoken.impl.security.StandardSecureDigestAlgorithms"
+    );
+
+    static final List<String> JJWT_BRIDGES = List.of(
+            "io.jsonwebtoken.impl.security.JwksBridge",
+            "io.jsonwebtoken.impl.security.KeysBridge"
+    );
+
+    static final List<String> JJWT_JACKSON = List.of(
+            "io.jsonwebtoken.jackson.io.JacksonSerializer",
+            "io.jsonwebtoken.jackson.io.JacksonDeserializer"
+    );
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        for (String type : JJWT_IMPLEMENTATIONS) {
+            hints.reflection().registerType(TypeReference.of(type), MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+        }
+        for (String type : JJWT_BRIDGES) {
+            hints.reflection().registerType(TypeReference.of(type), MemberCategory.INVOKE_DECLARED_METHODS);
+        }
+        for (String type : JJWT_JACKSON) {
+            hints.reflection().registerType(TypeReference.of(type), MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+        }
+        hints.resources().registerPattern("META-INF/services/io.jsonwebtoken.*");
+
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                LoginRequest.class,
+                BatchTokenRequest.class,
+                TokenResponse.class,
+                IntrospectionResponse.class,
+                UserInfoResponse.class);
+    }
+}
@@ -0,0 +1,92 @@
+package it.svent404.security.autoconfig;
+
+import it.svent404.security.filter.BearerTokenTypeResolver;
+import it.svent404.security.key.SigningKeyRing;
+import it.svent404.security.metrics.SsoMetrics;
+import it.svent404.security.properties.SsoSecurityProperties;
+import it.svent404.security.service.CachingOpaqueTokenIntrospector;
+import it.svent404.security.service.HybridAuthenticationManager;
+import it.svent404.security.service.HybridTokenRouter;
+import it.svent404.security.service.JwtConverter;
+import it.svent404.security.service.LocalJwtService;
+import it.svent404.security.support.PublicPathMatcher;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBooleanProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationManagerResolver;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
+import org.springframework.security.oauth2.server.resource.authentication.OpaqueTokenAuthenticationProvider;
+import org.springframework.security.web.SecurityFilterChain;
+
+/**
+ * {@code hybrid} mode: the local issuer keeps running next to the OAuth2 resource server, so
+ * traffic can move to the IdP gradually. {@link LocalJwtAutoConfiguration} and
+ * {@link KeycloakJwtAutoConfiguration} provide both verification paths, each with its own
+ * caches and metrics; this class adds the {@link HybridTokenRouter} and the filter chain that
+ * dispatches between them.
+ */
+@AutoConfiguration(after = {LocalJwtAutoConfiguration.class, KeycloakJwtAutoConfiguration.class})
+@ConditionalOnBooleanProperty(prefix = "sso", name = "enabled", havingValue = true, matchIfMissing = false)
+@ConditionalOnProperty(prefix = "sso", name = "mode", havingValue = "hybrid", matchIfMissing = false)
+@EnableConfigurationProperties(SsoSecurityProperties.class)
+public class HybridJwtAutoConfiguration {
+
+    @Bean
+    HybridTokenRouter hybridTokenRouter(SigningKeyRing signingKeyRing,
+                                        SsoSecurityProperties props,
+                                        @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri:}") String issuerUri,
+                                        SsoMetrics metrics) {
+        return new HybridTokenRouter(signingKeyRing, KeycloakJwtAutoConfiguration.oauth2Issuers(props, issuerUri), metrics);
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    static class ServletConfiguration {
+
+        @Bean
+        SecurityFilterChain securityFilterChain(HttpSecurity http,
+                                                HybridTokenRouter hybridTokenRouter,
+                                                LocalJwtService localJwtService,
+                                                JwtDecoder jwtDecoder,
+                                                JwtConverter jwtConverter,
+                                                PublicPathMatcher ssoPublicPaths,
+                                                ObjectProvider<CachingOpaqueTokenIntrospector> opaqueTokenIntrospector) {
+
+            JwtAuthenticationProvider jwtProvider = new JwtAuthenticationProvider(jwtDecoder);
+            jwtProvider.setJwtAuthenticationConverter(jwtConverter);
+            AuthenticationManager hybrid = new HybridAuthenticationManager(
+                    hybridTokenRouter, localJwtService, new ProviderManager(jwtProvider));
+
+            CachingOpaqueTokenIntrospector introspector = opaqueTokenIntrospector.getIfAvailable();
+            AuthenticationManagerResolver<HttpServletRequest> resolver = introspector != null
+                    ? new BearerTokenTypeResolver(hybrid,
+                            new ProviderManager(new OpaqueTokenAuthenticationProvider(introspector)))
+                    : request -> hybrid;
+
+            return http
+                    .csrf(AbstractHttpConfigurer::disable)
+                    .sessionManagement(s -> s
+                            .sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                    .authorizeHttpRequests(auth -> auth
+                            .requestMatchers(request -> ssoPublicPaths.matches(
+                                    request.getRequestURI(), request.getContextPath().length())).permitAll()
+                            .anyRequest().authenticated()
+                    )
+                    .oauth2ResourceServer(oauth2 -> oauth2.authenticationManagerResolver(resolver))
+                    .build();
+        }
+    }
+}
@@ -1,62 +1,231 @@
 package it.svent404.security.autoconfig;
 
+import it.svent404.security.cache.ExpiringCache;
+import it.svent404.security.filter.BearerTokenTypeResolver;
+import it.svent404.security.key.CachingJwkSource;
+import it.svent404.security.metrics.ExpiredJwtValidator;
+import it.svent404.security.metrics.InstrumentedJwtDecoder;
+import it.svent404.security.metrics.SsoMetrics;
+import it.svent404.security.metrics.SsoMetricsConfiguration;
+import it.svent404.security.service.CachingOpaqueTokenIntrospector;
+import it.svent404.security.service.ClaimAuthorityPlan;
+import it.svent404.security.service.HybridTokenRouter;
 import it.svent404.security.service.JwtConverter;
+import it.svent404.security.service.OpaqueTokenPrincipalConverter;
 import it.svent404.security.properties.SsoSecurityProperties;
+import it.svent404.security.support.MaintenanceScheduler;
+import it.svent404.security.support.PublicPathMatcher;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBooleanProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+import org.springframework.security.oauth2.jwt.JwtClaimValidator;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
+import org.springframework.security.oauth2.server.resource.authentication.OpaqueTokenAuthenticationProvider;
+import org.springframework.security.oauth2.server.resource.introspection.SpringOpaqueTokenIntrospector;
 import org.springframework.security.web.SecurityFilterChain;
 
-@Configuration
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+
+@AutoConfiguration
 @ConditionalOnBooleanProperty(prefix = "sso", name = "enabled", havingValue = true, matchIfMissing = false)
-@ConditionalOnProperty(prefix = "sso", name = "mode", havingValue = "oauth2", matchIfMissing = false)
+@ConditionalOnExpression("'${sso.mode:}' == 'oauth2' or '${sso.mode:}' == 'hybrid'")
 @EnableConfigurationProperties(SsoSecurityProperties.class)
-@EnableMethodSecurity
+@Import(SsoMetricsConfiguration.class)
 public class KeycloakJwtAutoConfiguration {
 
     @Bean
-    public JwtDecoder jwtDecoder(@Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}") String jwtSetUri) {
-        return NimbusJwtDecoder.withJwkSetUri(jwtSetUri).build();
+    @ConditionalOnProperty(prefix = "sso", name = "mode", havingValue = "oauth2")
+    PublicPathMatcher ssoPublicPaths(SsoSecurityProperties props) {
+        return PublicPathMatcher.of(props.getPublicPaths());
+    }
+
+    @Bean
+    public JwtDecoder jwtDecoder(CachingJwkSource jwkSource,
+                                 SsoSecurityProperties props,
+                                 @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri:}") String issuerUri,
+                                 Clock clock,
+                                 SsoMetrics metrics) {
+        NimbusJwtDecoder decoder = NimbusJwtDecoder.withJwkSource(jwkSource).build();
+        decoder.setJwtValidator(jwtValidator(props, issuerUri, clock));
+        return new InstrumentedJwtDecoder(decoder, metrics);
+    }
+
+    /**
+     * The default validators and {@link ExpiredJwtValidator}. In {@code hybrid} mode the issuer
+     * the {@link HybridTokenRouter} read is only a hint, so {@code iss} is checked as well.
+     */
+    static OAuth2TokenValidator<Jwt> jwtValidator(SsoSecurityProperties props, String issuerUri, Clock clock) {
+        List<String> issuers = "hybrid".equals(props.getMode()) ? oauth2Issuers(props, issuerUri) : List.of();
+        if (issuers.isEmpty()) {
+            return JwtValidators.createDefaultWithValidators(new ExpiredJwtValidator(clock));
+        }
+        return JwtValidators.createDefaultWithValidators(new ExpiredJwtValidator(clock),
+                new JwtClaimValidator<>(JwtClaimNames.ISS, issuer -> issuer != null && issuers.contains(issuer.toString())));
+    }
+
+    /**
+     * {@code sso.hybrid.oauth2-issuers}, or else the resource server's {@code issuer-uri}.
+     */
+    static List<String> oauth2Issuers(SsoSecurityProperties props, String issuerUri) {
+        List<String> issuers = props.getHybrid().getOauth2Issuers();
+        if (issuers.isEmpty() && !issuerUri.isBlank()) {
+            return List.of(issuerUri);
+        }
+        return issuers;
+    }
+
+    @Bean
+    CachingJwkSource jwkSource(@Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}") String jwtSetUri,
+                               SsoSecurityProperties ssoSecurityProperties,
+                               Clock clock,
+                               SsoMetrics metrics,
+                               MaintenanceScheduler scheduler) {
+        CachingJwkSource source = CachingJwkSource.from(jwtSetUri, ssoSecurityProperties.getJwt().getJwks(), clock, metrics);
+        scheduler.schedule("jwks-refresh", source::refreshIfDue, source.checkInterval());
+        return source;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    MaintenanceScheduler ssoMaintenanceScheduler() {
+        return new MaintenanceScheduler();
     }
 
     @Bean
-    SecurityFilterChain securityFilterChain(HttpSecurity http,
-                                            JwtConverter jwtConverter) {
-
-        return http
-                .csrf(AbstractHttpConfigurer::disable)
-                .sessionManagement(s -> s
-                        .sessionCreationPolicy(SessionCreationPolicy.STATELESS))
-                .authorizeHttpRequests(auth -> auth
-                        .requestMatchers(
-                                "/v3/api-docs/**",
-                                "/swagger-ui/**",
-                                "/swagger-ui.html",
-                                "/webjars/**"
-                        ).permitAll()
-                        .anyRequest().authenticated()
-                )
-                .oauth2ResourceServer(oauth2 -> oauth2
-                        .jwt(jwt -> jwt
-                                .jwtAuthenticationConverter(jwtConverter)
-                        )
-                )
-                .build();
+    @ConditionalOnMissingBean
+    public Clock clock() {
+        return Clock.systemUTC();
     }
 
     @Bean
-    public JwtConverter jwtConverter(SsoSecurityProperties ssoSecurityProperties) {
-        return new JwtConverter(ssoSecurityProperties.getJwt().getAuth().getConverter().getPrincipleAttribute(),
-                ssoSecurityProperties.getJwt().getAuth().getConverter().getResourceId());
+    public JwtConverter jwtConverter(SsoSecurityProperties ssoSecurityProperties,
+                                     ClaimAuthorityPlan claimAuthorityPlan,
+                                     SsoMetrics metrics) {
+        SsoSecurityProperties.Auth.Converter converter = ssoSecurityProperties.getJwt().getAuth().getConverter();
+        return new JwtConverter(converter.getPrincipleAttribute(),
+                claimAuthorityPlan,
+                converter.getAuthorityCacheSize(),
+                metrics);
     }
 
+    @Bean
+    ClaimAuthorityPlan claimAuthorityPlan(SsoSecurityProperties ssoSecurityProperties) {
+        return ClaimAuthorityPlan.from(ssoSecurityProperties.getJwt().getAuth().getConverter());
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnBooleanProperty(prefix = "sso.jwt.opaque", name = "enabled")
+    static class OpaqueTokenConfiguration {
+
+        @Bean
+        CachingOpaqueTokenIntrospector opaqueTokenIntrospector(
+                @Value("${spring.security.oauth2.resourceserver.opaquetoken.introspection-uri}") String introspectionUri,
+                @Value("${spring.security.oauth2.resourceserver.opaquetoken.client-id}") String clientId,
+                @Value("${spring.security.oauth2.resourceserver.opaquetoken.client-secret}") String clientSecret,
+                SsoSecurityProperties ssoSecurityProperties,
+                ClaimAuthorityPlan claimAuthorityPlan,
+                Clock clock,
+                SsoMetrics metrics,
+                MaintenanceScheduler scheduler) {
+
+            SpringOpaqueTokenIntrospector remote = SpringOpaqueTokenIntrospector
+                    .withIntrospectionUri(introspectionUri)
+                    .clientId(clientId)
+                    .clientSecret(clientSecret)
+                    .build();
+            remote.setAuthenticationConverter(new OpaqueTokenPrincipalConverter(
+                    ssoSecurityProperties.getJwt().getAuth().getConverter().getPrincipleAttribute(),
+                    claimAuthorityPlan));
+
+            SsoSecurityProperties.Opaque config = ssoSecurityProperties.getJwt().getOpaque();
+            ExpiringCache<CachingOpaqueTokenIntrospector.Result> cache = new ExpiringCache<>(config.getCacheMaxEntries(), clock);
+            ExpiringCache<CachingOpaqueTokenIntrospector.Result> negativeCache =
+                    new ExpiringCache<>(config.getNegativeCacheMaxEntries(), clock);
+            scheduler.schedule("introspection-cache-purge", () -> {
+                cache.purgeExpired();
+                negativeCache.purgeExpired();
+            }, Duration.ofSeconds(config.getCacheTtlSeconds()));
+            return new CachingOpaqueTokenIntrospector(
+                    remote,
+                    cache,
+                    negativeCache,
+                    clock,
+                    Duration.ofSeconds(config.getCacheTtlSeconds()),
+                    Duration.ofSeconds(config.getNegativeTtlSeconds()),
+                    metrics
+            );
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    @EnableMethodSecurity
+    static class ServletConfiguration {
+
+        @Bean
+        @ConditionalOnProperty(prefix = "sso", name = "mode", havingValue = "oauth2")
+        SecurityFilterChain securityFilterChain(HttpSecurity http,
+                                                JwtConverter jwtConverter,
+                                                PublicPathMatcher ssoPublicPaths,
+                                                ObjectProvider<BearerTokenTypeResolver> bearerTokenTypeResolver) {
+
+            BearerTokenTypeResolver tokenTypeResolver = bearerTokenTypeResolver.getIfAvailable();
+
+            return http
+                    .csrf(AbstractHttpConfigurer::disable)
+                    .sessionManagement(s -> s
+                            .sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                    .authorizeHttpRequests(auth -> auth
+                            .requestMatchers(request -> ssoPublicPaths.matches(
+                                    request.getRequestURI(), request.getContextPath().length())).permitAll()
+                            .anyRequest().authenticated()
+                    )
+                    .oauth2ResourceServer(oauth2 -> {
+                        if (tokenTypeResolver != null) {
+                            oauth2.authenticationManagerResolver(tokenTypeResolver);
+                        } else {
+                            oauth2.jwt(jwt -> jwt
+                                    .jwtAuthenticationConverter(jwtConverter)
+                            );
+                        }
+                    })
+                    .build();
+        }
+
+        @Bean
+        @ConditionalOnBooleanProperty(prefix = "sso.jwt.opaque", name = "enabled")
+        @ConditionalOnProperty(prefix = "sso", name = "mode", havingValue = "oauth2")
+        BearerTokenTypeResolver bearerTokenTypeResolver(JwtDecoder jwtDecoder,
+                                                        JwtConverter jwtConverter,
+                                                        CachingOpaqueTokenIntrospector opaqueTokenIntrospector) {
+            JwtAuthenticationProvider jwtProvider = new JwtAuthenticationProvider(jwtDecoder);
+            jwtProvider.setJwtAuthenticationConverter(jwtConverter);
+            return new BearerTokenTypeResolver(
+                    new ProviderManager(jwtProvider),
+                    new ProviderManager(new OpaqueTokenAuthenticationProvider(opaqueTokenIntrospector))
+            );
+        }
+    }
 }
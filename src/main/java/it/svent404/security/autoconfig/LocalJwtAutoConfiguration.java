@@ -1,18 +1,46 @@
 package it.svent404.security.autoconfig;
 
+import it.svent404.security.cache.AuthenticationCache;
 import it.svent404.security.controller.LocalJwtController;
 import it.svent404.security.filter.LocalJwtAuthFilter;
+import it.svent404.security.key.SigningKeyRing;
+import it.svent404.security.metrics.SsoMetrics;
+import it.svent404.security.metrics.SsoMetricsConfiguration;
+import it.svent404.security.ratelimit.AuthRateLimits;
+import it.svent404.security.repository.BloomFilteredTokenRepository;
+import it.svent404.security.repository.FileUserDetailsService;
 import it.svent404.security.repository.InMemoryTokenRepository;
+import it.svent404.security.repository.MappedFileTokenRepository;
+import it.svent404.security.repository.RefreshTokenStore;
+import it.svent404.security.repository.RevocationBloomFilter;
+import it.svent404.security.repository.TokenRepository;
+import it.svent404.security.revocation.BroadcastingTokenRepository;
+import it.svent404.security.revocation.InJvmRevocationTransport;
+import it.svent404.security.revocation.RevocationBroadcaster;
+import it.svent404.security.revocation.RevocationTransport;
 import it.svent404.security.service.LocalJwtService;
+import it.svent404.security.service.PasswordHashingExecutor;
 import it.svent404.security.properties.SsoSecurityProperties;
+import it.svent404.security.support.LazyPasswordEncoder;
+import it.svent404.security.support.LazyUserDetailsManager;
+import it.svent404.security.support.MaintenanceScheduler;
+import it.svent404.security.support.PublicPathMatcher;
+import it.svent404.security.support.UpgradeAwarePasswordEncoder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBooleanProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -20,97 +48,384 @@ import org.springframework.security.config.annotation.web.configurers.AbstractHt
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.function.SingletonSupplier;
+import java.nio.file.Path;
 import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
-@Configuration
+@AutoConfiguration
 @ConditionalOnBooleanProperty(prefix = "sso", name = "enabled", havingValue = true, matchIfMissing = false)
-@ConditionalOnProperty(prefix = "sso", name = "mode", havingValue = "local", matchIfMissing = false)
+@ConditionalOnExpression("'${sso.mode:}' == 'local' or '${sso.mode:}' == 'hybrid'")
 @EnableConfigurationProperties(SsoSecurityProperties.class)
-@EnableMethodSecurity
-@Import(LocalJwtController.class)
+@Import(SsoMetricsConfiguration.class)
 public class LocalJwtAutoConfiguration {
 
+    private static final String ARGON2_PARAMETERS = "org.bouncycastle.crypto.params.Argon2Parameters";
+
+    /**
+     * The {@code /auth} endpoints that take their credentials in the body, or none at all.
+     * {@code /auth/userinfo} is not among them.
+     */
+    static final List<String> PUBLIC_ENDPOINTS = List.of(
+            "/auth/token",
+            "/auth/refresh",
+            "/auth/introspect",
+            "/auth/introspect/batch",
+            "/auth/jwks",
+            "/auth/logout",
+            "/auth/logout/batch"
+    );
+
+    @Bean
+    PublicPathMatcher ssoPublicPaths(SsoSecurityProperties props) {
+        return PublicPathMatcher.of(PUBLIC_ENDPOINTS, props.getPublicPaths());
+    }
+
     @Bean
     LocalJwtService localJwtService(
             SsoSecurityProperties props,
             Clock clock,
-            InMemoryTokenRepository tokenRepository) {
+            SigningKeyRing signingKeyRing,
+            TokenRepository tokenRepository,
+            RefreshTokenStore refreshTokenStore,
+            ObjectProvider<RevocationBloomFilter> revocationFilter,
+            ObjectProvider<RevocationBroadcaster> revocationBroadcaster,
+            ObjectProvider<AuthenticationCache> authenticationCache,
+            UserDetailsService userDetailsService,
+            SsoMetrics metrics) {
 
+        TokenRepository revocations = filtered(tokenRepository, revocationFilter);
+        RevocationBroadcaster broadcaster = revocationBroadcaster.getIfAvailable();
+        if (broadcaster != null) {
+            revocations = new BroadcastingTokenRepository(revocations, broadcaster);
+        }
 
-        return new LocalJwtService(props, clock, tokenRepository);
+        return new LocalJwtService(props, clock, signingKeyRing, revocations, refreshTokenStore,
+                authenticationCache.getIfAvailable(), userDetailsService, metrics);
     }
 
     @Bean
-    InMemoryTokenRepository inMemoryTokenRepository() {
-        return new InMemoryTokenRepository();
+    @ConditionalOnMissingBean
+    SigningKeyRing signingKeyRing(
+            SsoSecurityProperties props,
+            Clock clock,
+            MaintenanceScheduler scheduler) {
+
+        SigningKeyRing keyRing = SigningKeyRing.from(props.getJwt(), clock);
+        long rotationSeconds = props.getJwt().getKeyRotationIntervalSeconds();
+        if (keyRing.rotates() && rotationSeconds > 0) {
+            scheduler.schedule("signing-key-rotation", keyRing::rotate, Duration.ofSeconds(rotationSeconds));
+        }
+        return keyRing;
     }
 
     @Bean
     @ConditionalOnMissingBean
-    public Clock clock() {
-        return Clock.systemUTC();
+    RefreshTokenStore refreshTokenStore(
+            SsoSecurityProperties props,
+            Clock clock,
+            MaintenanceScheduler scheduler) {
+
+        RefreshTokenStore store = new RefreshTokenStore(clock, props.getJwt().getRefreshExpirationSeconds(),
+                props.getJwt().getRefreshMaxLifetimeSeconds());
+        scheduler.schedule("refresh-token-purge", store::purgeExpired, sweepInterval(props));
+        return store;
+    }
+
+    @Bean
+    @ConditionalOnBooleanProperty(prefix = "sso.jwt.revocation.filter", name = "enabled")
+    RevocationBloomFilter revocationBloomFilter(
+            SsoSecurityProperties props,
+            Clock clock,
+            TokenRepository tokenRepository,
+            MaintenanceScheduler scheduler) {
+
+        SsoSecurityProperties.Revocation.Filter config = props.getJwt().getRevocation().getFilter();
+        RevocationBloomFilter filter = new RevocationBloomFilter(
+                config.getExpectedInsertions(), config.getFalsePositiveProbability(), clock);
+        filter.rebuild(tokenRepository);
+        scheduler.schedule("revocation-filter-rebuild", () -> filter.rebuild(tokenRepository),
+                Duration.ofSeconds(config.getRebuildIntervalSeconds()));
+        return filter;
     }
 
+    /**
+     * Only connects application contexts in this JVM, so it has to be asked for explicitly.
+     */
     @Bean
     @ConditionalOnMissingBean
-    LocalJwtAuthFilter jwtAuthenticationFilter(
-                LocalJwtService jwtService){
-        return new LocalJwtAuthFilter(jwtService);
+    @ConditionalOnBooleanProperty(prefix = "sso.jwt.revocation.broadcast", name = {"enabled", "in-jvm"})
+    RevocationTransport revocationTransport(SsoSecurityProperties props) {
+        return new InJvmRevocationTransport(props.getJwt().getRevocation().getBroadcast().getChannel());
     }
 
     @Bean
-    SecurityFilterChain securityFilterChain(HttpSecurity http, LocalJwtService jwtService) throws Exception {
-        return http
-                .csrf(AbstractHttpConfigurer::disable)
-                .sessionManagement(s -> s.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
-                .authorizeHttpRequests(auth -> auth
-                        .requestMatchers(
-                                "/auth/**",
-                                "/v3/api-docs/**",
-                                "/swagger-ui/**",
-                                "/swagger-ui.html",
-                                "/webjars/**"
-                        ).permitAll()
-                        .anyRequest().authenticated()
-                )
-                .addFilterBefore(new LocalJwtAuthFilter(jwtService),
-                        UsernamePasswordAuthenticationFilter.class)
-                .build();
+    @ConditionalOnBooleanProperty(prefix = "sso.jwt.revocation.broadcast", name = "enabled")
+    RevocationBroadcaster revocationBroadcaster(
+            SsoSecurityProperties props,
+            Clock clock,
+            TokenRepository tokenRepository,
+            ObjectProvider<RevocationBloomFilter> revocationFilter,
+            RefreshTokenStore refreshTokenStore,
+            ObjectProvider<RevocationTransport> transport,
+            SsoMetrics metrics) {
+
+        RevocationTransport revocationTransport = transport.getIfAvailable();
+        if (revocationTransport == null) {
+            throw new IllegalStateException("sso.jwt.revocation.broadcast.enabled=true requires a RevocationTransport "
+                    + "bean backed by a message bus; set sso.jwt.revocation.broadcast.in-jvm=true to connect only "
+                    + "the application contexts of this JVM");
+        }
+
+        // received revocations must reach the Bloom filter too, or lookups would skip them
+        return RevocationBroadcaster.from(revocationTransport, tokenRepository, revocationFilter.getIfAvailable(),
+                refreshTokenStore, clock, props.getJwt().getRevocation().getBroadcast(), metrics);
+    }
+
+    private static TokenRepository filtered(TokenRepository tokenRepository,
+                                            ObjectProvider<RevocationBloomFilter> revocationFilter) {
+        RevocationBloomFilter filter = revocationFilter.getIfAvailable();
+        return filter != null
+                ? new BloomFilteredTokenRepository(tokenRepository, filter)
+                : tokenRepository;
     }
 
     @Bean
-    public AuthenticationManager authenticationManager(
-            AuthenticationConfiguration configuration
-    ) throws Exception {
-        return configuration.getAuthenticationManager();
+    @ConditionalOnBooleanProperty(prefix = "sso.jwt.cache", name = "enabled")
+    AuthenticationCache authenticationCache(
+            SsoSecurityProperties props,
+            Clock clock,
+            MaintenanceScheduler scheduler) {
+
+        AuthenticationCache cache = new AuthenticationCache(props.getJwt().getCache().getMaxEntries(), clock);
+        scheduler.schedule("authentication-cache-purge", cache::purgeExpired, sweepInterval(props));
+        return cache;
     }
 
     @Bean
-    public UserDetailsService userDetailsService(PasswordEncoder encoder) {
+    @ConditionalOnMissingBean(TokenRepository.class)
+    @ConditionalOnProperty(prefix = "sso.jwt.revocation", name = "store", havingValue = "file")
+    MappedFileTokenRepository mappedFileTokenRepository(
+            SsoSecurityProperties props,
+            Clock clock,
+            MaintenanceScheduler scheduler) {
 
-        UserDetails admin = User.withUsername("admin")
-                .password(encoder.encode("admin"))
-                .roles("ADMIN")
-                .build();
+        SsoSecurityProperties.Revocation revocation = props.getJwt().getRevocation();
+        MappedFileTokenRepository repository = new MappedFileTokenRepository(Path.of(revocation.getFilePath()), clock);
+        scheduler.schedule("revocation-compaction", repository::purgeExpired,
+                Duration.ofSeconds(revocation.getCompactionIntervalSeconds()));
+        return repository;
+    }
 
-        UserDetails user = User.withUsername("user")
-                .password(encoder.encode("user"))
-                .roles("USER")
-                .build();
+    @Bean
+    @ConditionalOnMissingBean(TokenRepository.class)
+    InMemoryTokenRepository inMemoryTokenRepository(
+            SsoSecurityProperties props,
+            Clock clock,
+            MaintenanceScheduler scheduler) {
 
-        return new InMemoryUserDetailsManager(admin, user);
+        InMemoryTokenRepository repository = new InMemoryTokenRepository(clock);
+        scheduler.schedule("revocation-purge", repository::purgeExpired, sweepInterval(props));
+        return repository;
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    @ConditionalOnMissingBean
+    AuthRateLimits authRateLimits(
+            SsoSecurityProperties props,
+            Clock clock,
+            MaintenanceScheduler scheduler) {
+
+        SsoSecurityProperties.RateLimit config = props.getRateLimit();
+        AuthRateLimits limits = AuthRateLimits.from(config, clock);
+        if (limits != AuthRateLimits.UNLIMITED) {
+            scheduler.schedule("rate-limit-sweep", limits::evictIdle,
+                    Duration.ofSeconds(config.getSweepIntervalSeconds()));
+        }
+        return limits;
     }
 
-}
+    @Bean
+    @ConditionalOnMissingBean
+    MaintenanceScheduler ssoMaintenanceScheduler() {
+        return new MaintenanceScheduler();
+    }
+
+    private static Duration sweepInterval(SsoSecurityProperties props) {
+        return Duration.ofSeconds(props.getJwt().getRevocation().getSweepIntervalSeconds());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public Clock clock() {
+        return Clock.systemUTC();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public UserDetailsService userDetailsService(
+            SsoSecurityProperties props,
+            PasswordEncoder encoder,
+            MaintenanceScheduler scheduler) {
+
+        SsoSecurityProperties.Users users = props.getUsers();
+        if (users.getFile() != null) {
+            FileUserDetailsService store = new FileUserDetailsService(Path.of(users.getFile()));
+            if (users.getReloadIntervalSeconds() > 0) {
+                scheduler.schedule("user-file-reload", store::reloadIfChanged,
+                        Duration.ofSeconds(users.getReloadIntervalSeconds()));
+            }
+            return store;
+        }
+
+        // the demo passwords are hashed on the first login, not at startup
+        return new LazyUserDetailsManager(() -> {
+            UserDetails admin = User.withUsername("admin")
+                    .password(encoder.encode("admin"))
+                    .roles("ADMIN")
+                    .build();
+
+            UserDetails user = User.withUsername("user")
+                    .password(encoder.encode("user"))
+                    .roles("USER")
+                    .build();
+
+            return new InMemoryUserDetailsManager(admin, user);
+        });
+    }
+
+    @Bean
+    public PasswordEncoder passwordEncoder(
+            SsoSecurityProperties props,
+            ObjectProvider<UserDetailsPasswordService> passwordServices) {
 
+        SsoSecurityProperties.Password config = props.getPassword();
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(config.getBcryptStrength());
+
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put("bcrypt", bcrypt);
+
+        // probing for BouncyCastle opens and verifies its signed jar: only pay for it at
+        // startup when Argon2 is the configured encoder, otherwise on the first {argon2} hash
+        SsoSecurityProperties.Password.Argon2 argon2 = config.getArgon2();
+        if (config.getEncoder() == SsoSecurityProperties.Password.Encoder.ARGON2) {
+            if (!ClassUtils.isPresent(ARGON2_PARAMETERS, null)) {
+                throw new IllegalStateException(
+                        "sso.password.encoder=argon2 requires org.bouncycastle:bcprov-jdk18on");
+            }
+            encoders.put("argon2", argon2Encoder(argon2));
+        } else {
+            encoders.put("argon2", new LazyPasswordEncoder(() -> {
+                if (!ClassUtils.isPresent(ARGON2_PARAMETERS, null)) {
+                    throw new IllegalArgumentException("{argon2} hashes require org.bouncycastle:bcprov-jdk18on");
+                }
+                return argon2Encoder(argon2);
+            }));
+        }
+
+        String encodingId = config.getEncoder().name().toLowerCase(Locale.ROOT);
+
+        // hashes stored without an {id} prefix are treated as BCrypt
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(encodingId, encoders);
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+
+        // looked up on the first login: the user service may itself depend on this encoder
+        SingletonSupplier<Boolean> upgradesStored = SingletonSupplier.of(() -> passwordServices.getIfAvailable() != null);
+        return new UpgradeAwarePasswordEncoder(encoder, upgradesStored::obtain);
+    }
+
+    private static PasswordEncoder argon2Encoder(SsoSecurityProperties.Password.Argon2 argon2) {
+        return new Argon2PasswordEncoder(argon2.getSaltLength(), argon2.getHashLength(),
+                argon2.getParallelism(), argon2.getMemoryKib(), argon2.getIterations());
+    }
+
+    /**
+     * Checks passwords with the application's {@link AuthenticationManager}, custom providers
+     * included. WebFlux applications have none, so they get one over the user service.
+     */
+    @Bean
+    PasswordHashingExecutor passwordHashingExecutor(
+            ObjectProvider<AuthenticationManager> authenticationManager,
+            ObjectProvider<UserDetailsPasswordService> passwordServices,
+            UserDetailsService userDetailsService,
+            PasswordEncoder passwordEncoder,
+            SsoSecurityProperties props,
+            SsoMetrics metrics) {
+
+        AuthenticationManager manager = authenticationManager.getIfUnique(() -> {
+            DaoAuthenticationProvider provider = new DaoAuthenticationProvider(userDetailsService);
+            provider.setPasswordEncoder(passwordEncoder);
+            passwordServices.ifAvailable(provider::setUserDetailsPasswordService);
+            return new ProviderManager(provider);
+        });
+        return PasswordHashingExecutor.from(manager, props.getPassword().getHashing(), metrics);
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    @EnableMethodSecurity
+    @Import(LocalJwtController.class)
+    static class ServletConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        @ConditionalOnProperty(prefix = "sso", name = "mode", havingValue = "local")
+        LocalJwtAuthFilter jwtAuthenticationFilter(
+                    LocalJwtService jwtService,
+                    SsoMetrics metrics,
+                    PublicPathMatcher ssoPublicPaths){
+            return new LocalJwtAuthFilter(jwtService, metrics, ssoPublicPaths);
+        }
+
+        /**
+         * The filter runs inside the security chain only; without this the servlet container
+         * would pick up the bean and run it a second time.
+         */
+        @Bean
+        @ConditionalOnProperty(prefix = "sso", name = "mode", havingValue = "local")
+        FilterRegistrationBean<LocalJwtAuthFilter> jwtAuthenticationFilterRegistration(LocalJwtAuthFilter filter) {
+            FilterRegistrationBean<LocalJwtAuthFilter> registration = new FilterRegistrationBean<>(filter);
+            registration.setEnabled(false);
+            return registration;
+        }
+
+        @Bean
+        @ConditionalOnProperty(prefix = "sso", name = "mode", havingValue = "local")
+        SecurityFilterChain securityFilterChain(HttpSecurity http,
+                                                LocalJwtAuthFilter jwtAuthenticationFilter,
+                                                PublicPathMatcher ssoPublicPaths) throws Exception {
+            return http
+                    .csrf(AbstractHttpConfigurer::disable)
+                    .sessionManagement(s -> s.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                    .authorizeHttpRequests(auth -> auth
+                            .requestMatchers(request -> ssoPublicPaths.matches(
+                                    request.getRequestURI(), request.getContextPath().length())).permitAll()
+                            .anyRequest().authenticated()
+                    )
+                    .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+                    .build();
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        public AuthenticationManager authenticationManager(
+                AuthenticationConfiguration configuration
+        ) throws Exception {
+            return configuration.getAuthenticationManager();
+        }
+    }
+}
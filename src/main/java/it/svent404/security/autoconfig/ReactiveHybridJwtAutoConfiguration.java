@@ -0,0 +1,72 @@
+package it.svent404.security.autoconfig;
+
+import it.svent404.security.properties.SsoSecurityProperties;
+import it.svent404.security.service.HybridTokenRouter;
+import it.svent404.security.service.JwtConverter;
+import it.svent404.security.service.LocalJwtService;
+import it.svent404.security.service.ReactiveHybridAuthenticationManager;
+import it.svent404.security.service.ReactiveLocalJwtAuthenticationManager;
+import it.svent404.security.support.PublicPathMatcher;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBooleanProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtReactiveAuthenticationManager;
+import org.springframework.security.oauth2.server.resource.authentication.ReactiveJwtAuthenticationConverterAdapter;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatcher.MatchResult;
+
+/**
+ * WebFlux security for {@code hybrid} mode. The local login endpoints come from
+ * {@link ReactiveLocalJwtAutoConfiguration} and the reactive JWT decoder from
+ * {@link ReactiveKeycloakJwtAutoConfiguration}; this class only adds the dispatching chain.
+ */
+@AutoConfiguration(after = {
+        HybridJwtAutoConfiguration.class,
+        ReactiveLocalJwtAutoConfiguration.class,
+        ReactiveKeycloakJwtAutoConfiguration.class
+})
+@ConditionalOnBooleanProperty(prefix = "sso", name = "enabled", havingValue = true, matchIfMissing = false)
+@ConditionalOnProperty(prefix = "sso", name = "mode", havingValue = "hybrid", matchIfMissing = false)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@ConditionalOnClass(name = "org.springframework.web.reactive.DispatcherHandler")
+@EnableConfigurationProperties(SsoSecurityProperties.class)
+public class ReactiveHybridJwtAutoConfiguration {
+
+    @Bean
+    SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http,
+                                                  HybridTokenRouter hybridTokenRouter,
+                                                  LocalJwtService localJwtService,
+                                                  ReactiveJwtDecoder reactiveJwtDecoder,
+                                                  JwtConverter jwtConverter,
+                                                  PublicPathMatcher ssoPublicPaths) {
+
+        JwtReactiveAuthenticationManager oauth2 = new JwtReactiveAuthenticationManager(reactiveJwtDecoder);
+        oauth2.setJwtAuthenticationConverter(new ReactiveJwtAuthenticationConverterAdapter(jwtConverter));
+        ReactiveHybridAuthenticationManager hybrid = new ReactiveHybridAuthenticationManager(
+                hybridTokenRouter, new ReactiveLocalJwtAuthenticationManager(localJwtService), oauth2);
+
+        return http
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .httpBasic(ServerHttpSecurity.HttpBasicSpec::disable)
+                .formLogin(ServerHttpSecurity.FormLoginSpec::disable)
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .authorizeExchange(auth -> auth
+                        .matchers(exchange -> ssoPublicPaths.matches(
+                                exchange.getRequest().getPath().pathWithinApplication().value())
+                                ? MatchResult.match()
+                                : MatchResult.notMatch()).permitAll()
+                        .anyExchange().authenticated()
+                )
+                .oauth2ResourceServer(oauth2Spec -> oauth2Spec
+                        .jwt(jwt -> jwt.authenticationManager(hybrid))
+                )
+                .build();
+    }
+}
@@ -0,0 +1,86 @@
+package it.svent404.security.autoconfig;
+
+import it.svent404.security.key.CachingJwkSource;
+import it.svent404.security.key.ReactiveCachingJwkSource;
+import it.svent404.security.metrics.InstrumentedReactiveJwtDecoder;
+import it.svent404.security.metrics.SsoMetrics;
+import it.svent404.security.properties.SsoSecurityProperties;
+import it.svent404.security.service.JwtConverter;
+import it.svent404.security.support.PublicPathMatcher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBooleanProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.ReactiveJwtAuthenticationConverterAdapter;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatcher.MatchResult;
+
+import java.time.Clock;
+
+/**
+ * WebFlux security for {@code oauth2} mode. The JWK Set cache and {@link JwtConverter} come from
+ * {@link KeycloakJwtAutoConfiguration}; keys already cached are resolved on the event loop and
+ * fetches are moved off it by {@link ReactiveCachingJwkSource}. In {@code hybrid} mode the
+ * decoder is used by {@link ReactiveHybridJwtAutoConfiguration} and no chain is added here.
+ */
+@AutoConfiguration(after = KeycloakJwtAutoConfiguration.class)
+@ConditionalOnBooleanProperty(prefix = "sso", name = "enabled", havingValue = true, matchIfMissing = false)
+@ConditionalOnExpression("'${sso.mode:}' == 'oauth2' or '${sso.mode:}' == 'hybrid'")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@ConditionalOnClass(name = "org.springframework.web.reactive.DispatcherHandler")
+@EnableConfigurationProperties(SsoSecurityProperties.class)
+@EnableWebFluxSecurity
+@EnableReactiveMethodSecurity
+public class ReactiveKeycloakJwtAutoConfiguration {
+
+    @Bean
+    ReactiveJwtDecoder reactiveJwtDecoder(CachingJwkSource jwkSource,
+                                          SsoSecurityProperties props,
+                                          @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri:}") String issuerUri,
+                                          Clock clock,
+                                          SsoMetrics metrics) {
+        NimbusReactiveJwtDecoder decoder = NimbusReactiveJwtDecoder
+                .withJwkSource(new ReactiveCachingJwkSource(jwkSource))
+                .build();
+        decoder.setJwtValidator(KeycloakJwtAutoConfiguration.jwtValidator(props, issuerUri, clock));
+        return new InstrumentedReactiveJwtDecoder(decoder, metrics);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "sso", name = "mode", havingValue = "oauth2")
+    SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http,
+                                                  ReactiveJwtDecoder reactiveJwtDecoder,
+                                                  JwtConverter jwtConverter,
+                                                  PublicPathMatcher ssoPublicPaths) {
+        return http
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .httpBasic(ServerHttpSecurity.HttpBasicSpec::disable)
+                .formLogin(ServerHttpSecurity.FormLoginSpec::disable)
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .authorizeExchange(auth -> auth
+                        .matchers(exchange -> ssoPublicPaths.matches(
+                                exchange.getRequest().getPath().pathWithinApplication().value())
+                                ? MatchResult.match()
+                                : MatchResult.notMatch()).permitAll()
+                        .anyExchange().authenticated()
+                )
+                .oauth2ResourceServer(oauth2 -> oauth2
+                        .jwt(jwt -> jwt
+                                .jwtDecoder(reactiveJwtDecoder)
+                                .jwtAuthenticationConverter(new ReactiveJwtAuthenticationConverterAdapter(jwtConverter))
+                        )
+                )
+                .build();
+    }
+}
@@ -0,0 +1,81 @@
+package it.svent404.security.autoconfig;
+
+import it.svent404.security.controller.ReactiveLocalJwtController;
+import it.svent404.security.filter.LocalJwtAuthWebFilter;
+import it.svent404.security.metrics.SsoMetrics;
+import it.svent404.security.properties.SsoSecurityProperties;
+import it.svent404.security.service.LocalJwtService;
+import it.svent404.security.service.PasswordHashingExecutor;
+import it.svent404.security.service.ReactiveLocalJwtAuthenticationManager;
+import it.svent404.security.support.PublicPathMatcher;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBooleanProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatcher.MatchResult;
+import reactor.core.publisher.Mono;
+
+/**
+ * WebFlux security for {@code local} mode. Token services, key ring and stores come from
+ * {@link LocalJwtAutoConfiguration}; this class only adds the reactive filter chain, the
+ * login manager and the {@code /auth} endpoints. In {@code hybrid} mode only the latter two.
+ */
+@AutoConfiguration(after = LocalJwtAutoConfiguration.class)
+@ConditionalOnBooleanProperty(prefix = "sso", name = "enabled", havingValue = true, matchIfMissing = false)
+@ConditionalOnExpression("'${sso.mode:}' == 'local' or '${sso.mode:}' == 'hybrid'")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@ConditionalOnClass(name = "org.springframework.web.reactive.DispatcherHandler")
+@EnableConfigurationProperties(SsoSecurityProperties.class)
+@EnableWebFluxSecurity
+@EnableReactiveMethodSecurity
+@Import(ReactiveLocalJwtController.class)
+public class ReactiveLocalJwtAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "sso", name = "mode", havingValue = "local")
+    LocalJwtAuthWebFilter localJwtAuthWebFilter(LocalJwtService jwtService, SsoMetrics metrics,
+                                                PublicPathMatcher ssoPublicPaths) {
+        return new LocalJwtAuthWebFilter(new ReactiveLocalJwtAuthenticationManager(jwtService), metrics, ssoPublicPaths);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "sso", name = "mode", havingValue = "local")
+    SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http,
+                                                  LocalJwtAuthWebFilter localJwtAuthWebFilter,
+                                                  PublicPathMatcher ssoPublicPaths) {
+        return http
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .httpBasic(ServerHttpSecurity.HttpBasicSpec::disable)
+                .formLogin(ServerHttpSecurity.FormLoginSpec::disable)
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .authorizeExchange(auth -> auth
+                        .matchers(exchange -> ssoPublicPaths.matches(
+                                exchange.getRequest().getPath().pathWithinApplication().value())
+                                ? MatchResult.match()
+                                : MatchResult.notMatch()).permitAll()
+                        .anyExchange().authenticated()
+                )
+                .addFilterAt(localJwtAuthWebFilter, SecurityWebFiltersOrder.AUTHENTICATION)
+                .build();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    ReactiveAuthenticationManager reactiveAuthenticationManager(PasswordHashingExecutor passwordHashing) {
+        return authentication -> Mono.fromFuture(() -> passwordHashing.authenticate(authentication));
+    }
+}
@@ -0,0 +1,12 @@
+package it.svent404.security.cache;
+
+import org.springframework.security.core.Authentication;
+
+import java.time.Clock;
+
+public class AuthenticationCache extends ExpiringCache<Authentication> {
+
+    public AuthenticationCache(int maxEntries, Clock clock) {
+        super(maxEntries, clock);
+    }
+}
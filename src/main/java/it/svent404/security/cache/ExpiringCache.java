@@ -0,0 +1,116 @@
+package it.svent404.security.cache;
+
+import it.svent404.security.support.TokenDigest;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded map from token digest to a value that stops being served at a fixed instant,
+ * normally the token's own expiry.
+ */
+public class ExpiringCache<V> {
+
+    private final Map<TokenDigest, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final Clock clock;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ExpiringCache(int maxEntries, Clock clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    public V get(TokenDigest digest) {
+        Entry<V> entry = entries.get(digest);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+
+        if (entry.expiresAtMillis() <= clock.millis()) {
+            if (entries.remove(digest, entry)) {
+                evictions.increment();
+            }
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return entry.value();
+    }
+
+    public void put(TokenDigest digest, V value, Instant expiresAt) {
+        long expiresAtMillis = expiresAt.toEpochMilli();
+        if (expiresAtMillis <= clock.millis()) {
+            return;
+        }
+
+        if (entries.size() >= maxEntries && !entries.containsKey(digest)) {
+            makeRoom();
+        }
+        entries.put(digest, new Entry<>(value, expiresAtMillis));
+    }
+
+    public void evict(TokenDigest digest) {
+        if (entries.remove(digest) != null) {
+            evictions.increment();
+        }
+    }
+
+    public void purgeExpired() {
+        long now = clock.millis();
+        entries.entrySet().removeIf(e -> {
+            boolean expired = e.getValue().expiresAtMillis() <= now;
+            if (expired) {
+                evictions.increment();
+            }
+            return expired;
+        });
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private synchronized void makeRoom() {
+        if (entries.size() < maxEntries) {
+            return;
+        }
+
+        purgeExpired();
+
+        // Still full of live tokens: drop a slice at once so the next inserts do not sweep again.
+        int target = maxEntries - Math.max(1, maxEntries / 10);
+        Iterator<TokenDigest> it = entries.keySet().iterator();
+        while (entries.size() > target && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private record Entry<V>(V value, long expiresAtMillis) {}
+}
@@ -1,40 +1,55 @@
 package it.svent404.security.controller;
 
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import it.svent404.security.model.request.BatchTokenRequest;
 import it.svent404.security.model.request.LoginRequest;
 import it.svent404.security.model.response.IntrospectionResponse;
 import it.svent404.security.model.response.TokenResponse;
 import it.svent404.security.model.response.UserInfoResponse;
+import it.svent404.security.ratelimit.AuthRateLimits;
+import it.svent404.security.ratelimit.RateLimitExceededException;
+import it.svent404.security.ratelimit.TrustedProxies;
 import it.svent404.security.service.LocalJwtService;
+import it.svent404.security.service.PasswordCheckRejectedException;
+import it.svent404.security.service.PasswordHashingExecutor;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.AllArgsConstructor;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/auth")
 @AllArgsConstructor
 public class LocalJwtController {
 
-    private final AuthenticationManager authenticationManager;
+    private final PasswordHashingExecutor passwordHashing;
     private final LocalJwtService jwtService;
+    private final AuthRateLimits rateLimits;
 
+    /**
+     * Completes asynchronously: the request thread is released while the password is checked
+     * on the hashing pool.
+     */
     @PostMapping("/token")
-    public TokenResponse token(@RequestBody LoginRequest request) {
-
-        Authentication auth = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                        request.username(), request.password()
-                )
-        );
-
-        return jwtService.generate(auth);
+    public CompletableFuture<TokenResponse> token(@RequestBody LoginRequest request, HttpServletRequest http) {
+        rateLimits.checkLogin(clientOf(http), request.username());
+        return passwordHashing.authenticate(request.username(), request.password())
+                .thenApply(jwtService::generate);
     }
 
     @PostMapping("/refresh")
     @SecurityRequirement(name = "bearerAuth")
-    public TokenResponse refresh(@RequestBody String refreshToken) {
+    public TokenResponse refresh(@RequestBody String refreshToken, HttpServletRequest http) {
+        rateLimits.checkRefresh(clientOf(http));
         return jwtService.refresh(refreshToken);
     }
 
@@ -46,14 +61,66 @@ public class LocalJwtController {
 
     @PostMapping("/introspect")
     @SecurityRequirement(name = "bearerAuth")
-    public IntrospectionResponse introspect(@RequestBody String token) {
+    public IntrospectionResponse introspect(@RequestBody String token, HttpServletRequest http) {
+        rateLimits.checkIntrospect(clientOf(http), 1);
         return jwtService.introspect(token);
     }
 
+    @PostMapping("/introspect/batch")
+    @SecurityRequirement(name = "bearerAuth")
+    public List<IntrospectionResponse> introspectBatch(@RequestBody BatchTokenRequest request,
+                                                      HttpServletRequest http) {
+        rateLimits.checkIntrospect(clientOf(http), request.tokens().size());
+        return jwtService.introspectAll(request.tokens());
+    }
+
+    @GetMapping("/jwks")
+    public Map<String, Object> jwks() {
+        return jwtService.jwks();
+    }
+
     @PostMapping("/logout")
     @SecurityRequirement(name = "bearerAuth")
-    public void logout(@RequestBody String token) {
+    public void logout(@RequestBody String token, HttpServletRequest http) {
+        rateLimits.checkIntrospect(clientOf(http), 1);
         jwtService.invalidate(token);
     }
+
+    @PostMapping("/logout/batch")
+    @SecurityRequirement(name = "bearerAuth")
+    public void logoutBatch(@RequestBody BatchTokenRequest request,
+                            HttpServletRequest http) {
+        rateLimits.checkIntrospect(clientOf(http), request.tokens().size());
+        jwtService.invalidateAll(request.tokens());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public void badRequest() {
+    }
+
+    @ExceptionHandler(AuthenticationException.class)
+    @ResponseStatus(HttpStatus.UNAUTHORIZED)
+    public void unauthorized() {
+    }
+
+    @ExceptionHandler(PasswordCheckRejectedException.class)
+    public ResponseEntity<Void> rejected(PasswordCheckRejectedException ex) {
+        return ResponseEntity.status(ex.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()))
+                .build();
+    }
+
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<Void> rateLimited(RateLimitExceededException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()))
+                .build();
+    }
+
+    private String clientOf(HttpServletRequest request) {
+        return rateLimits.clientOf(request.getRemoteAddr(),
+                Collections.list(request.getHeaders(TrustedProxies.FORWARDED_FOR)));
+    }
 }
 
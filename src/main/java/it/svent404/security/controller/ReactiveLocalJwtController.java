@@ -0,0 +1,149 @@
+package it.svent404.security.controller;
+
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import it.svent404.security.model.request.BatchTokenRequest;
+import it.svent404.security.model.request.LoginRequest;
+import it.svent404.security.model.response.IntrospectionResponse;
+import it.svent404.security.model.response.TokenResponse;
+import it.svent404.security.model.response.UserInfoResponse;
+import it.svent404.security.ratelimit.AuthRateLimits;
+import it.svent404.security.ratelimit.RateLimitExceededException;
+import it.svent404.security.ratelimit.TrustedProxies;
+import it.svent404.security.service.LocalJwtService;
+import it.svent404.security.service.PasswordCheckRejectedException;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * WebFlux counterpart of {@link LocalJwtController}. Password checks run on the hashing pool
+ * behind the reactive authentication manager, and calls that may touch a blocking revocation store run
+ * on the bounded elastic scheduler.
+ */
+@RestController
+@RequestMapping("/auth")
+@AllArgsConstructor
+public class ReactiveLocalJwtController {
+
+    private final ReactiveAuthenticationManager authenticationManager;
+    private final LocalJwtService jwtService;
+    private final AuthRateLimits rateLimits;
+
+    @PostMapping("/token")
+    public Mono<TokenResponse> token(@RequestBody LoginRequest request, ServerHttpRequest http) {
+        rateLimits.checkLogin(clientOf(http), request.username());
+        return authenticationManager.authenticate(
+                        new UsernamePasswordAuthenticationToken(
+                                request.username(), request.password()
+                        )
+                )
+                .map(jwtService::generate);
+    }
+
+    @PostMapping("/refresh")
+    @SecurityRequirement(name = "bearerAuth")
+    public Mono<TokenResponse> refresh(@RequestBody String refreshToken, ServerHttpRequest http) {
+        rateLimits.checkRefresh(clientOf(http));
+        // reloads the user, which may block
+        return blocking(() -> jwtService.refresh(refreshToken));
+    }
+
+    @GetMapping("/userinfo")
+    @SecurityRequirement(name = "bearerAuth")
+    public Mono<UserInfoResponse> userinfo(Authentication authentication) {
+        return Mono.just(UserInfoResponse.from(authentication));
+    }
+
+    @PostMapping("/introspect")
+    @SecurityRequirement(name = "bearerAuth")
+    public Mono<IntrospectionResponse> introspect(@RequestBody String token, ServerHttpRequest http) {
+        rateLimits.checkIntrospect(clientOf(http), 1);
+        return verifying(() -> jwtService.introspect(token));
+    }
+
+    @PostMapping("/introspect/batch")
+    @SecurityRequirement(name = "bearerAuth")
+    public Mono<List<IntrospectionResponse>> introspectBatch(@RequestBody BatchTokenRequest request,
+                                                            ServerHttpRequest http) {
+        rateLimits.checkIntrospect(clientOf(http), request.tokens().size());
+        return blocking(() -> jwtService.introspectAll(request.tokens()));
+    }
+
+    @GetMapping("/jwks")
+    public Map<String, Object> jwks() {
+        return jwtService.jwks();
+    }
+
+    @PostMapping("/logout")
+    @SecurityRequirement(name = "bearerAuth")
+    public Mono<Void> logout(@RequestBody String token, ServerHttpRequest http) {
+        rateLimits.checkIntrospect(clientOf(http), 1);
+        return blocking(() -> {
+            jwtService.invalidate(token);
+            return null;
+        });
+    }
+
+    @PostMapping("/logout/batch")
+    @SecurityRequirement(name = "bearerAuth")
+    public Mono<Void> logoutBatch(@RequestBody BatchTokenRequest request,
+                                  ServerHttpRequest http) {
+        rateLimits.checkIntrospect(clientOf(http), request.tokens().size());
+        return blocking(() -> {
+            jwtService.invalidateAll(request.tokens());
+            return null;
+        });
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public void badRequest() {
+    }
+
+    @ExceptionHandler(AuthenticationException.class)
+    @ResponseStatus(HttpStatus.UNAUTHORIZED)
+    public void unauthorized() {
+    }
+
+    @ExceptionHandler(PasswordCheckRejectedException.class)
+    public ResponseEntity<Void> rejected(PasswordCheckRejectedException ex) {
+        return ResponseEntity.status(ex.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()))
+                .build();
+    }
+
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<Void> rateLimited(RateLimitExceededException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()))
+                .build();
+    }
+
+    private String clientOf(ServerHttpRequest request) {
+        InetSocketAddress address = request.getRemoteAddress();
+        return rateLimits.clientOf(address != null ? address.getHostString() : null,
+                request.getHeaders().getOrEmpty(TrustedProxies.FORWARDED_FOR));
+    }
+
+    private <T> Mono<T> verifying(Callable<T> call) {
+        return jwtService.isNonBlocking() ? Mono.fromCallable(call) : blocking(call);
+    }
+
+    private static <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -0,0 +1,41 @@
+package it.svent404.security.filter;
+
+/**
+ * Checks an {@code Authorization} header in place, so that headers which are missing,
+ * use another scheme or carry a malformed token are turned away before anything is copied.
+ */
+final class BearerHeader {
+
+    static final String SCHEME = "Bearer ";
+    static final int TOKEN_START = SCHEME.length();
+
+    private BearerHeader() {
+    }
+
+    static boolean isBearer(String header) {
+        return header != null && header.regionMatches(true, 0, SCHEME, 0, TOKEN_START);
+    }
+
+    /**
+     * Whether the credentials after the scheme are a non-empty token68 (RFC 7235), which
+     * every token this library issues or accepts is.
+     */
+    static boolean hasWellFormedToken(String header) {
+        int end = header.length();
+        while (end > TOKEN_START && header.charAt(end - 1) == '=') {
+            end--;
+        }
+        if (end == TOKEN_START) {
+            return false;
+        }
+        for (int i = TOKEN_START; i < end; i++) {
+            char c = header.charAt(i);
+            boolean allowed = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '.' || c == '_' || c == '~' || c == '+' || c == '/';
+            if (!allowed) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
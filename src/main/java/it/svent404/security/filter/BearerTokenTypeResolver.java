@@ -0,0 +1,40 @@
+package it.svent404.security.filter;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.AllArgsConstructor;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationManagerResolver;
+import org.springframework.security.oauth2.server.resource.web.BearerTokenResolver;
+import org.springframework.security.oauth2.server.resource.web.DefaultBearerTokenResolver;
+
+/**
+ * Sends bearer tokens shaped like a JWS (three dot-separated parts) to local JWT validation and
+ * everything else to opaque-token introspection, without parsing the token.
+ */
+@AllArgsConstructor
+public class BearerTokenTypeResolver implements AuthenticationManagerResolver<HttpServletRequest> {
+
+    private final BearerTokenResolver bearerTokenResolver;
+    private final AuthenticationManager jwtAuthenticationManager;
+    private final AuthenticationManager opaqueAuthenticationManager;
+
+    public BearerTokenTypeResolver(AuthenticationManager jwtAuthenticationManager,
+                                   AuthenticationManager opaqueAuthenticationManager) {
+        this(new DefaultBearerTokenResolver(), jwtAuthenticationManager, opaqueAuthenticationManager);
+    }
+
+    @Override
+    public AuthenticationManager resolve(HttpServletRequest request) {
+        String token = bearerTokenResolver.resolve(request);
+        return token != null && isJws(token) ? jwtAuthenticationManager : opaqueAuthenticationManager;
+    }
+
+    static boolean isJws(String token) {
+        int first = token.indexOf('.');
+        if (first < 0) {
+            return false;
+        }
+        int second = token.indexOf('.', first + 1);
+        return second > 0 && token.indexOf('.', second + 1) < 0;
+    }
+}
@@ -1,6 +1,10 @@
 package it.svent404.security.filter;
 
+import it.svent404.security.metrics.SsoMetrics;
+import it.svent404.security.metrics.SsoMetrics.Outcome;
+import it.svent404.security.metrics.SsoMetrics.Stage;
 import it.svent404.security.service.LocalJwtService;
+import it.svent404.security.support.PublicPathMatcher;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -11,18 +15,27 @@ import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.filter.OncePerRequestFilter;
 import java.io.IOException;
+import java.util.List;
 
+/**
+ * Authenticates requests carrying a local bearer token. Requests without one pass through
+ * unauthenticated; a malformed or invalid token is answered with 401. Paths matched by
+ * {@code publicPaths} are not filtered at all.
+ */
 @AllArgsConstructor
 public class LocalJwtAuthFilter extends OncePerRequestFilter {
 
     private final LocalJwtService jwtService;
+    private final SsoMetrics metrics;
+    private final PublicPathMatcher publicPaths;
+
+    public LocalJwtAuthFilter(LocalJwtService jwtService) {
+        this(jwtService, SsoMetrics.NOOP, PublicPathMatcher.of(List.of()));
+    }
 
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) {
-        String path = request.getServletPath();
-        return path.startsWith("/auth/token")
-                || path.startsWith("/swagger-ui")
-                || path.startsWith("/v3/api-docs");
+        return publicPaths.matches(request.getRequestURI(), request.getContextPath().length());
     }
 
     @Override
@@ -31,23 +44,35 @@ public class LocalJwtAuthFilter extends OncePerRequestFilter {
             HttpServletResponse response,
             FilterChain filterChain
     ) throws ServletException, IOException {
+        long start = System.nanoTime();
         String authHeader = request.getHeader("Authorization");
 
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+        if (!BearerHeader.isBearer(authHeader)) {
+            metrics.record(Stage.FILTER, Outcome.MISSING, start);
             filterChain.doFilter(request, response);
             return;
         }
+        if (!BearerHeader.hasWellFormedToken(authHeader)) {
+            reject(response, start);
+            return;
+        }
 
-        String token = authHeader.substring(7);
-
+        Authentication authentication;
         try {
-            Authentication authentication = jwtService.toAuthentication(token);
-            SecurityContextHolder.getContext().setAuthentication(authentication);
-            filterChain.doFilter(request, response);
-
+            authentication = jwtService.toAuthentication(authHeader.substring(BearerHeader.TOKEN_START));
         } catch (AuthenticationException ex) {
-            SecurityContextHolder.clearContext();
-            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            reject(response, start);
+            return;
         }
+
+        metrics.record(Stage.FILTER, Outcome.SUCCESS, start);
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        filterChain.doFilter(request, response);
+    }
+
+    private void reject(HttpServletResponse response, long start) {
+        metrics.record(Stage.FILTER, Outcome.INVALID, start);
+        SecurityContextHolder.clearContext();
+        response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
     }
 }
@@ -0,0 +1,63 @@
+package it.svent404.security.filter;
+
+import it.svent404.security.metrics.SsoMetrics;
+import it.svent404.security.metrics.SsoMetrics.Outcome;
+import it.svent404.security.metrics.SsoMetrics.Stage;
+import it.svent404.security.support.PublicPathMatcher;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.NonNull;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * WebFlux counterpart of {@link LocalJwtAuthFilter}: requests without a bearer token pass
+ * through unauthenticated, a malformed or invalid token is answered with 401.
+ */
+@AllArgsConstructor
+public class LocalJwtAuthWebFilter implements WebFilter {
+
+    private final ReactiveAuthenticationManager authenticationManager;
+    private final SsoMetrics metrics;
+    private final PublicPathMatcher publicPaths;
+
+    @Override
+    @NonNull
+    public Mono<Void> filter(@NonNull ServerWebExchange exchange, @NonNull WebFilterChain chain) {
+        if (publicPaths.matches(exchange.getRequest().getPath().pathWithinApplication().value())) {
+            return chain.filter(exchange);
+        }
+
+        long start = System.nanoTime();
+        String authHeader = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (!BearerHeader.isBearer(authHeader)) {
+            metrics.record(Stage.FILTER, Outcome.MISSING, start);
+            return chain.filter(exchange);
+        }
+        if (!BearerHeader.hasWellFormedToken(authHeader)) {
+            return reject(exchange, start);
+        }
+
+        String token = authHeader.substring(BearerHeader.TOKEN_START);
+        return authenticationManager.authenticate(new BearerTokenAuthenticationToken(token))
+                .onErrorResume(AuthenticationException.class, ex -> reject(exchange, start).then(Mono.empty()))
+                .flatMap(authentication -> {
+                    metrics.record(Stage.FILTER, Outcome.SUCCESS, start);
+                    return chain.filter(exchange)
+                            .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication));
+                });
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange, long start) {
+        metrics.record(Stage.FILTER, Outcome.INVALID, start);
+        exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
+        return exchange.getResponse().setComplete();
+    }
+}
@@ -0,0 +1,223 @@
+package it.svent404.security.key;
+
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.DefaultResourceRetriever;
+import com.nimbusds.jose.util.ResourceRetriever;
+import it.svent404.security.metrics.SsoMetrics;
+import it.svent404.security.metrics.SsoMetrics.Outcome;
+import it.svent404.security.metrics.SsoMetrics.Stage;
+import it.svent404.security.properties.SsoSecurityProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.text.ParseException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remote JWK Set held in memory and refreshed ahead of expiry by {@link #refreshIfDue()}.
+ * Request threads only block on the very first load and on a token whose {@code kid} is not in
+ * the current set; concurrent callers share a single fetch, and a failed fetch keeps the
+ * previous keys in service for as long as the IdP stays unreachable.
+ */
+@Slf4j
+public class CachingJwkSource implements JWKSource<SecurityContext> {
+
+    private static final int MAX_JWKS_BYTES = 512 * 1024;
+
+    private final URL jwkSetUrl;
+    private final ResourceRetriever retriever;
+    private final Clock clock;
+    private final long ttlMillis;
+    private final long refreshAheadMillis;
+    private final long refetchCooldownMillis;
+    private final SsoMetrics metrics;
+
+    private final AtomicReference<CompletableFuture<Snapshot>> inFlight = new AtomicReference<>();
+    private volatile Snapshot snapshot;
+    private volatile long lastAttemptMillis;
+
+    private final LongAdder fetchSuccesses = new LongAdder();
+    private final LongAdder fetchFailures = new LongAdder();
+    private final LongAdder staleServes = new LongAdder();
+    private final LongAdder unknownKeyMisses = new LongAdder();
+
+    public CachingJwkSource(URL jwkSetUrl, ResourceRetriever retriever, Clock clock,
+                            Duration ttl, Duration refreshAhead, Duration refetchCooldown,
+                            SsoMetrics metrics) {
+        if (refreshAhead.compareTo(ttl) >= 0) {
+            throw new IllegalArgumentException("refreshAhead must be shorter than ttl");
+        }
+        this.jwkSetUrl = jwkSetUrl;
+        this.retriever = retriever;
+        this.clock = clock;
+        this.ttlMillis = ttl.toMillis();
+        this.refreshAheadMillis = refreshAhead.toMillis();
+        this.refetchCooldownMillis = refetchCooldown.toMillis();
+        this.metrics = metrics;
+    }
+
+    public static CachingJwkSource from(String jwkSetUri, SsoSecurityProperties.Jwks jwks, Clock clock, SsoMetrics metrics) {
+        try {
+            return new CachingJwkSource(
+                    URI.create(jwkSetUri).toURL(),
+                    new DefaultResourceRetriever(jwks.getConnectTimeoutMillis(), jwks.getReadTimeoutMillis(), MAX_JWKS_BYTES),
+                    clock,
+                    Duration.ofSeconds(jwks.getTtlSeconds()),
+                    Duration.ofSeconds(jwks.getRefreshAheadSeconds()),
+                    Duration.ofSeconds(jwks.getRefetchCooldownSeconds()),
+                    metrics
+            );
+        } catch (MalformedURLException ex) {
+            throw new IllegalArgumentException("Invalid JWK Set URI: " + jwkSetUri, ex);
+        }
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector selector, SecurityContext context) throws KeySourceException {
+        List<JWK> keys = selectCached(selector);
+        if (keys != null) {
+            return keys;
+        }
+        if (snapshot != null) {
+            unknownKeyMisses.increment();
+        }
+        return selector.select(fetch().keys());
+    }
+
+    /**
+     * The keys {@link #get} would return, or {@code null} when answering needs a fetch. Never
+     * blocks, so reactive callers can stay on the event loop for the common case.
+     */
+    public List<JWK> selectCached(JWKSelector selector) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        if (clock.millis() - current.fetchedAtMillis() >= ttlMillis) {
+            staleServes.increment();
+        }
+
+        List<JWK> keys = selector.select(current.keys());
+        if (keys.isEmpty() && requestsKeyId(selector)
+                && (inFlight.get() != null || clock.millis() - lastAttemptMillis >= refetchCooldownMillis)) {
+            // a fetch already under way may bring the key: wait for it rather than fail the token
+            return null;
+        }
+        return keys;
+    }
+
+    /**
+     * Refetches the key set once it is within {@code refreshAhead} of expiring. Meant to be
+     * called periodically, see {@link #checkInterval()}; failures are logged and retried on the
+     * next call.
+     */
+    public void refreshIfDue() {
+        Snapshot current = snapshot;
+        if (current != null && clock.millis() - current.fetchedAtMillis() < ttlMillis - refreshAheadMillis) {
+            return;
+        }
+        try {
+            fetch();
+        } catch (KeySourceException ex) {
+            log.warn("Initial JWK Set fetch from {} failed: {}", jwkSetUrl, ex.getMessage());
+        }
+    }
+
+    public Duration checkInterval() {
+        return Duration.ofMillis(Math.max(1000, refreshAheadMillis / 2));
+    }
+
+    public long getFetchSuccesses() {
+        return fetchSuccesses.sum();
+    }
+
+    public long getFetchFailures() {
+        return fetchFailures.sum();
+    }
+
+    public long getStaleServes() {
+        return staleServes.sum();
+    }
+
+    public long getUnknownKeyMisses() {
+        return unknownKeyMisses.sum();
+    }
+
+    /**
+     * Seconds since the key set in use was fetched, or {@code -1} before the first fetch.
+     */
+    public double getAgeSeconds() {
+        Snapshot current = snapshot;
+        return current == null ? -1 : (clock.millis() - current.fetchedAtMillis()) / 1000.0;
+    }
+
+    private Snapshot fetch() throws KeySourceException {
+        CompletableFuture<Snapshot> mine = new CompletableFuture<>();
+        CompletableFuture<Snapshot> running = inFlight.compareAndExchange(null, mine);
+        if (running == null) {
+            try {
+                mine.complete(load());
+            } catch (KeySourceException | RuntimeException ex) {
+                mine.completeExceptionally(ex);
+            } finally {
+                inFlight.set(null);
+            }
+            running = mine;
+        }
+
+        try {
+            return running.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof KeySourceException keySourceException) {
+                throw keySourceException;
+            }
+            throw ex;
+        }
+    }
+
+    private Snapshot load() throws KeySourceException {
+        long start = System.nanoTime();
+        lastAttemptMillis = clock.millis();
+        try {
+            JWKSet keys = JWKSet.parse(retriever.retrieveResource(jwkSetUrl).getContent());
+            Snapshot loaded = new Snapshot(keys, clock.millis());
+            snapshot = loaded;
+            fetchSuccesses.increment();
+            metrics.record(Stage.JWKS_FETCH, Outcome.SUCCESS, start);
+            return loaded;
+        } catch (IOException | ParseException ex) {
+            fetchFailures.increment();
+            metrics.record(Stage.JWKS_FETCH, Outcome.ERROR, start);
+            Snapshot stale = snapshot;
+            if (stale == null) {
+                throw new KeySourceException("Cannot fetch JWK Set from " + jwkSetUrl, ex);
+            }
+            log.warn("JWK Set refresh from {} failed, keeping keys fetched {}s ago: {}",
+                    jwkSetUrl, (clock.millis() - stale.fetchedAtMillis()) / 1000, ex.getMessage());
+            return stale;
+        }
+    }
+
+    private static boolean requestsKeyId(JWKSelector selector) {
+        Set<String> keyIds = selector.getMatcher().getKeyIDs();
+        return keyIds != null && !keyIds.isEmpty();
+    }
+
+    private record Snapshot(JWKSet keys, long fetchedAtMillis) {
+    }
+}
@@ -0,0 +1,41 @@
+package it.svent404.security.key;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jwt.SignedJWT;
+import lombok.AllArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Key lookup for {@code NimbusReactiveJwtDecoder} backed by a {@link CachingJwkSource}. Keys
+ * already in memory are returned on the calling thread; a lookup that needs a fetch runs on
+ * the bounded elastic scheduler so event-loop threads never wait on the IdP.
+ */
+@AllArgsConstructor
+public class ReactiveCachingJwkSource implements Function<SignedJWT, Flux<JWK>> {
+
+    private final CachingJwkSource source;
+
+    @Override
+    public Flux<JWK> apply(SignedJWT jwt) {
+        JWKMatcher matcher = JWKMatcher.forJWSHeader(jwt.getHeader());
+        if (matcher == null) {
+            return Flux.empty();
+        }
+
+        JWKSelector selector = new JWKSelector(matcher);
+        List<JWK> cached = source.selectCached(selector);
+        if (cached != null) {
+            return Flux.fromIterable(cached);
+        }
+        return Mono.fromCallable(() -> source.get(selector, null))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapIterable(Function.identity());
+    }
+}
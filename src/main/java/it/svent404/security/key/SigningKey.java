@@ -0,0 +1,9 @@
+package it.svent404.security.key;
+
+import java.security.Key;
+
+public record SigningKey(
+        String kid,
+        Key signingKey,
+        Key verificationKey
+) {}
@@ -0,0 +1,185 @@
+package it.svent404.security.key;
+
+import io.jsonwebtoken.security.Jwks;
+import it.svent404.security.properties.SsoSecurityProperties;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.interfaces.ECKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Reads the signing keys configured under {@code sso.jwt.keys} and {@code sso.jwt.key-store}.
+ * Every pair is checked by signing and verifying a probe, so a private key that does not match its
+ * public key fails at startup instead of issuing tokens nobody can verify.
+ */
+final class SigningKeyLoader {
+
+    private static final byte[] PROBE = "sso-signing-key-probe".getBytes(StandardCharsets.US_ASCII);
+
+    private final SsoSecurityProperties.Jwt.Algorithm algorithm;
+    private final ResourceLoader resources = new DefaultResourceLoader();
+
+    SigningKeyLoader(SsoSecurityProperties.Jwt.Algorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Configured keys in order, PEM keys before keystore entries; the first one signs.
+     */
+    List<SigningKey> load(SsoSecurityProperties.Jwt jwt) {
+        List<SigningKey> keys = new ArrayList<>();
+        for (SsoSecurityProperties.PemKey pem : jwt.getKeys()) {
+            keys.add(pem(pem));
+        }
+        SsoSecurityProperties.Keystore keyStore = jwt.getKeyStore();
+        if (keyStore.getLocation() != null) {
+            keys.addAll(keyStore(keyStore));
+        }
+        return keys;
+    }
+
+    private SigningKey pem(SsoSecurityProperties.PemKey pem) {
+        if (pem.getPrivateKey() == null || pem.getPublicKey() == null) {
+            throw new IllegalStateException("sso.jwt.keys entries need both private-key and public-key");
+        }
+
+        try {
+            KeyFactory factory = KeyFactory.getInstance(keyAlgorithm());
+            PrivateKey privateKey = factory.generatePrivate(
+                    new PKCS8EncodedKeySpec(pemBody(pem.getPrivateKey(), "PRIVATE KEY")));
+
+            String publicPem = read(pem.getPublicKey());
+            PublicKey publicKey = publicPem.contains("-----BEGIN CERTIFICATE-----")
+                    ? certificate(pem.getPublicKey()).getPublicKey()
+                    : factory.generatePublic(new X509EncodedKeySpec(decode(publicPem, "PUBLIC KEY", pem.getPublicKey())));
+
+            return checked(pem.getKid(), privateKey, publicKey, pem.getPrivateKey());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot read " + algorithm + " key " + pem.getPrivateKey(), e);
+        }
+    }
+
+    private List<SigningKey> keyStore(SsoSecurityProperties.Keystore config) {
+        if (config.getAliases().isEmpty()) {
+            throw new IllegalStateException("sso.jwt.key-store.aliases must name at least one key");
+        }
+
+        char[] password = config.getPassword() != null ? config.getPassword().toCharArray() : null;
+        try (InputStream in = resource(config.getLocation()).getInputStream()) {
+            KeyStore store = KeyStore.getInstance(config.getType());
+            store.load(in, password);
+
+            List<SigningKey> keys = new ArrayList<>();
+            for (String alias : config.getAliases()) {
+                if (!(store.getKey(alias, password) instanceof PrivateKey privateKey)) {
+                    throw new IllegalStateException("No private key under alias " + alias + " in " + config.getLocation());
+                }
+                keys.add(checked(null, privateKey, store.getCertificate(alias).getPublicKey(),
+                        config.getLocation() + "#" + alias));
+            }
+            return keys;
+        } catch (IOException | GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot read keystore " + config.getLocation(), e);
+        }
+    }
+
+    private SigningKey checked(String kid, PrivateKey privateKey, PublicKey publicKey, String source)
+            throws GeneralSecurityException {
+
+        String expected = keyAlgorithm();
+        boolean edDsa = algorithm == SsoSecurityProperties.Jwt.Algorithm.EDDSA;
+        if (!(edDsa ? privateKey.getAlgorithm().startsWith("Ed") : expected.equals(privateKey.getAlgorithm()))) {
+            throw new IllegalStateException(source + " holds a " + privateKey.getAlgorithm()
+                    + " key, " + algorithm + " needs " + expected);
+        }
+        if (privateKey instanceof ECKey ec && ec.getParams().getCurve().getField().getFieldSize() != 256) {
+            throw new IllegalStateException(source + " is not a P-256 key, which ES256 needs");
+        }
+
+        Signature signer = Signature.getInstance(signatureAlgorithm());
+        signer.initSign(privateKey);
+        signer.update(PROBE);
+        byte[] signature = signer.sign();
+
+        Signature verifier = Signature.getInstance(signatureAlgorithm());
+        verifier.initVerify(publicKey);
+        verifier.update(PROBE);
+        if (!verifier.verify(signature)) {
+            throw new IllegalStateException("The public key configured for " + source + " does not match its private key");
+        }
+
+        String id = kid != null ? kid : Jwks.builder().key(publicKey).idFromThumbprint().build().getId();
+        return new SigningKey(id, privateKey, publicKey);
+    }
+
+    private Certificate certificate(String location) throws GeneralSecurityException {
+        try (InputStream in = resource(location).getInputStream()) {
+            return CertificateFactory.getInstance("X.509").generateCertificate(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read " + location, e);
+        }
+    }
+
+    private byte[] pemBody(String location, String type) {
+        return decode(read(location), type, location);
+    }
+
+    private static byte[] decode(String text, String type, String location) {
+        String begin = "-----BEGIN " + type + "-----";
+        String end = "-----END " + type + "-----";
+        int from = text.indexOf(begin);
+        int to = text.indexOf(end);
+        if (from < 0 || to < from) {
+            // PKCS#1 and SEC1 files say "RSA PRIVATE KEY" / "EC PRIVATE KEY"; convert them with openssl pkcs8 -topk8
+            throw new IllegalStateException(location + " has no " + begin + " block");
+        }
+        return Base64.getMimeDecoder().decode(text.substring(from + begin.length(), to));
+    }
+
+    private String read(String location) {
+        try {
+            return resource(location).getContentAsString(StandardCharsets.US_ASCII);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read " + location, e);
+        }
+    }
+
+    private Resource resource(String location) {
+        return resources.getResource(location);
+    }
+
+    private String keyAlgorithm() {
+        return switch (algorithm) {
+            case RS256 -> "RSA";
+            case ES256 -> "EC";
+            case EDDSA -> "Ed25519";
+            case HS256 -> throw new IllegalStateException("HMAC keys come from sso.jwt.secret");
+        };
+    }
+
+    private String signatureAlgorithm() {
+        return switch (algorithm) {
+            case RS256 -> "SHA256withRSA";
+            case ES256 -> "SHA256withECDSA";
+            case EDDSA -> "Ed25519";
+            case HS256 -> throw new IllegalStateException("HMAC keys come from sso.jwt.secret");
+        };
+    }
+}
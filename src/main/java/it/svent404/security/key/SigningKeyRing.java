@@ -0,0 +1,190 @@
+package it.svent404.security.key;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.PublicJwk;
+import it.svent404.security.properties.SsoSecurityProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keys used to sign and verify local tokens. HMAC mode holds the single configured secret.
+ * Asymmetric modes load the configured PEM or keystore keys, which survive restarts and are shared
+ * by every replica: the first one signs and the rest only verify, and they are rotated by changing
+ * the configuration. Only with {@code sso.jwt.generate-keys} and no configured keys are key pairs
+ * generated in process, on first use; those rotate on schedule and every superseded key is kept
+ * until the last token it signed has expired, so rotation never invalidates a live token.
+ */
+@Slf4j
+public class SigningKeyRing {
+
+    public static final String HMAC_KEY_ID = "local-hmac";
+
+    private final SsoSecurityProperties.Jwt.Algorithm algorithm;
+    private final Duration tokenLifetime;
+    private final Clock clock;
+    private final boolean configured;
+
+    private volatile State state;
+
+    private SigningKeyRing(SsoSecurityProperties.Jwt.Algorithm algorithm, Duration tokenLifetime, Clock clock,
+                           boolean configured) {
+        this.algorithm = algorithm;
+        this.tokenLifetime = tokenLifetime;
+        this.clock = clock;
+        this.configured = configured;
+    }
+
+    public static SigningKeyRing from(SsoSecurityProperties.Jwt jwt, Clock clock) {
+        Duration tokenLifetime = Duration.ofSeconds(jwt.getExpirationSeconds());
+
+        if (jwt.getAlgorithm() == SsoSecurityProperties.Jwt.Algorithm.HS256) {
+            SigningKeyRing ring = new SigningKeyRing(jwt.getAlgorithm(), tokenLifetime, clock, true);
+            Key secret = Keys.hmacShaKeyFor(jwt.getSecret().getBytes(StandardCharsets.UTF_8));
+            ring.state = State.of(new SigningKey(HMAC_KEY_ID, secret, secret), List.of());
+            return ring;
+        }
+
+        List<SigningKey> keys = new SigningKeyLoader(jwt.getAlgorithm()).load(jwt);
+        if (keys.isEmpty() && !jwt.isGenerateKeys()) {
+            throw new IllegalStateException("sso.jwt.algorithm=" + jwt.getAlgorithm()
+                    + " needs sso.jwt.keys or sso.jwt.key-store; set sso.jwt.generate-keys=true to sign with"
+                    + " keys generated in process, which change on every restart and differ between replicas");
+        }
+
+        SigningKeyRing ring = new SigningKeyRing(jwt.getAlgorithm(), tokenLifetime, clock, !keys.isEmpty());
+        if (keys.isEmpty()) {
+            log.warn("Signing {} tokens with generated keys: tokens will not survive a restart"
+                    + " and every replica signs with its own key", jwt.getAlgorithm());
+        } else {
+            Instant now = clock.instant();
+            ring.state = State.of(keys.getFirst(), keys.stream()
+                    .skip(1)
+                    .map(key -> new Retired(key, now))
+                    .toList());
+        }
+        return ring;
+    }
+
+    public SigningKey current() {
+        return state().current();
+    }
+
+    public Key verificationKey(String kid) {
+        State snapshot = state();
+        if (kid == null) {
+            return snapshot.current().verificationKey();
+        }
+        return snapshot.verificationKeys().get(kid);
+    }
+
+    public boolean rotates() {
+        return !configured;
+    }
+
+    /**
+     * Public keys in JWK Set format, precomputed on every rotation.
+     */
+    public Map<String, Object> jwks() {
+        return state().jwks();
+    }
+
+    public synchronized void rotate() {
+        if (!rotates() || state == null) {
+            // nothing signed yet: the first use generates a fresh key anyway
+            return;
+        }
+
+        Instant now = clock.instant();
+        List<Retired> previous = new ArrayList<>();
+        for (Retired retired : state.previous()) {
+            if (retired.retiredAt().plus(tokenLifetime).isAfter(now)) {
+                previous.add(retired);
+            }
+        }
+        previous.add(new Retired(state.current(), now));
+
+        state = State.of(generate(), previous);
+    }
+
+    private State state() {
+        State snapshot = state;
+        return snapshot != null ? snapshot : initialize();
+    }
+
+    private synchronized State initialize() {
+        if (state == null) {
+            state = State.of(generate(), List.of());
+        }
+        return state;
+    }
+
+    private SigningKey generate() {
+        KeyPair pair = switch (algorithm) {
+            case RS256 -> Jwts.SIG.RS256.keyPair().build();
+            case ES256 -> Jwts.SIG.ES256.keyPair().build();
+            case EDDSA -> Jwks.CRV.Ed25519.keyPair().build();
+            case HS256 -> throw new IllegalStateException("HMAC keys are configured, not generated");
+        };
+
+        String kid = Jwks.builder().key(pair.getPublic()).idFromThumbprint().build().getId();
+        return new SigningKey(kid, pair.getPrivate(), pair.getPublic());
+    }
+
+    private record Retired(SigningKey key, Instant retiredAt) {}
+
+    private record State(
+            SigningKey current,
+            List<Retired> previous,
+            Map<String, Key> verificationKeys,
+            Map<String, Object> jwks
+    ) {
+        static State of(SigningKey current, List<Retired> previous) {
+            Map<String, Key> verificationKeys = new HashMap<>();
+            List<Map<String, Object>> published = new ArrayList<>();
+
+            verificationKeys.put(current.kid(), current.verificationKey());
+            publish(current, published);
+            for (Retired retired : previous) {
+                verificationKeys.put(retired.key().kid(), retired.key().verificationKey());
+                publish(retired.key(), published);
+            }
+
+            return new State(
+                    current,
+                    List.copyOf(previous),
+                    Map.copyOf(verificationKeys),
+                    Map.of("keys", List.copyOf(published))
+            );
+        }
+
+        private static void publish(SigningKey key, List<Map<String, Object>> published) {
+            if (!(key.verificationKey() instanceof PublicKey publicKey)) {
+                return;
+            }
+
+            PublicJwk<PublicKey> jwk = Jwks.builder()
+                    .key(publicKey)
+                    .id(key.kid())
+                    .build();
+
+            Map<String, Object> json = new LinkedHashMap<>(jwk);
+            json.put("use", "sig");
+            published.add(Collections.unmodifiableMap(json));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package it.svent404.security.metrics;
+
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Fails a token whose {@code exp} has passed, with the same clock skew as Spring's
+ * {@code JwtTimestampValidator}, under its own {@link #ERROR_CODE}. That lets
+ * {@link InstrumentedJwtDecoder} count expired tokens from the error code instead of the
+ * human-readable description. The default validators still run alongside it.
+ */
+public final class ExpiredJwtValidator implements OAuth2TokenValidator<Jwt> {
+
+    public static final String ERROR_CODE = "token_expired";
+
+    private static final Duration CLOCK_SKEW = Duration.ofSeconds(60);
+
+    private final Clock clock;
+
+    public ExpiredJwtValidator(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public OAuth2TokenValidatorResult validate(Jwt jwt) {
+        Instant expiresAt = jwt.getExpiresAt();
+        if (expiresAt != null && clock.instant().minus(CLOCK_SKEW).isAfter(expiresAt)) {
+            return OAuth2TokenValidatorResult.failure(new OAuth2Error(ERROR_CODE, "Jwt expired at " + expiresAt, null));
+        }
+        return OAuth2TokenValidatorResult.success();
+    }
+}
@@ -0,0 +1,46 @@
+package it.svent404.security.metrics;
+
+import it.svent404.security.metrics.SsoMetrics.Outcome;
+import it.svent404.security.metrics.SsoMetrics.Stage;
+import lombok.AllArgsConstructor;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+
+@AllArgsConstructor
+public class InstrumentedJwtDecoder implements JwtDecoder {
+
+    private final JwtDecoder delegate;
+    private final SsoMetrics metrics;
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        long start = System.nanoTime();
+        try {
+            Jwt jwt = delegate.decode(token);
+            metrics.record(Stage.DECODE, Outcome.SUCCESS, start);
+            return jwt;
+        } catch (JwtException ex) {
+            metrics.record(Stage.DECODE, outcomeOf(ex), start);
+            throw ex;
+        }
+    }
+
+    static Outcome outcomeOf(JwtException ex) {
+        if (ex instanceof JwtValidationException validation) {
+            return isExpired(validation) ? Outcome.EXPIRED : Outcome.INVALID;
+        }
+        if (ex instanceof BadJwtException) {
+            return Outcome.MALFORMED;
+        }
+        return Outcome.ERROR;
+    }
+
+    private static boolean isExpired(JwtValidationException ex) {
+        return ex.getErrors()
+                .stream()
+                .anyMatch(error -> ExpiredJwtValidator.ERROR_CODE.equals(error.getErrorCode()));
+    }
+}
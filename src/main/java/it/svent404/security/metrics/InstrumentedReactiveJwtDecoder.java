@@ -0,0 +1,26 @@
+package it.svent404.security.metrics;
+
+import it.svent404.security.metrics.SsoMetrics.Outcome;
+import it.svent404.security.metrics.SsoMetrics.Stage;
+import lombok.AllArgsConstructor;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+
+@AllArgsConstructor
+public class InstrumentedReactiveJwtDecoder implements ReactiveJwtDecoder {
+
+    private final ReactiveJwtDecoder delegate;
+    private final SsoMetrics metrics;
+
+    @Override
+    public Mono<Jwt> decode(String token) throws JwtException {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return delegate.decode(token)
+                    .doOnSuccess(jwt -> metrics.record(Stage.DECODE, Outcome.SUCCESS, start))
+                    .doOnError(JwtException.class, ex -> metrics.record(Stage.DECODE, InstrumentedJwtDecoder.outcomeOf(ex), start));
+        });
+    }
+}
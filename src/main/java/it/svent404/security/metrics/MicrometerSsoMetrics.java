@@ -0,0 +1,56 @@
+package it.svent404.security.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Registers the timer for a stage and outcome the first time that pair is recorded, so only
+ * combinations that actually occur are exported. Afterwards recording is an array lookup
+ * followed by {@link Timer#record(long, TimeUnit)}.
+ */
+public class MicrometerSsoMetrics implements SsoMetrics {
+
+    public static final String TIMER_NAME = "sso.auth";
+
+    private static final int OUTCOMES = Outcome.values().length;
+
+    private final MeterRegistry registry;
+    private final String modeTag;
+    private final AtomicReferenceArray<Timer> timers;
+
+    public MicrometerSsoMetrics(MeterRegistry registry, String mode) {
+        this.registry = registry;
+        this.modeTag = mode != null ? mode : "unknown";
+        this.timers = new AtomicReferenceArray<>(Stage.values().length * OUTCOMES);
+    }
+
+    @Override
+    public void record(Stage stage, Outcome outcome, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        int index = stage.ordinal() * OUTCOMES + outcome.ordinal();
+        Timer timer = timers.get(index);
+        if (timer == null) {
+            // a racing registration gets the same timer back from the registry
+            timer = register(stage, outcome);
+            timers.set(index, timer);
+        }
+        timer.record(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer register(Stage stage, Outcome outcome) {
+        return Timer.builder(TIMER_NAME)
+                .description("Time spent in an SSO authentication stage")
+                .tag("stage", tagValue(stage))
+                .tag("outcome", tagValue(outcome))
+                .tag("mode", modeTag)
+                .register(registry);
+    }
+
+    private static String tagValue(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
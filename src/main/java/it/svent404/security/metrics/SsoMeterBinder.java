@@ -0,0 +1,154 @@
+package it.svent404.security.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import it.svent404.security.cache.AuthenticationCache;
+import it.svent404.security.key.CachingJwkSource;
+import it.svent404.security.ratelimit.AuthRateLimits;
+import it.svent404.security.ratelimit.TokenBucketRateLimiter;
+import it.svent404.security.repository.RevocationBloomFilter;
+import it.svent404.security.revocation.RevocationBroadcaster;
+import it.svent404.security.service.CachingOpaqueTokenIntrospector;
+import it.svent404.security.service.PasswordHashingExecutor;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.lang.NonNull;
+
+/**
+ * Exposes the counters kept by the optional caches and filters.
+ */
+@AllArgsConstructor
+public class SsoMeterBinder implements MeterBinder {
+
+    private final ObjectProvider<AuthenticationCache> authenticationCache;
+    private final ObjectProvider<RevocationBloomFilter> revocationFilter;
+    private final ObjectProvider<CachingJwkSource> jwkSource;
+    private final ObjectProvider<CachingOpaqueTokenIntrospector> introspector;
+    private final ObjectProvider<PasswordHashingExecutor> passwordHashing;
+    private final ObjectProvider<RevocationBroadcaster> revocationBroadcaster;
+    private final ObjectProvider<AuthRateLimits> rateLimits;
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        authenticationCache.ifAvailable(cache -> {
+            FunctionCounter.builder("sso.cache.requests", cache, AuthenticationCache::getHits)
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("sso.cache.requests", cache, AuthenticationCache::getMisses)
+                    .tag("result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("sso.cache.evictions", cache, AuthenticationCache::getEvictions)
+                    .register(registry);
+            Gauge.builder("sso.cache.size", cache, AuthenticationCache::size)
+                    .register(registry);
+        });
+
+        revocationFilter.ifAvailable(filter -> {
+            FunctionCounter.builder("sso.revocation.filter.lookups", filter, RevocationBloomFilter::getNegatives)
+                    .tag("result", "negative")
+                    .register(registry);
+            FunctionCounter.builder("sso.revocation.filter.lookups", filter, RevocationBloomFilter::getTruePositives)
+                    .tag("result", "true_positive")
+                    .register(registry);
+            FunctionCounter.builder("sso.revocation.filter.lookups", filter, RevocationBloomFilter::getFalsePositives)
+                    .tag("result", "false_positive")
+                    .register(registry);
+            Gauge.builder("sso.revocation.filter.false.positive.rate", filter, RevocationBloomFilter::getFalsePositiveRate)
+                    .register(registry);
+        });
+
+        jwkSource.ifAvailable(source -> {
+            FunctionCounter.builder("sso.jwks.fetches", source, CachingJwkSource::getFetchSuccesses)
+                    .tag("result", "success")
+                    .register(registry);
+            FunctionCounter.builder("sso.jwks.fetches", source, CachingJwkSource::getFetchFailures)
+                    .tag("result", "failure")
+                    .register(registry);
+            FunctionCounter.builder("sso.jwks.stale.serves", source, CachingJwkSource::getStaleServes)
+                    .register(registry);
+            FunctionCounter.builder("sso.jwks.unknown.kid.misses", source, CachingJwkSource::getUnknownKeyMisses)
+                    .register(registry);
+            Gauge.builder("sso.jwks.age.seconds", source, CachingJwkSource::getAgeSeconds)
+                    .register(registry);
+        });
+
+        introspector.ifAvailable(source -> {
+            FunctionCounter.builder("sso.introspection.cache.requests", source, i -> i.getCache().getHits())
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("sso.introspection.cache.requests", source, i -> i.getCache().getMisses())
+                    .tag("result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("sso.introspection.cache.evictions", source, i -> i.getCache().getEvictions())
+                    .register(registry);
+            Gauge.builder("sso.introspection.cache.size", source, i -> i.getCache().size())
+                    .register(registry);
+            FunctionCounter.builder("sso.introspection.negative.cache.evictions", source, i -> i.getNegativeCache().getEvictions())
+                    .register(registry);
+            Gauge.builder("sso.introspection.negative.cache.size", source, i -> i.getNegativeCache().size())
+                    .register(registry);
+            FunctionCounter.builder("sso.introspection.coalesced", source, CachingOpaqueTokenIntrospector::getCoalesced)
+                    .register(registry);
+            FunctionCounter.builder("sso.introspection.stale.fallbacks", source, CachingOpaqueTokenIntrospector::getStaleFallbacks)
+                    .register(registry);
+        });
+
+        passwordHashing.ifAvailable(executor -> {
+            Gauge.builder("sso.password.queue.depth", executor, PasswordHashingExecutor::getQueueDepth)
+                    .register(registry);
+            Gauge.builder("sso.password.active", executor, PasswordHashingExecutor::getActive)
+                    .register(registry);
+            FunctionCounter.builder("sso.password.coalesced", executor, PasswordHashingExecutor::getCoalesced)
+                    .register(registry);
+            FunctionCounter.builder("sso.password.rejections", executor, PasswordHashingExecutor::getQueueFullRejections)
+                    .tag("reason", "queue_full")
+                    .register(registry);
+            FunctionCounter.builder("sso.password.rejections", executor, PasswordHashingExecutor::getQueueTimeoutRejections)
+                    .tag("reason", "queue_timeout")
+                    .register(registry);
+        });
+
+        revocationBroadcaster.ifAvailable(broadcaster -> {
+            FunctionCounter.builder("sso.revocation.broadcast.batches", broadcaster, RevocationBroadcaster::getPublishedBatches)
+                    .tag("direction", "out")
+                    .register(registry);
+            FunctionCounter.builder("sso.revocation.broadcast.batches", broadcaster, RevocationBroadcaster::getReceivedBatches)
+                    .tag("direction", "in")
+                    .register(registry);
+            FunctionCounter.builder("sso.revocation.broadcast.revocations", broadcaster, RevocationBroadcaster::getPublishedRevocations)
+                    .tag("result", "published")
+                    .register(registry);
+            FunctionCounter.builder("sso.revocation.broadcast.revocations", broadcaster, RevocationBroadcaster::getAppliedRevocations)
+                    .tag("result", "applied")
+                    .register(registry);
+            FunctionCounter.builder("sso.revocation.broadcast.revocations", broadcaster, RevocationBroadcaster::getDuplicateRevocations)
+                    .tag("result", "duplicate")
+                    .register(registry);
+            FunctionCounter.builder("sso.revocation.broadcast.publish.failures", broadcaster, RevocationBroadcaster::getPublishFailures)
+                    .register(registry);
+        });
+
+        rateLimits.ifAvailable(limits -> limits.limiters().forEach(limiter -> {
+            FunctionCounter.builder("sso.ratelimit.requests", limiter, TokenBucketRateLimiter::getAllowed)
+                    .tag("limit", limiter.getName())
+                    .tag("result", "allowed")
+                    .register(registry);
+            FunctionCounter.builder("sso.ratelimit.requests", limiter, TokenBucketRateLimiter::getRejected)
+                    .tag("limit", limiter.getName())
+                    .tag("result", "rejected")
+                    .register(registry);
+            FunctionCounter.builder("sso.ratelimit.requests", limiter, TokenBucketRateLimiter::getOverflows)
+                    .tag("limit", limiter.getName())
+                    .tag("result", "overflow")
+                    .register(registry);
+            FunctionCounter.builder("sso.ratelimit.evictions", limiter, TokenBucketRateLimiter::getEvictions)
+                    .tag("limit", limiter.getName())
+                    .register(registry);
+            Gauge.builder("sso.ratelimit.keys", limiter, TokenBucketRateLimiter::size)
+                    .tag("limit", limiter.getName())
+                    .register(registry);
+        }));
+    }
+}
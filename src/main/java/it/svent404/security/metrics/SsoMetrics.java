@@ -0,0 +1,41 @@
+package it.svent404.security.metrics;
+
+/**
+ * Recording surface for the authentication stages. Implementations must not allocate on
+ * {@link #record}, it runs on every request.
+ */
+public interface SsoMetrics {
+
+    SsoMetrics NOOP = (stage, outcome, startNanos) -> {};
+
+    void record(Stage stage, Outcome outcome, long startNanos);
+
+    enum Stage {
+        FILTER,
+        GENERATE,
+        PARSE,
+        REVOCATION_CHECK,
+        REVOCATION_PROPAGATION,
+        REFRESH,
+        CONVERT,
+        PASSWORD_QUEUE,
+        PASSWORD_CHECK,
+        DECODE,
+        JWKS_FETCH,
+        INTROSPECT,
+        DISPATCH
+    }
+
+    enum Outcome {
+        SUCCESS,
+        MISSING,
+        EXPIRED,
+        BAD_SIGNATURE,
+        MALFORMED,
+        REVOKED,
+        INVALID,
+        BAD_CREDENTIALS,
+        REJECTED,
+        ERROR
+    }
+}
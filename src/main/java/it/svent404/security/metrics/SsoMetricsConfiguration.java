@@ -0,0 +1,53 @@
+package it.svent404.security.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import it.svent404.security.cache.AuthenticationCache;
+import it.svent404.security.key.CachingJwkSource;
+import it.svent404.security.properties.SsoSecurityProperties;
+import it.svent404.security.ratelimit.AuthRateLimits;
+import it.svent404.security.repository.RevocationBloomFilter;
+import it.svent404.security.revocation.RevocationBroadcaster;
+import it.svent404.security.service.CachingOpaqueTokenIntrospector;
+import it.svent404.security.service.PasswordHashingExecutor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration(proxyBeanMethods = false)
+public class SsoMetricsConfiguration {
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    static class MicrometerConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean(SsoMetrics.class)
+        SsoMetrics ssoMetrics(ObjectProvider<MeterRegistry> registry, SsoSecurityProperties props) {
+            MeterRegistry meterRegistry = registry.getIfAvailable();
+            return meterRegistry != null
+                    ? new MicrometerSsoMetrics(meterRegistry, props.getMode())
+                    : SsoMetrics.NOOP;
+        }
+
+        @Bean
+        SsoMeterBinder ssoMeterBinder(
+                ObjectProvider<AuthenticationCache> authenticationCache,
+                ObjectProvider<RevocationBloomFilter> revocationFilter,
+                ObjectProvider<CachingJwkSource> jwkSource,
+                ObjectProvider<CachingOpaqueTokenIntrospector> introspector,
+                ObjectProvider<PasswordHashingExecutor> passwordHashing,
+                ObjectProvider<RevocationBroadcaster> revocationBroadcaster,
+                ObjectProvider<AuthRateLimits> rateLimits) {
+            return new SsoMeterBinder(authenticationCache, revocationFilter, jwkSource, introspector,
+                    passwordHashing, revocationBroadcaster, rateLimits);
+        }
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(SsoMetrics.class)
+    SsoMetrics noopSsoMetrics() {
+        return SsoMetrics.NOOP;
+    }
+}
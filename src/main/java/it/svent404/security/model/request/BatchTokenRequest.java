@@ -0,0 +1,11 @@
+package it.svent404.security.model.request;
+
+import java.util.List;
+
+public record BatchTokenRequest(
+        List<String> tokens
+) {
+    public BatchTokenRequest {
+        tokens = tokens != null ? tokens : List.of();
+    }
+}
@@ -1,5 +1,6 @@
 package it.svent404.security.model.response;
 
+import it.svent404.security.service.LocalJwtAuthentication;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 
@@ -10,6 +11,10 @@ public record UserInfoResponse(
         Collection<String> roles
 ) {
     public static UserInfoResponse from(Authentication auth) {
+        if (auth instanceof LocalJwtAuthentication local) {
+            // the role names as issued, no authorities built
+            return new UserInfoResponse(local.getName(), local.getRoles());
+        }
         return new UserInfoResponse(
                 auth.getName(),
                 auth.getAuthorities()
@@ -19,4 +24,3 @@ public record UserInfoResponse(
         );
     }
 }
-
@@ -1,8 +1,12 @@
 package it.svent404.security.properties;
 
+import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import java.util.ArrayList;
+import java.util.List;
 
 @ConfigurationProperties(prefix = "sso")
 @Getter @Setter
@@ -10,12 +14,185 @@ public class SsoSecurityProperties {
     private boolean enabled = true;
     private String mode;
     private Jwt jwt;
+    private Password password = new Password();
+    private Users users = new Users();
+    private RateLimit rateLimit = new RateLimit();
+    private Hybrid hybrid = new Hybrid();
+    private List<String> publicPaths = new ArrayList<>(List.of(
+            "/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html", "/webjars/**"));
 
     @Getter @Setter
     public static class Jwt {
+        private Algorithm algorithm = Algorithm.HS256;
         private String secret;
+        private List<PemKey> keys = new ArrayList<>();
+        private Keystore keyStore = new Keystore();
+        private boolean generateKeys = false;
+        private long keyRotationIntervalSeconds = 0;
         private long expirationSeconds = 3600;
+        private long refreshExpirationSeconds = 86_400;
+        private long refreshMaxLifetimeSeconds = 604_800;
+        private int batchMaxSize = 100;
         private Auth auth;
+        private Cache cache = new Cache();
+        private Revocation revocation = new Revocation();
+        private Jwks jwks = new Jwks();
+        private Opaque opaque = new Opaque();
+        private Compact compact = new Compact();
+
+        public enum Algorithm { HS256, RS256, ES256, EDDSA }
+    }
+
+    /**
+     * A PKCS#8 private key and its public key or certificate, both PEM resource locations.
+     * The kid defaults to the JWK thumbprint of the public key.
+     */
+    @Getter @Setter
+    public static class PemKey {
+        private String kid;
+        private String privateKey;
+        private String publicKey;
+    }
+
+    /**
+     * Signing keys read from a keystore; the first alias signs, the others only verify.
+     */
+    @Getter @Setter
+    public static class Keystore {
+        private String location;
+        private String password;
+        private String type = "PKCS12";
+        private List<String> aliases = new ArrayList<>();
+    }
+
+    @Getter @Setter
+    public static class Users {
+        private String file;
+        private long reloadIntervalSeconds = 10;
+    }
+
+    @Getter @Setter
+    public static class RateLimit {
+        private boolean enabled = false;
+        /**
+         * Proxies, as addresses or CIDR ranges, whose {@code X-Forwarded-For} entries are
+         * trusted to name the client. Empty: clients are keyed on the remote address.
+         */
+        private List<String> trustedProxies = new ArrayList<>();
+        private int maxKeys = 100_000;
+        private long sweepIntervalSeconds = 60;
+        private Limit loginPerClient = new Limit(30, 60);
+        private Limit loginPerUser = new Limit(10, 10);
+        private Limit refreshPerClient = new Limit(30, 120);
+        private Limit introspectPerClient = new Limit(200, 1200);
+
+        /**
+         * Up to {@code burst} requests at once, refilled at {@code perMinute}; a
+         * {@code perMinute} of 0 turns the limit off.
+         */
+        @Getter @Setter
+        @AllArgsConstructor
+        @NoArgsConstructor
+        public static class Limit {
+            private int burst;
+            private int perMinute;
+        }
+    }
+
+    @Getter @Setter
+    public static class Hybrid {
+        /**
+         * Issuers sent to the OAuth2 path; tokens from any other issuer are rejected unverified.
+         * When empty, every token that is not local goes to the OAuth2 path.
+         */
+        private List<String> oauth2Issuers = new ArrayList<>();
+    }
+
+    @Getter @Setter
+    public static class Password {
+        private Encoder encoder = Encoder.BCRYPT;
+        private int bcryptStrength = 10;
+        private Argon2 argon2 = new Argon2();
+        private Hashing hashing = new Hashing();
+
+        public enum Encoder { BCRYPT, ARGON2 }
+
+        @Getter @Setter
+        public static class Argon2 {
+            private int saltLength = 16;
+            private int hashLength = 32;
+            private int parallelism = 1;
+            private int memoryKib = 16_384;
+            private int iterations = 2;
+        }
+
+        @Getter @Setter
+        public static class Hashing {
+            private int threads = 0;
+            private int queueCapacity = 64;
+            private long maxQueueWaitMillis = 2000;
+            private long retryAfterSeconds = 1;
+        }
+    }
+
+    @Getter @Setter
+    public static class Cache {
+        private boolean enabled = false;
+        private int maxEntries = 10_000;
+    }
+
+    @Getter @Setter
+    public static class Compact {
+        private boolean enabled = false;
+        private List<String> roles = new ArrayList<>();
+        private int cacheSize = 1024;
+    }
+
+    @Getter @Setter
+    public static class Jwks {
+        private long ttlSeconds = 300;
+        private long refreshAheadSeconds = 30;
+        private long refetchCooldownSeconds = 10;
+        private int connectTimeoutMillis = 2000;
+        private int readTimeoutMillis = 2000;
+    }
+
+    @Getter @Setter
+    public static class Opaque {
+        private boolean enabled = false;
+        private int cacheMaxEntries = 10_000;
+        private long cacheTtlSeconds = 60;
+        private long negativeTtlSeconds = 10;
+        private int negativeCacheMaxEntries = 1_000;
+    }
+
+    @Getter @Setter
+    public static class Revocation {
+        private Store store = Store.MEMORY;
+        private long sweepIntervalSeconds = 60;
+        private String filePath = "sso-revocations.log";
+        private long compactionIntervalSeconds = 3600;
+        private Filter filter = new Filter();
+        private Broadcast broadcast = new Broadcast();
+
+        public enum Store { MEMORY, FILE }
+
+        @Getter @Setter
+        public static class Filter {
+            private boolean enabled = false;
+            private long expectedInsertions = 100_000;
+            private double falsePositiveProbability = 0.01;
+            private long rebuildIntervalSeconds = 300;
+        }
+
+        @Getter @Setter
+        public static class Broadcast {
+            private boolean enabled = false;
+            private boolean inJvm = false;
+            private String channel = "sso-revocations";
+            private long lingerMillis = 2;
+            private int maxBatchSize = 256;
+        }
     }
 
     @Getter @Setter
@@ -26,6 +203,15 @@ public class SsoSecurityProperties {
         public static class Converter {
             private String resourceId;
             private String principleAttribute;
+            private int authorityCacheSize = 0;
+            private List<RoleMapping> roleMappings = new ArrayList<>();
+        }
+
+        @Getter @Setter
+        public static class RoleMapping {
+            private String claim;
+            private String client;
+            private String prefix = "ROLE_";
         }
     }
 }
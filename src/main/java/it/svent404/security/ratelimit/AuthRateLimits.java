@@ -0,0 +1,114 @@
+package it.svent404.security.ratelimit;
+
+import it.svent404.security.properties.SsoSecurityProperties;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * The rate limits of the {@code /auth} endpoints, checked by the controllers before any
+ * password hashing or signature verification. Logins are limited both per client address
+ * and per username, so neither one client spraying usernames nor many clients guessing one
+ * password get far; refresh and introspection are limited per client address, as resolved by
+ * {@link TrustedProxies}. A limit that is not configured is not checked.
+ */
+public class AuthRateLimits {
+
+    public static final AuthRateLimits UNLIMITED = new AuthRateLimits(null, null, null, null, TrustedProxies.NONE);
+
+    private final TokenBucketRateLimiter loginPerClient;
+    private final TokenBucketRateLimiter loginPerUser;
+    private final TokenBucketRateLimiter refreshPerClient;
+    private final TokenBucketRateLimiter introspectPerClient;
+    private final TrustedProxies trustedProxies;
+
+    public AuthRateLimits(TokenBucketRateLimiter loginPerClient,
+                          TokenBucketRateLimiter loginPerUser,
+                          TokenBucketRateLimiter refreshPerClient,
+                          TokenBucketRateLimiter introspectPerClient,
+                          TrustedProxies trustedProxies) {
+        this.loginPerClient = loginPerClient;
+        this.loginPerUser = loginPerUser;
+        this.refreshPerClient = refreshPerClient;
+        this.introspectPerClient = introspectPerClient;
+        this.trustedProxies = trustedProxies;
+    }
+
+    public static AuthRateLimits from(SsoSecurityProperties.RateLimit config, Clock clock) {
+        if (!config.isEnabled()) {
+            return UNLIMITED;
+        }
+        return new AuthRateLimits(
+                limiter("login.client", config.getLoginPerClient(), config.getMaxKeys(), clock),
+                limiter("login.user", config.getLoginPerUser(), config.getMaxKeys(), clock),
+                limiter("refresh.client", config.getRefreshPerClient(), config.getMaxKeys(), clock),
+                limiter("introspect.client", config.getIntrospectPerClient(), config.getMaxKeys(), clock),
+                new TrustedProxies(config.getTrustedProxies())
+        );
+    }
+
+    /**
+     * The key the client limits use: the client address, see {@link TrustedProxies}, or its
+     * /64 prefix for IPv6.
+     *
+     * @param forwardedFor the {@code X-Forwarded-For} header values in the order received
+     */
+    public String clientOf(String remoteAddress, List<String> forwardedFor) {
+        return TrustedProxies.keyOf(trustedProxies.clientAddress(remoteAddress, forwardedFor));
+    }
+
+    /**
+     * @throws RateLimitExceededException if the client or the user is over its limit
+     */
+    public void checkLogin(String client, String username) {
+        check(loginPerClient, client, 1);
+        if (username != null) {
+            check(loginPerUser, username.toLowerCase(Locale.ROOT), 1);
+        }
+    }
+
+    /**
+     * @throws RateLimitExceededException if the client is over its limit
+     */
+    public void checkRefresh(String client) {
+        check(refreshPerClient, client, 1);
+    }
+
+    /**
+     * @param tokens the number of tokens to introspect or log out, each one counts
+     * @throws RateLimitExceededException if the client is over its limit
+     */
+    public void checkIntrospect(String client, int tokens) {
+        check(introspectPerClient, client, Math.max(1, tokens));
+    }
+
+    public List<TokenBucketRateLimiter> limiters() {
+        return Stream.of(loginPerClient, loginPerUser, refreshPerClient, introspectPerClient)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    public void evictIdle() {
+        limiters().forEach(TokenBucketRateLimiter::evictIdle);
+    }
+
+    private static void check(TokenBucketRateLimiter limiter, String key, int permits) {
+        if (limiter == null || key == null) {
+            return;
+        }
+        long waitMillis = limiter.tryAcquire(key, permits);
+        if (waitMillis > 0) {
+            throw new RateLimitExceededException(limiter.getName(), Math.ceilDiv(waitMillis, 1000));
+        }
+    }
+
+    private static TokenBucketRateLimiter limiter(String name, SsoSecurityProperties.RateLimit.Limit limit,
+                                                  int maxKeys, Clock clock) {
+        return limit.getPerMinute() > 0
+                ? new TokenBucketRateLimiter(name, limit.getBurst(), limit.getPerMinute(), maxKeys, clock)
+                : null;
+    }
+}
@@ -0,0 +1,19 @@
+package it.svent404.security.ratelimit;
+
+import lombok.Getter;
+
+/**
+ * Raised when {@link AuthRateLimits} turns a request away before any credential is checked.
+ */
+@Getter
+public class RateLimitExceededException extends RuntimeException {
+
+    private final String limit;
+    private final long retryAfterSeconds;
+
+    public RateLimitExceededException(String limit, long retryAfterSeconds) {
+        super("Rate limit exceeded: " + limit);
+        this.limit = limit;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
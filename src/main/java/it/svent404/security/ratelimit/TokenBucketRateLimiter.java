@@ -0,0 +1,186 @@
+package it.svent404.security.ratelimit;
+
+import java.time.Clock;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A token bucket per key: up to {@code burst} permits at once, refilled at {@code perMinute}.
+ * Each bucket is one {@link AtomicLong} holding the instant at which it will be full again
+ * (the GCRA form of a token bucket), so acquiring is a compare-and-set and never locks.
+ * Buckets live in striped maps; a bucket that has refilled completely carries no state and
+ * is dropped by {@link #evictIdle()}. Live buckets are never dropped, or spraying new keys would
+ * reset the bucket of the key under attack: a stripe full of live buckets turns new keys away
+ * until its earliest bucket has refilled.
+ */
+public class TokenBucketRateLimiter {
+
+    private static final int STRIPES = 16;
+
+    private final String name;
+    private final Clock clock;
+    private final int burst;
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final int maxKeysPerStripe;
+    @SuppressWarnings("unchecked")
+    private final Map<String, AtomicLong>[] stripes = new Map[STRIPES];
+    /** Per stripe, when a full stripe may have room again; until then new keys are turned away. */
+    private final AtomicLongArray fullUntil = new AtomicLongArray(STRIPES);
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public TokenBucketRateLimiter(String name, int burst, int perMinute, int maxKeys, Clock clock) {
+        if (burst <= 0 || perMinute <= 0) {
+            throw new IllegalArgumentException("Rate limit '" + name + "' needs a positive burst and rate");
+        }
+        this.name = name;
+        this.clock = clock;
+        this.burst = burst;
+        this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / perMinute;
+        this.toleranceNanos = intervalNanos * (burst - 1);
+        this.maxKeysPerStripe = Math.max(1, maxKeys / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    /**
+     * Takes {@code permits} from the bucket of {@code key}. A request for more than
+     * {@code burst} permits takes a full bucket.
+     *
+     * @return 0 if they were granted, otherwise the milliseconds until they would be
+     */
+    public long tryAcquire(String key, int permits) {
+        long now = nowNanos();
+        long cost = intervalNanos * Math.min(permits, burst);
+        int index = stripeOf(key);
+        AtomicLong bucket = bucket(index, key, now);
+        if (bucket == null) {
+            overflows.increment();
+            return Math.max(1, TimeUnit.NANOSECONDS.toMillis(fullUntil.get(index) - now));
+        }
+
+        while (true) {
+            long fullAt = bucket.get();
+            long next = Math.max(fullAt, now) + cost;
+            long waitNanos = next - now - toleranceNanos - intervalNanos;
+            if (waitNanos > 0) {
+                rejected.increment();
+                return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                allowed.increment();
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Drops the buckets that have refilled completely.
+     */
+    public void evictIdle() {
+        long now = nowNanos();
+        for (Map<String, AtomicLong> stripe : stripes) {
+            evictIdle(stripe, now);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Map<String, AtomicLong> stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    public long getAllowed() {
+        return allowed.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Requests turned away because their key had no bucket and there was no room for one.
+     */
+    public long getOverflows() {
+        return overflows.sum();
+    }
+
+    private static int stripeOf(String key) {
+        return (key.hashCode() ^ (key.hashCode() >>> 16)) & (STRIPES - 1);
+    }
+
+    /**
+     * @return the bucket of {@code key}, or {@code null} if it has none and the stripe is full
+     */
+    private AtomicLong bucket(int index, String key, long now) {
+        Map<String, AtomicLong> stripe = stripes[index];
+        AtomicLong bucket = stripe.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (stripe.size() >= maxKeysPerStripe && !makeRoom(index, stripe, now)) {
+            return null;
+        }
+        return stripe.computeIfAbsent(key, k -> new AtomicLong(now));
+    }
+
+    private boolean makeRoom(int index, Map<String, AtomicLong> stripe, long now) {
+        // no sweep per request while the stripe is known to be full
+        if (now < fullUntil.get(index)) {
+            return false;
+        }
+        synchronized (stripe) {
+            if (stripe.size() < maxKeysPerStripe) {
+                return true;
+            }
+            long earliestFull = evictIdle(stripe, now);
+            if (stripe.size() < maxKeysPerStripe) {
+                return true;
+            }
+            fullUntil.set(index, earliestFull);
+            return false;
+        }
+    }
+
+    /**
+     * @return when the earliest remaining bucket will have refilled
+     */
+    private long evictIdle(Map<String, AtomicLong> stripe, long now) {
+        long earliestFull = Long.MAX_VALUE;
+        Iterator<AtomicLong> it = stripe.values().iterator();
+        while (it.hasNext()) {
+            long fullAt = it.next().get();
+            if (fullAt <= now) {
+                it.remove();
+                evictions.increment();
+            } else {
+                earliestFull = Math.min(earliestFull, fullAt);
+            }
+        }
+        return earliestFull;
+    }
+
+    private long nowNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(clock.millis());
+    }
+}
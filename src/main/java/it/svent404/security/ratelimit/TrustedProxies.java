@@ -0,0 +1,99 @@
+package it.svent404.security.ratelimit;
+
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Finds the client address a rate limit is keyed on. A request that arrives from a trusted
+ * proxy is keyed on the nearest {@code X-Forwarded-For} entry that is not itself a trusted
+ * proxy; entries further left were written by the client and are ignored. Without trusted
+ * proxies the remote address is used as is. IPv6 clients are keyed on their /64 prefix, see
+ * {@link #keyOf}.
+ */
+public class TrustedProxies {
+
+    public static final String FORWARDED_FOR = "X-Forwarded-For";
+
+    public static final TrustedProxies NONE = new TrustedProxies(List.of());
+
+    private final List<IpAddressMatcher> proxies;
+
+    /**
+     * @param proxies addresses or CIDR ranges, e.g. {@code 10.0.0.0/8}
+     */
+    public TrustedProxies(List<String> proxies) {
+        this.proxies = proxies.stream().map(IpAddressMatcher::new).toList();
+    }
+
+    /**
+     * @param forwardedFor the {@code X-Forwarded-For} header values in the order received
+     */
+    public String clientAddress(String remoteAddress, List<String> forwardedFor) {
+        if (remoteAddress == null || !isTrusted(remoteAddress)) {
+            return remoteAddress;
+        }
+
+        String client = remoteAddress;
+        for (int i = forwardedFor.size() - 1; i >= 0; i--) {
+            String[] hops = forwardedFor.get(i).split(",");
+            for (int j = hops.length - 1; j >= 0; j--) {
+                String hop = hops[j].strip();
+                if (hop.isEmpty()) {
+                    continue;
+                }
+                client = hop;
+                if (!isTrusted(hop)) {
+                    return client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * The rate limit key of {@code address}: its /64 prefix for an IPv6 address, since a single
+     * host is usually handed a whole /64 and could otherwise use a fresh address per request.
+     * IPv4 addresses, IPv4-mapped IPv6 addresses and anything that is not an IP address are
+     * returned unchanged.
+     */
+    public static String keyOf(String address) {
+        if (address == null || address.indexOf(':') < 0) {
+            return address;
+        }
+        int zone = address.indexOf('%');
+        byte[] bytes;
+        try {
+            // a literal with a colon is parsed, never looked up
+            bytes = InetAddress.getByName(zone < 0 ? address : address.substring(0, zone)).getAddress();
+        } catch (UnknownHostException ex) {
+            return address;
+        }
+        if (bytes.length != 16) {
+            return address;
+        }
+        return String.format(Locale.ROOT, "%x:%x:%x:%x::/64",
+                group(bytes, 0), group(bytes, 2), group(bytes, 4), group(bytes, 6));
+    }
+
+    private static int group(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) << 8 | (bytes[offset + 1] & 0xff);
+    }
+
+    private boolean isTrusted(String address) {
+        for (IpAddressMatcher proxy : proxies) {
+            try {
+                if (proxy.matches(address)) {
+                    return true;
+                }
+            } catch (IllegalArgumentException ex) {
+                // not an IP address: a forged or obfuscated entry, never a proxy of ours
+                return false;
+            }
+        }
+        return false;
+    }
+}
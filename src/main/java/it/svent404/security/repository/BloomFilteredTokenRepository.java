@@ -0,0 +1,54 @@
+package it.svent404.security.repository;
+
+import it.svent404.security.support.TokenDigest;
+import lombok.AllArgsConstructor;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+@AllArgsConstructor
+public class BloomFilteredTokenRepository implements TokenRepository {
+
+    private final TokenRepository delegate;
+    private final RevocationBloomFilter filter;
+
+    @Override
+    public boolean isRevoked(TokenDigest tokenId) {
+        if (!filter.mightContain(tokenId)) {
+            return false;
+        }
+
+        boolean revoked = delegate.isRevoked(tokenId);
+        filter.recordLookup(revoked);
+        return revoked;
+    }
+
+    @Override
+    public void revoke(TokenDigest tokenId, Instant expiresAt) {
+        // store first: a rebuild that misses this entry is followed by the put below
+        delegate.revoke(tokenId, expiresAt);
+        filter.put(tokenId);
+    }
+
+    @Override
+    public void revokeAll(Map<TokenDigest, Instant> revocations) {
+        delegate.revokeAll(revocations);
+        revocations.keySet().forEach(filter::put);
+    }
+
+    @Override
+    public int purgeExpired() {
+        return delegate.purgeExpired();
+    }
+
+    @Override
+    public void forEach(BiConsumer<TokenDigest, Instant> action) {
+        delegate.forEach(action);
+    }
+
+    @Override
+    public boolean isNonBlocking() {
+        return delegate.isNonBlocking();
+    }
+}
@@ -0,0 +1,257 @@
+package it.svent404.security.repository;
+
+import com.nimbusds.jose.util.JSONArrayUtils;
+import it.svent404.security.support.AuthorityInterner;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Users read from a file of precomputed password hashes, either CSV
+ * ({@code username,hash,ROLE1;ROLE2[,enabled]}, where the hash may contain commas) or, for a {@code .json} file, an array of
+ * {@code {"username", "password", "roles", "enabled"}} objects. Lookups are a binary search
+ * over sorted arrays; {@link #reloadIfChanged()} parses a changed file into a new index and
+ * swaps it in, so readers never lock. Usernames match case-insensitively, like
+ * {@link org.springframework.security.provisioning.InMemoryUserDetailsManager}.
+ */
+@Slf4j
+public class FileUserDetailsService implements UserDetailsService {
+
+    private static final String ROLE_PREFIX = "ROLE_";
+    private static final Pattern ROLE_NAME = Pattern.compile("[\\w.:-]+");
+
+    private final Path path;
+    private volatile Index index;
+    private Stamp seen;
+
+    public FileUserDetailsService(Path path) {
+        this.path = path;
+        try {
+            this.seen = Stamp.of(path);
+            this.index = read(path);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot read user file " + path, ex);
+        }
+        log.info("Loaded {} users from {}", index.size(), path);
+    }
+
+    /**
+     * Returns a new {@link User} on every call: the authentication manager erases the
+     * password of the instance it is given.
+     */
+    @Override
+    public UserDetails loadUserByUsername(String username) {
+        Index current = index;
+        int i = Arrays.binarySearch(current.keys(), username.toLowerCase(Locale.ROOT));
+        if (i < 0) {
+            throw new UsernameNotFoundException(username);
+        }
+        return new User(current.usernames()[i], current.passwords()[i], !current.disabled().get(i),
+                true, true, true, current.authorities().get(i));
+    }
+
+    /**
+     * Re-reads the file when its size or modification time changed. A file that cannot be
+     * read or parsed leaves the current users in place until it changes again.
+     */
+    public synchronized boolean reloadIfChanged() {
+        Index current = index;
+        try {
+            Stamp stamp = Stamp.of(path);
+            if (stamp.equals(seen)) {
+                return false;
+            }
+            seen = stamp;
+            index = read(path);
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Cannot reload user file {}, keeping {} users", path, current.size(), ex);
+            return false;
+        }
+        log.info("Reloaded {} users from {}", index.size(), path);
+        return true;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    private static Index read(Path path) throws IOException {
+        String content = Files.readString(path, StandardCharsets.UTF_8);
+        List<Entry> entries = path.getFileName().toString().endsWith(".json")
+                ? parseJson(content)
+                : parseCsv(content);
+        return Index.of(entries);
+    }
+
+    /**
+     * Columns are split at the first and at the last commas only: the hash runs from the first
+     * comma to the roles column and may itself contain commas, as Argon2 hashes do. The roles
+     * column is therefore required, even when empty, and a last column of {@code true} or
+     * {@code false} is the enabled flag.
+     */
+    private static List<Entry> parseCsv(String content) {
+        List<Entry> entries = new ArrayList<>();
+        String[] lines = content.split("\r?\n");
+        for (int n = 0; n < lines.length; n++) {
+            String line = lines[n].strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String where = "Line " + (n + 1);
+            int usernameEnd = line.indexOf(',');
+            int rolesEnd = line.length();
+            int hashEnd = line.lastIndexOf(',');
+            boolean enabled = true;
+
+            String last = line.substring(hashEnd + 1).strip();
+            if (last.equalsIgnoreCase("true") || last.equalsIgnoreCase("false")) {
+                enabled = Boolean.parseBoolean(last.toLowerCase(Locale.ROOT));
+                rolesEnd = hashEnd;
+                hashEnd = hashEnd > 0 ? line.lastIndexOf(',', hashEnd - 1) : -1;
+            }
+            if (usernameEnd < 0 || hashEnd <= usernameEnd) {
+                throw new IllegalArgumentException(where + ": expected username,hash,roles[,enabled]");
+            }
+
+            List<String> roles = new ArrayList<>();
+            for (String role : line.substring(hashEnd + 1, rolesEnd).split(";")) {
+                if (!role.isBlank()) {
+                    roles.add(role(role.strip(), where));
+                }
+            }
+            entries.add(new Entry(line.substring(0, usernameEnd).strip(),
+                    line.substring(usernameEnd + 1, hashEnd).strip(), roles, enabled));
+        }
+        return entries;
+    }
+
+    private static List<Entry> parseJson(String content) {
+        List<Object> users;
+        try {
+            users = JSONArrayUtils.parse(content);
+        } catch (ParseException ex) {
+            throw new IllegalArgumentException("Invalid user file: " + ex.getMessage(), ex);
+        }
+
+        List<Entry> entries = new ArrayList<>(users.size());
+        for (Object user : users) {
+            if (!(user instanceof Map<?, ?> fields)
+                    || !(fields.get("username") instanceof String username)
+                    || !(fields.get("password") instanceof String password)) {
+                throw new IllegalArgumentException("Each user needs a username and a password: " + user);
+            }
+            List<String> roles = new ArrayList<>();
+            if (fields.get("roles") instanceof Collection<?> values) {
+                for (Object role : values) {
+                    roles.add(role(String.valueOf(role), "User " + username));
+                }
+            }
+            entries.add(new Entry(username, password, roles, !Boolean.FALSE.equals(fields.get("enabled"))));
+        }
+        return entries;
+    }
+
+    /**
+     * Role names are stored without the {@code ROLE_} prefix, which is added to every role, as
+     * with {@link User.UserBuilder#roles(String...)}.
+     */
+    private static String role(String name, String where) {
+        if (name.startsWith(ROLE_PREFIX)) {
+            throw new IllegalArgumentException(where + ": role " + name + " must not start with "
+                    + ROLE_PREFIX + ", it is added automatically");
+        }
+        if (!ROLE_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException(where + ": invalid role name '" + name + "'");
+        }
+        return name;
+    }
+
+    private record Stamp(long lastModified, long size) {
+        static Stamp of(Path path) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new Stamp(attributes.lastModifiedTime().toMillis(), attributes.size());
+        }
+    }
+
+    private record Entry(String username, String password, List<String> roles, boolean enabled) {
+    }
+
+    /**
+     * Parallel arrays sorted by lower-cased username. Users with the same roles share one
+     * authority list.
+     */
+    private record Index(
+            String[] keys,
+            String[] usernames,
+            String[] passwords,
+            List<List<GrantedAuthority>> authorities,
+            BitSet disabled
+    ) {
+        static Index of(List<Entry> entries) {
+            Entry[] input = entries.toArray(new Entry[0]);
+            String[] keys = new String[input.length];
+            for (int i = 0; i < input.length; i++) {
+                keys[i] = input[i].username().toLowerCase(Locale.ROOT);
+            }
+            Integer[] order = new Integer[input.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> keys[a].compareTo(keys[b]));
+
+            AuthorityInterner interner = new AuthorityInterner(ROLE_PREFIX);
+            Map<List<String>, List<GrantedAuthority>> roleSets = new HashMap<>();
+
+            Index index = new Index(new String[input.length], new String[input.length],
+                    new String[input.length], new ArrayList<>(input.length), new BitSet(input.length));
+            for (int i = 0; i < order.length; i++) {
+                Entry entry = input[order[i]];
+                String key = keys[order[i]];
+                if (key.isBlank()) {
+                    throw new IllegalArgumentException("Blank username");
+                }
+                if (i > 0 && key.equals(index.keys()[i - 1])) {
+                    throw new IllegalArgumentException("Duplicate user " + entry.username());
+                }
+                index.keys()[i] = key;
+                index.usernames()[i] = entry.username();
+                index.passwords()[i] = entry.password();
+                index.authorities().add(roleSets.computeIfAbsent(entry.roles(), roles -> {
+                    List<GrantedAuthority> authorities = new ArrayList<>(roles.size());
+                    for (String role : roles) {
+                        authorities.add(interner.get(role));
+                    }
+                    return List.copyOf(authorities);
+                }));
+                if (!entry.enabled()) {
+                    index.disabled().set(i);
+                }
+            }
+            return index;
+        }
+
+        int size() {
+            return keys.length;
+        }
+    }
+}
@@ -1,19 +1,53 @@
 package it.svent404.security.repository;
 
+import it.svent404.security.support.TokenDigest;
+
+import java.time.Clock;
 import java.time.Instant;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+public class InMemoryTokenRepository implements TokenRepository {
+
+    private final Map<TokenDigest, Long> revoked = new ConcurrentHashMap<>();
+    private final Clock clock;
 
-public class InMemoryTokenRepository {
-    private final Map<String, Instant> revoked = new ConcurrentHashMap<>();
+    public InMemoryTokenRepository(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public boolean isRevoked(TokenDigest tokenId) {
+        return revoked.containsKey(tokenId);
+    }
 
-    public void store(String token, Instant exp) {}
+    @Override
+    public void revoke(TokenDigest tokenId, Instant expiresAt) {
+        if (expiresAt.isAfter(clock.instant())) {
+            revoked.put(tokenId, expiresAt.getEpochSecond());
+        }
+    }
+
+    @Override
+    public int purgeExpired() {
+        long now = clock.instant().getEpochSecond();
+        int before = revoked.size();
+        revoked.values().removeIf(exp -> exp <= now);
+        return before - revoked.size();
+    }
+
+    @Override
+    public void forEach(BiConsumer<TokenDigest, Instant> action) {
+        revoked.forEach((tokenId, exp) -> action.accept(tokenId, Instant.ofEpochSecond(exp)));
+    }
 
-    public boolean isRevoked(String token) {
-        return revoked.containsKey(token);
+    @Override
+    public boolean isNonBlocking() {
+        return true;
     }
 
-    public void revoke(String token) {
-        revoked.put(token, Instant.now());
+    public int size() {
+        return revoked.size();
     }
 }
@@ -0,0 +1,210 @@
+package it.svent404.security.repository;
+
+import it.svent404.security.support.TokenDigest;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Append-only revocation log mapped into memory. Each record is a 128-bit token digest followed by
+ * the token expiry in epoch seconds; a zero expiry marks the end of the log. Lookups never touch the
+ * file, they are served by an in-memory index rebuilt from the log on startup.
+ */
+@Slf4j
+public class MappedFileTokenRepository implements TokenRepository, AutoCloseable {
+
+    private static final long MAGIC = 0x53534F5245564C31L; // "SSOREVL1"
+    private static final int HEADER_BYTES = Long.BYTES;
+    private static final int RECORD_BYTES = 3 * Long.BYTES;
+    private static final int INITIAL_RECORDS = 4096;
+
+    private final Path path;
+    private final Clock clock;
+    private final InMemoryTokenRepository index;
+
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private int position;
+    private int expiredRecords;
+
+    public MappedFileTokenRepository(Path path, Clock clock) {
+        this.path = path;
+        this.clock = clock;
+        this.index = new InMemoryTokenRepository(clock);
+
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            open(path);
+            recover();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot open revocation log " + path, ex);
+        }
+    }
+
+    @Override
+    public boolean isRevoked(TokenDigest tokenId) {
+        return index.isRevoked(tokenId);
+    }
+
+    @Override
+    public synchronized void revoke(TokenDigest tokenId, Instant expiresAt) {
+        if (index.isRevoked(tokenId) || !expiresAt.isAfter(clock.instant())) {
+            return;
+        }
+
+        int start = position;
+        append(tokenId, expiresAt.getEpochSecond());
+        mapped.force(start, position - start);
+        index.revoke(tokenId, expiresAt);
+    }
+
+    @Override
+    public synchronized void revokeAll(Map<TokenDigest, Instant> revocations) {
+        Instant now = clock.instant();
+        int start = position;
+        revocations.forEach((tokenId, expiresAt) -> {
+            if (!index.isRevoked(tokenId) && expiresAt.isAfter(now)) {
+                append(tokenId, expiresAt.getEpochSecond());
+                index.revoke(tokenId, expiresAt);
+            }
+        });
+        if (position > start) {
+            mapped.force(start, position - start);
+        }
+    }
+
+    /**
+     * Drops expired entries from the index and rewrites the log with the live ones only.
+     */
+    @Override
+    public synchronized int purgeExpired() {
+        // records that had already expired when the log was recovered are only in the file
+        int purged = index.purgeExpired() + expiredRecords;
+        if (purged == 0) {
+            return 0;
+        }
+
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + index.size() * RECORD_BYTES);
+            buffer.putLong(MAGIC);
+            index.forEach((tokenId, exp) -> buffer
+                    .putLong(tokenId.high())
+                    .putLong(tokenId.low())
+                    .putLong(exp.getEpochSecond()));
+            buffer.flip();
+
+            try (FileChannel out = FileChannel.open(compacted,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                out.force(true);
+            }
+
+            channel.close();
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            open(path);
+            position = buffer.limit();
+            expiredRecords = 0;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot compact revocation log " + path, ex);
+        }
+        return purged;
+    }
+
+    @Override
+    public void forEach(BiConsumer<TokenDigest, Instant> action) {
+        index.forEach(action);
+    }
+
+    @Override
+    public boolean isNonBlocking() {
+        return true;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mapped.force();
+        channel.close();
+    }
+
+    private void open(Path file) throws IOException {
+        channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), HEADER_BYTES + (long) INITIAL_RECORDS * RECORD_BYTES);
+        map(size);
+    }
+
+    private void map(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Revocation log exceeds 2 GiB, compaction is not keeping up");
+        }
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private void recover() throws IOException {
+        long magic = mapped.getLong(0);
+        if (magic == 0) {
+            mapped.putLong(0, MAGIC);
+        } else if (magic != MAGIC) {
+            throw new IOException("Not a revocation log: " + path);
+        }
+
+        Instant now = clock.instant();
+        int offset = HEADER_BYTES;
+        while (offset + RECORD_BYTES <= mapped.capacity()) {
+            long exp = mapped.getLong(offset + 2 * Long.BYTES);
+            if (exp == 0) {
+                break;
+            }
+            if (exp > now.getEpochSecond()) {
+                index.revoke(
+                        new TokenDigest(mapped.getLong(offset), mapped.getLong(offset + Long.BYTES)),
+                        Instant.ofEpochSecond(exp)
+                );
+            } else {
+                expiredRecords++;
+            }
+            offset += RECORD_BYTES;
+        }
+        position = offset;
+
+        log.debug("Recovered {} live revocations from {}", index.size(), path);
+    }
+
+    private void append(TokenDigest tokenId, long exp) {
+        if (position + RECORD_BYTES > mapped.capacity()) {
+            try {
+                map((long) mapped.capacity() * 2);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Cannot grow revocation log " + path, ex);
+            }
+        }
+
+        mapped.putLong(position, tokenId.high());
+        mapped.putLong(position + Long.BYTES, tokenId.low());
+        // expiry last: a torn record keeps a zero expiry and ends the log on recovery
+        mapped.putLong(position + 2 * Long.BYTES, exp);
+        position += RECORD_BYTES;
+    }
+}
@@ -0,0 +1,171 @@
+package it.svent404.security.repository;
+
+import it.svent404.security.support.TokenDigest;
+
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Opaque, rotating refresh tokens grouped in families. Every login starts a family; every refresh
+ * marks the presented token as rotated and issues its successor in the same family. Presenting a
+ * rotated token again means it leaked, so the whole family is revoked. Rotation never takes a
+ * family past {@code maxLifetimeSeconds} from its login.
+ * <p>
+ * Tokens only exist on the replica that issued them. Revoking a well-formed token this store does
+ * not know hands its digest to the {@link #onForeignRevocation foreign revocation listener}, so the
+ * issuing replica can be told.
+ */
+public class RefreshTokenStore {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final int TOKEN_BYTES = 32;
+    private static final int TOKEN_LENGTH = 43;
+
+    private final Map<TokenDigest, Entry> tokens = new ConcurrentHashMap<>();
+    private final Map<Long, Family> families = new ConcurrentHashMap<>();
+    private final AtomicLong familyIds = new AtomicLong();
+    private final SecureRandom random = new SecureRandom();
+    private final Clock clock;
+    private final long expirationSeconds;
+    private final long maxLifetimeSeconds;
+    private volatile Consumer<TokenDigest> foreignRevocations = tokenId -> {};
+
+    public RefreshTokenStore(Clock clock, long expirationSeconds, long maxLifetimeSeconds) {
+        this.clock = clock;
+        this.expirationSeconds = expirationSeconds;
+        this.maxLifetimeSeconds = maxLifetimeSeconds;
+    }
+
+    public String issue(String subject, List<String> roles) {
+        long familyId = familyIds.incrementAndGet();
+        long now = now();
+        long notAfter = now + maxLifetimeSeconds;
+        long exp = Math.min(now + expirationSeconds, notAfter);
+        families.put(familyId, new Family(subject, List.copyOf(roles), exp, notAfter, false));
+        return newToken(familyId, exp);
+    }
+
+    public Optional<Rotation> rotate(String refreshToken) {
+        TokenDigest tokenId = TokenDigest.of(refreshToken);
+        long now = now();
+
+        Entry entry = tokens.get(tokenId);
+        if (entry == null || entry.expiresAt() <= now) {
+            return Optional.empty();
+        }
+
+        Family family = families.get(entry.familyId());
+        if (family == null || family.revoked() || family.notAfter() <= now) {
+            return Optional.empty();
+        }
+
+        if (entry.rotated() || !tokens.replace(tokenId, entry, entry.asRotated())) {
+            revokeFamily(entry.familyId());
+            return Optional.empty();
+        }
+
+        long exp = Math.min(now + expirationSeconds, family.notAfter());
+        families.computeIfPresent(entry.familyId(), (id, f) -> f.extendedTo(exp));
+
+        return Optional.of(new Rotation(
+                newToken(entry.familyId(), exp),
+                family.subject(),
+                family.roles()
+        ));
+    }
+
+    public boolean revoke(String refreshToken) {
+        TokenDigest tokenId = TokenDigest.of(refreshToken);
+        if (revoke(tokenId)) {
+            return true;
+        }
+        if (isWellFormed(refreshToken)) {
+            foreignRevocations.accept(tokenId);
+        }
+        return false;
+    }
+
+    /**
+     * Revokes the family of a token issued here, without notifying the foreign revocation listener.
+     */
+    public boolean revoke(TokenDigest tokenId) {
+        Entry entry = tokens.get(tokenId);
+        if (entry == null) {
+            return false;
+        }
+        revokeFamily(entry.familyId());
+        return true;
+    }
+
+    public void onForeignRevocation(Consumer<TokenDigest> listener) {
+        this.foreignRevocations = listener;
+    }
+
+    public int purgeExpired() {
+        long now = now();
+        int before = tokens.size();
+        tokens.values().removeIf(entry -> entry.expiresAt() <= now);
+        families.values().removeIf(family -> family.expiresAt() <= now);
+        return before - tokens.size();
+    }
+
+    public int size() {
+        return tokens.size();
+    }
+
+    private void revokeFamily(long familyId) {
+        families.computeIfPresent(familyId, (id, family) -> family.asRevoked());
+    }
+
+    private String newToken(long familyId, long exp) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = ENCODER.encodeToString(bytes);
+        tokens.put(TokenDigest.of(token), new Entry(familyId, exp, false));
+        return token;
+    }
+
+    private static boolean isWellFormed(String token) {
+        if (token.length() != TOKEN_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < TOKEN_LENGTH; i++) {
+            char c = token.charAt(i);
+            boolean base64Url = (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_';
+            if (!base64Url) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long now() {
+        return clock.instant().getEpochSecond();
+    }
+
+    public record Rotation(String refreshToken, String subject, List<String> roles) {}
+
+    private record Entry(long familyId, long expiresAt, boolean rotated) {
+        Entry asRotated() {
+            return new Entry(familyId, expiresAt, true);
+        }
+    }
+
+    private record Family(String subject, List<String> roles, long expiresAt, long notAfter, boolean revoked) {
+        Family extendedTo(long exp) {
+            return new Family(subject, roles, Math.max(expiresAt, exp), notAfter, revoked);
+        }
+
+        Family asRevoked() {
+            return new Family(subject, roles, expiresAt, notAfter, true);
+        }
+    }
+}
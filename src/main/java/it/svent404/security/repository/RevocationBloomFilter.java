@@ -0,0 +1,144 @@
+package it.svent404.security.repository;
+
+import it.svent404.security.support.TokenDigest;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bloom filter over revoked token digests. The digest is already a uniformly distributed
+ * SHA-256 prefix, so its two halves are used directly as the double-hashing pair.
+ */
+public class RevocationBloomFilter {
+
+    private final long expectedInsertions;
+    private final double falsePositiveProbability;
+    private final Clock clock;
+
+    private volatile Bits bits;
+
+    private final LongAdder negatives = new LongAdder();
+    private final LongAdder truePositives = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    public RevocationBloomFilter(long expectedInsertions, double falsePositiveProbability, Clock clock) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("expectedInsertions must be positive");
+        }
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("falsePositiveProbability must be in (0, 1)");
+        }
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.clock = clock;
+        this.bits = new Bits(expectedInsertions, falsePositiveProbability);
+    }
+
+    public boolean mightContain(TokenDigest tokenId) {
+        boolean positive = bits.mightContain(tokenId);
+        if (!positive) {
+            negatives.increment();
+        }
+        return positive;
+    }
+
+    public synchronized void put(TokenDigest tokenId) {
+        bits.put(tokenId);
+    }
+
+    /**
+     * Replaces the filter with one holding only the live entries of {@code source}, dropping the
+     * bits of expired revocations. Sized for twice the live count when that exceeds the configuration.
+     */
+    public synchronized void rebuild(TokenRepository source) {
+        Instant now = clock.instant();
+        long[] live = new long[1];
+        source.forEach((tokenId, exp) -> {
+            if (exp.isAfter(now)) {
+                live[0]++;
+            }
+        });
+
+        Bits rebuilt = new Bits(Math.max(expectedInsertions, live[0] * 2), falsePositiveProbability);
+        source.forEach((tokenId, exp) -> {
+            if (exp.isAfter(now)) {
+                rebuilt.put(tokenId);
+            }
+        });
+        bits = rebuilt;
+    }
+
+    void recordLookup(boolean revoked) {
+        if (revoked) {
+            truePositives.increment();
+        } else {
+            falsePositives.increment();
+        }
+    }
+
+    public long getNegatives() {
+        return negatives.sum();
+    }
+
+    public long getTruePositives() {
+        return truePositives.sum();
+    }
+
+    public long getFalsePositives() {
+        return falsePositives.sum();
+    }
+
+    /**
+     * Observed share of non-revoked tokens that still had to fall through to the store.
+     */
+    public double getFalsePositiveRate() {
+        long fp = falsePositives.sum();
+        long total = fp + negatives.sum();
+        return total == 0 ? 0.0 : (double) fp / total;
+    }
+
+    private static final class Bits {
+
+        private final AtomicLongArray words;
+        private final long size;
+        private final int hashes;
+
+        Bits(long expectedInsertions, double falsePositiveProbability) {
+            double ln2 = Math.log(2);
+            long m = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (ln2 * ln2));
+            int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (m + 63) >>> 6));
+            this.words = new AtomicLongArray(wordCount);
+            this.size = (long) wordCount << 6;
+            this.hashes = Math.max(1, (int) Math.round((double) size / expectedInsertions * ln2));
+        }
+
+        boolean mightContain(TokenDigest tokenId) {
+            long combined = tokenId.high();
+            for (int i = 0; i < hashes; i++) {
+                long bit = Long.remainderUnsigned(combined, size);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+                combined += tokenId.low();
+            }
+            return true;
+        }
+
+        void put(TokenDigest tokenId) {
+            long combined = tokenId.high();
+            for (int i = 0; i < hashes; i++) {
+                long bit = Long.remainderUnsigned(combined, size);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current;
+                while (((current = words.get(word)) & mask) == 0
+                        && !words.compareAndSet(word, current, current | mask)) {
+                    Thread.onSpinWait();
+                }
+                combined += tokenId.low();
+            }
+        }
+    }
+}
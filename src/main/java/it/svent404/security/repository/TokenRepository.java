@@ -0,0 +1,29 @@
+package it.svent404.security.repository;
+
+import it.svent404.security.support.TokenDigest;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+public interface TokenRepository {
+
+    boolean isRevoked(TokenDigest tokenId);
+
+    void revoke(TokenDigest tokenId, Instant expiresAt);
+
+    default void revokeAll(Map<TokenDigest, Instant> revocations) {
+        revocations.forEach(this::revoke);
+    }
+
+    int purgeExpired();
+
+    void forEach(BiConsumer<TokenDigest, Instant> action);
+
+    /**
+     * Whether {@link #isRevoked} only reads memory, so it may run on an event-loop thread.
+     */
+    default boolean isNonBlocking() {
+        return false;
+    }
+}
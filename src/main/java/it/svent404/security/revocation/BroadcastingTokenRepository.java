@@ -0,0 +1,52 @@
+package it.svent404.security.revocation;
+
+import it.svent404.security.repository.TokenRepository;
+import it.svent404.security.support.TokenDigest;
+import lombok.AllArgsConstructor;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Applies revocations locally, then hands them to the {@link RevocationBroadcaster}. Lookups
+ * never leave the replica.
+ */
+@AllArgsConstructor
+public class BroadcastingTokenRepository implements TokenRepository {
+
+    private final TokenRepository delegate;
+    private final RevocationBroadcaster broadcaster;
+
+    @Override
+    public boolean isRevoked(TokenDigest tokenId) {
+        return delegate.isRevoked(tokenId);
+    }
+
+    @Override
+    public void revoke(TokenDigest tokenId, Instant expiresAt) {
+        delegate.revoke(tokenId, expiresAt);
+        broadcaster.publish(Map.of(tokenId, expiresAt));
+    }
+
+    @Override
+    public void revokeAll(Map<TokenDigest, Instant> revocations) {
+        delegate.revokeAll(revocations);
+        broadcaster.publish(revocations);
+    }
+
+    @Override
+    public int purgeExpired() {
+        return delegate.purgeExpired();
+    }
+
+    @Override
+    public void forEach(BiConsumer<TokenDigest, Instant> action) {
+        delegate.forEach(action);
+    }
+
+    @Override
+    public boolean isNonBlocking() {
+        return delegate.isNonBlocking();
+    }
+}
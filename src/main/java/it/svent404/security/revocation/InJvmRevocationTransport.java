@@ -0,0 +1,82 @@
+package it.svent404.security.revocation;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Reference transport connecting every endpoint opened on the same channel name in this JVM,
+ * so several application contexts can act as replicas in one process. Each endpoint delivers
+ * on its own thread, like a network receiver would.
+ */
+@Slf4j
+public class InJvmRevocationTransport implements RevocationTransport {
+
+    private static final Map<String, Set<InJvmRevocationTransport>> CHANNELS = new ConcurrentHashMap<>();
+
+    private final String channel;
+    private final List<Consumer<RevocationBatch>> listeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService delivery = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform()
+                    .name("sso-revocation-inbound")
+                    .daemon()
+                    .factory()
+    );
+
+    public InJvmRevocationTransport(String channel) {
+        this.channel = channel;
+        CHANNELS.computeIfAbsent(channel, name -> ConcurrentHashMap.newKeySet()).add(this);
+    }
+
+    @Override
+    public void publish(RevocationBatch batch) {
+        for (InJvmRevocationTransport peer : CHANNELS.getOrDefault(channel, Set.of())) {
+            if (peer != this) {
+                peer.deliver(batch);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<RevocationBatch> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void unsubscribe(Consumer<RevocationBatch> listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void close() {
+        CHANNELS.computeIfPresent(channel, (name, peers) -> {
+            peers.remove(this);
+            return peers.isEmpty() ? null : peers;
+        });
+        delivery.shutdown();
+    }
+
+    private void deliver(RevocationBatch batch) {
+        try {
+            delivery.execute(() -> {
+                for (Consumer<RevocationBatch> listener : listeners) {
+                    try {
+                        listener.accept(batch);
+                    } catch (RuntimeException ex) {
+                        log.warn("Revocation listener failed on channel '{}'", channel, ex);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // endpoint closed while the batch was in flight
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package it.svent404.security.revocation;
+
+import it.svent404.security.support.TokenDigest;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Revocations published together by one replica.
+ *
+ * @param origin      id of the publishing replica
+ * @param revokedAt   when the oldest revocation in the batch happened on the origin
+ * @param revocations   access token digests with the expiry of the revoked token
+ * @param refreshTokens digests of refresh tokens the origin did not issue; the issuing replica
+ *                      revokes their family
+ */
+public record RevocationBatch(
+        String origin,
+        Instant revokedAt,
+        Map<TokenDigest, Instant> revocations,
+        Set<TokenDigest> refreshTokens
+) {}
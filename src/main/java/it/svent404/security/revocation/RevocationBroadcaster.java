@@ -0,0 +1,257 @@
+package it.svent404.security.revocation;
+
+import it.svent404.security.metrics.SsoMetrics;
+import it.svent404.security.metrics.SsoMetrics.Outcome;
+import it.svent404.security.metrics.SsoMetrics.Stage;
+import it.svent404.security.properties.SsoSecurityProperties;
+import it.svent404.security.repository.RefreshTokenStore;
+import it.svent404.security.repository.RevocationBloomFilter;
+import it.svent404.security.repository.TokenRepository;
+import it.svent404.security.support.TokenDigest;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Shares local revocations with the other replicas and applies theirs to the local store.
+ * Outgoing revocations wait up to {@code linger} (or until {@code maxBatchSize} are pending)
+ * and are published as one batch, with repeated digests coalesced. Logouts of refresh tokens
+ * issued by another replica travel in the same batches and revoke the family on the issuer.
+ * Incoming batches skip digests the local store already knows, so redelivery is harmless; the
+ * time from the oldest revocation in a batch to its local application is recorded as the
+ * {@link Stage#REVOCATION_PROPAGATION} stage.
+ */
+@Slf4j
+public class RevocationBroadcaster implements AutoCloseable {
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Consumer<RevocationBatch> listener = this::receive;
+    private final RevocationTransport transport;
+    private final TokenRepository store;
+    private final RevocationBloomFilter filter;
+    private final RefreshTokenStore refreshTokens;
+    private final Clock clock;
+    private final long lingerMicros;
+    private final int maxBatchSize;
+    private final SsoMetrics metrics;
+
+    private final ScheduledExecutorService outbound = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform()
+                    .name("sso-revocation-outbound")
+                    .daemon()
+                    .factory()
+    );
+
+    private Map<TokenDigest, Instant> pending = new HashMap<>();
+    private Set<TokenDigest> pendingRefreshTokens = new HashSet<>();
+    private Instant pendingSince;
+    private boolean flushScheduled;
+
+    private final LongAdder publishedBatches = new LongAdder();
+    private final LongAdder publishedRevocations = new LongAdder();
+    private final LongAdder publishFailures = new LongAdder();
+    private final LongAdder receivedBatches = new LongAdder();
+    private final LongAdder appliedRevocations = new LongAdder();
+    private final LongAdder duplicateRevocations = new LongAdder();
+
+    /**
+     * @param store         the store incoming revocations are written to, without re-publishing
+     *                      them or counting as lookups of the Bloom filter
+     * @param filter        the Bloom filter in front of {@code store}, or {@code null}
+     * @param refreshTokens the store whose foreign refresh token revocations are published
+     */
+    public RevocationBroadcaster(RevocationTransport transport, TokenRepository store, RevocationBloomFilter filter,
+                                 RefreshTokenStore refreshTokens, Clock clock,
+                                 Duration linger, int maxBatchSize, SsoMetrics metrics) {
+        this.transport = transport;
+        this.store = store;
+        this.filter = filter;
+        this.refreshTokens = refreshTokens;
+        this.clock = clock;
+        this.lingerMicros = TimeUnit.NANOSECONDS.toMicros(linger.toNanos());
+        this.maxBatchSize = maxBatchSize;
+        this.metrics = metrics;
+        transport.subscribe(listener);
+        refreshTokens.onForeignRevocation(this::publishRefreshToken);
+    }
+
+    public static RevocationBroadcaster from(RevocationTransport transport, TokenRepository store,
+                                             RevocationBloomFilter filter, RefreshTokenStore refreshTokens, Clock clock,
+                                             SsoSecurityProperties.Revocation.Broadcast config, SsoMetrics metrics) {
+        return new RevocationBroadcaster(transport, store, filter, refreshTokens, clock,
+                Duration.ofMillis(config.getLingerMillis()), config.getMaxBatchSize(), metrics);
+    }
+
+    /**
+     * Queues revocations that were just applied locally.
+     */
+    public void publish(Map<TokenDigest, Instant> revocations) {
+        if (revocations.isEmpty()) {
+            return;
+        }
+
+        long delayMicros;
+        synchronized (this) {
+            markPending();
+            revocations.forEach((tokenId, expiresAt) -> pending.merge(tokenId, expiresAt,
+                    (a, b) -> a.isAfter(b) ? a : b));
+            delayMicros = scheduleFlush();
+        }
+        flushLater(delayMicros);
+    }
+
+    /**
+     * Queues the logout of a refresh token this replica did not issue.
+     */
+    public void publishRefreshToken(TokenDigest tokenId) {
+        long delayMicros;
+        synchronized (this) {
+            markPending();
+            pendingRefreshTokens.add(tokenId);
+            delayMicros = scheduleFlush();
+        }
+        flushLater(delayMicros);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public long getPublishedBatches() {
+        return publishedBatches.sum();
+    }
+
+    public long getPublishedRevocations() {
+        return publishedRevocations.sum();
+    }
+
+    public long getPublishFailures() {
+        return publishFailures.sum();
+    }
+
+    public long getReceivedBatches() {
+        return receivedBatches.sum();
+    }
+
+    public long getAppliedRevocations() {
+        return appliedRevocations.sum();
+    }
+
+    public long getDuplicateRevocations() {
+        return duplicateRevocations.sum();
+    }
+
+    @Override
+    public void close() {
+        transport.unsubscribe(listener);
+        refreshTokens.onForeignRevocation(tokenId -> {});
+        outbound.shutdown();
+        flush();
+    }
+
+    void flush() {
+        RevocationBatch batch;
+        synchronized (this) {
+            flushScheduled = false;
+            if (pending.isEmpty() && pendingRefreshTokens.isEmpty()) {
+                return;
+            }
+            batch = new RevocationBatch(nodeId, pendingSince, Map.copyOf(pending), Set.copyOf(pendingRefreshTokens));
+            pending = new HashMap<>();
+            pendingRefreshTokens = new HashSet<>();
+        }
+
+        int size = batch.revocations().size() + batch.refreshTokens().size();
+        try {
+            transport.publish(batch);
+            publishedBatches.increment();
+            publishedRevocations.add(size);
+        } catch (RuntimeException ex) {
+            // the revocations stay effective on this replica
+            publishFailures.increment();
+            log.warn("Cannot publish {} revocations", size, ex);
+        }
+    }
+
+    void receive(RevocationBatch batch) {
+        if (nodeId.equals(batch.origin())) {
+            return;
+        }
+        receivedBatches.increment();
+
+        // the store is asked directly: these lookups are not requests and must not count
+        // against the Bloom filter's observed false-positive rate
+        Map<TokenDigest, Instant> fresh = new HashMap<>();
+        batch.revocations().forEach((tokenId, expiresAt) -> {
+            if (store.isRevoked(tokenId)) {
+                duplicateRevocations.increment();
+            } else {
+                fresh.put(tokenId, expiresAt);
+            }
+        });
+        if (!fresh.isEmpty()) {
+            // store first, as in BloomFilteredTokenRepository
+            store.revokeAll(fresh);
+            if (filter != null) {
+                fresh.keySet().forEach(filter::put);
+            }
+            appliedRevocations.add(fresh.size());
+        }
+
+        // digests of refresh tokens issued elsewhere are not known here and are skipped
+        for (TokenDigest tokenId : batch.refreshTokens()) {
+            if (refreshTokens.revoke(tokenId)) {
+                appliedRevocations.increment();
+            }
+        }
+
+        long lagNanos = Math.max(0, Duration.between(batch.revokedAt(), clock.instant()).toNanos());
+        metrics.record(Stage.REVOCATION_PROPAGATION, Outcome.SUCCESS, System.nanoTime() - lagNanos);
+    }
+
+    private void markPending() {
+        if (pending.isEmpty() && pendingRefreshTokens.isEmpty()) {
+            pendingSince = clock.instant();
+        }
+    }
+
+    /**
+     * Delay before the pending revocations go out, or -1 when a flush is already scheduled.
+     */
+    private long scheduleFlush() {
+        long delayMicros;
+        if (pending.size() + pendingRefreshTokens.size() >= maxBatchSize) {
+            delayMicros = 0;
+        } else if (!flushScheduled) {
+            delayMicros = lingerMicros;
+        } else {
+            return -1;
+        }
+        flushScheduled = true;
+        return delayMicros;
+    }
+
+    private void flushLater(long delayMicros) {
+        if (delayMicros < 0) {
+            return;
+        }
+        try {
+            outbound.schedule(this::flush, delayMicros, TimeUnit.MICROSECONDS);
+        } catch (RejectedExecutionException ex) {
+            // closing: close() flushes what is pending
+        }
+    }
+}
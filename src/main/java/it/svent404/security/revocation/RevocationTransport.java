@@ -0,0 +1,21 @@
+package it.svent404.security.revocation;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries {@link RevocationBatch}es between replicas. Delivery is at least once and unordered:
+ * receivers apply batches idempotently and drop their own. Implementations must not call
+ * listeners on the publishing thread.
+ */
+public interface RevocationTransport extends AutoCloseable {
+
+    void publish(RevocationBatch batch);
+
+    void subscribe(Consumer<RevocationBatch> listener);
+
+    void unsubscribe(Consumer<RevocationBatch> listener);
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,163 @@
+package it.svent404.security.service;
+
+import it.svent404.security.cache.ExpiringCache;
+import it.svent404.security.metrics.SsoMetrics;
+import it.svent404.security.metrics.SsoMetrics.Outcome;
+import it.svent404.security.metrics.SsoMetrics.Stage;
+import it.svent404.security.support.TokenDigest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
+import org.springframework.security.oauth2.core.OAuth2TokenIntrospectionClaimNames;
+import org.springframework.security.oauth2.server.resource.introspection.BadOpaqueTokenException;
+import org.springframework.security.oauth2.server.resource.introspection.OAuth2IntrospectionException;
+import org.springframework.security.oauth2.server.resource.introspection.OpaqueTokenIntrospector;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers introspection results by token digest. An active result is reused for {@code ttl},
+ * never past the token's {@code exp}; after that the IdP is asked again, and if it cannot be
+ * reached the previous result keeps being served until {@code exp}. Inactive results are kept
+ * for {@code negativeTtl} in a separate, smaller cache, so a flood of forged tokens only evicts
+ * other rejections and never an active token. Concurrent requests for the same token share one
+ * IdP call.
+ */
+@Slf4j
+public class CachingOpaqueTokenIntrospector implements OpaqueTokenIntrospector {
+
+    private final OpaqueTokenIntrospector delegate;
+    private final ExpiringCache<Result> cache;
+    private final ExpiringCache<Result> negativeCache;
+    private final Clock clock;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+    private final SsoMetrics metrics;
+
+    private final Map<TokenDigest, CompletableFuture<Result>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder staleFallbacks = new LongAdder();
+
+    public CachingOpaqueTokenIntrospector(OpaqueTokenIntrospector delegate, ExpiringCache<Result> cache,
+                                          ExpiringCache<Result> negativeCache, Clock clock,
+                                          Duration ttl, Duration negativeTtl, SsoMetrics metrics) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.negativeCache = negativeCache;
+        this.clock = clock;
+        this.ttlMillis = ttl.toMillis();
+        this.negativeTtlMillis = negativeTtl.toMillis();
+        this.metrics = metrics;
+    }
+
+    @Override
+    public OAuth2AuthenticatedPrincipal introspect(String token) {
+        TokenDigest digest = TokenDigest.of(token);
+        Result cached = cache.get(digest);
+        if (cached == null) {
+            cached = negativeCache.get(digest);
+        }
+        Result result = cached != null && cached.freshUntilMillis() > clock.millis()
+                ? cached
+                : coalesce(digest, token, cached);
+
+        if (result.principal() == null) {
+            throw new BadOpaqueTokenException(result.error());
+        }
+        return result.principal();
+    }
+
+    public ExpiringCache<Result> getCache() {
+        return cache;
+    }
+
+    public ExpiringCache<Result> getNegativeCache() {
+        return negativeCache;
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getStaleFallbacks() {
+        return staleFallbacks.sum();
+    }
+
+    private Result coalesce(TokenDigest digest, String token, Result stale) {
+        CompletableFuture<Result> mine = new CompletableFuture<>();
+        CompletableFuture<Result> running = inFlight.putIfAbsent(digest, mine);
+        if (running != null) {
+            coalesced.increment();
+            try {
+                return running.join();
+            } catch (CompletionException ex) {
+                throw ex.getCause() instanceof RuntimeException cause ? cause : ex;
+            }
+        }
+
+        try {
+            Result result = remote(digest, token, stale);
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(digest, mine);
+        }
+    }
+
+    private Result remote(TokenDigest digest, String token, Result stale) {
+        long start = System.nanoTime();
+        try {
+            OAuth2AuthenticatedPrincipal principal = delegate.introspect(token);
+            long now = clock.millis();
+            Instant expiresAt = expiresAt(principal);
+            long expiresAtMillis = expiresAt != null ? expiresAt.toEpochMilli() : now + ttlMillis;
+
+            Result result = new Result(principal, null, Math.min(now + ttlMillis, expiresAtMillis));
+            cache.put(digest, result, Instant.ofEpochMilli(expiresAtMillis));
+            metrics.record(Stage.INTROSPECT, Outcome.SUCCESS, start);
+            return result;
+        } catch (BadOpaqueTokenException ex) {
+            long until = clock.millis() + negativeTtlMillis;
+            Result result = new Result(null, ex.getMessage(), until);
+            cache.evict(digest);
+            negativeCache.put(digest, result, Instant.ofEpochMilli(until));
+            metrics.record(Stage.INTROSPECT, Outcome.INVALID, start);
+            return result;
+        } catch (OAuth2IntrospectionException ex) {
+            metrics.record(Stage.INTROSPECT, Outcome.ERROR, start);
+            if (stale != null && stale.principal() != null) {
+                staleFallbacks.increment();
+                log.debug("Introspection failed, serving the cached result until the token expires: {}", ex.getMessage());
+                return stale;
+            }
+            throw ex;
+        }
+    }
+
+    private static Instant expiresAt(OAuth2AuthenticatedPrincipal principal) {
+        Object exp = principal.getAttribute(OAuth2TokenIntrospectionClaimNames.EXP);
+        if (exp instanceof Instant instant) {
+            return instant;
+        }
+        if (exp instanceof Number seconds) {
+            return Instant.ofEpochSecond(seconds.longValue());
+        }
+        return null;
+    }
+
+    /**
+     * Cached outcome of one introspection: either an active principal or the reason the token
+     * was rejected.
+     */
+    public record Result(OAuth2AuthenticatedPrincipal principal, String error, long freshUntilMillis) {
+    }
+}
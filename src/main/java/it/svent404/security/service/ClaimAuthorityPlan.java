@@ -0,0 +1,133 @@
+package it.svent404.security.service;
+
+import it.svent404.security.properties.SsoSecurityProperties;
+import it.svent404.security.support.AuthorityInterner;
+import org.springframework.security.core.GrantedAuthority;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Fixed list of claim paths to read authorities from, resolved once at startup. Each path is
+ * pre-split into its segments and bound to an interner for its prefix, so converting a token
+ * only walks the claims map; no configuration is parsed per request.
+ */
+public final class ClaimAuthorityPlan {
+
+    private final String[][] paths;
+    private final AuthorityInterner[] interners;
+
+    private ClaimAuthorityPlan(List<String[]> paths, List<String> prefixes) {
+        Map<String, AuthorityInterner> byPrefix = new HashMap<>();
+        this.paths = paths.toArray(String[][]::new);
+        this.interners = new AuthorityInterner[prefixes.size()];
+        for (int i = 0; i < interners.length; i++) {
+            interners[i] = byPrefix.computeIfAbsent(prefixes.get(i), AuthorityInterner::new);
+        }
+    }
+
+    /**
+     * The Keycloak layout: {@code scope}, {@code realm_access.roles} and, when a resource id is
+     * given, {@code resource_access.<resourceId>.roles}.
+     */
+    public static ClaimAuthorityPlan defaults(String resourceId) {
+        List<String[]> paths = new ArrayList<>();
+        List<String> prefixes = new ArrayList<>();
+        paths.add(new String[] {"scope"});
+        prefixes.add("SCOPE_");
+        paths.add(new String[] {"realm_access", "roles"});
+        prefixes.add("ROLE_");
+        if (resourceId != null) {
+            paths.add(new String[] {"resource_access", resourceId, "roles"});
+            prefixes.add("ROLE_");
+        }
+        return new ClaimAuthorityPlan(paths, prefixes);
+    }
+
+    public static ClaimAuthorityPlan from(SsoSecurityProperties.Auth.Converter converter) {
+        if (converter.getRoleMappings().isEmpty()) {
+            return defaults(converter.getResourceId());
+        }
+        List<String[]> paths = new ArrayList<>();
+        List<String> prefixes = new ArrayList<>();
+        for (SsoSecurityProperties.Auth.RoleMapping mapping : converter.getRoleMappings()) {
+            paths.add(pathOf(mapping));
+            prefixes.add(mapping.getPrefix() != null ? mapping.getPrefix() : "");
+        }
+        return new ClaimAuthorityPlan(paths, prefixes);
+    }
+
+    private static String[] pathOf(SsoSecurityProperties.Auth.RoleMapping mapping) {
+        boolean hasClaim = mapping.getClaim() != null && !mapping.getClaim().isBlank();
+        boolean hasClient = mapping.getClient() != null && !mapping.getClient().isBlank();
+        if (hasClaim == hasClient) {
+            throw new IllegalArgumentException("A role mapping needs exactly one of claim or client");
+        }
+        if (hasClient) {
+            return new String[] {"resource_access", mapping.getClient(), "roles"};
+        }
+        String[] path = mapping.getClaim().split("\\.");
+        for (String segment : path) {
+            if (segment.isEmpty()) {
+                throw new IllegalArgumentException("Invalid claim path: " + mapping.getClaim());
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Raw claim values, one slot per configured path and in plan order; a slot is {@code null}
+     * when the path is absent or does not end in a string or collection.
+     */
+    Object[] extract(Map<String, Object> claims) {
+        Object[] values = new Object[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            values[i] = valueAt(claims, paths[i]);
+        }
+        return values;
+    }
+
+    Set<GrantedAuthority> authorities(Object[] values) {
+        Set<GrantedAuthority> authorities = new HashSet<>();
+        for (int i = 0; i < values.length; i++) {
+            AuthorityInterner interner = interners[i];
+            if (values[i] instanceof String names) {
+                addDelimited(names, interner, authorities);
+            } else if (values[i] instanceof Collection<?> names) {
+                for (Object name : names) {
+                    if (name != null) {
+                        authorities.add(interner.get(name.toString()));
+                    }
+                }
+            }
+        }
+        return authorities;
+    }
+
+    private static Object valueAt(Map<String, Object> claims, String[] path) {
+        Object current = claims.get(path[0]);
+        for (int i = 1; i < path.length && current != null; i++) {
+            current = current instanceof Map<?, ?> map ? map.get(path[i]) : null;
+        }
+        return current instanceof String || current instanceof Collection<?> ? current : null;
+    }
+
+    private static void addDelimited(String names, AuthorityInterner interner, Set<GrantedAuthority> authorities) {
+        int from = 0;
+        int length = names.length();
+        while (from < length) {
+            int to = names.indexOf(' ', from);
+            if (to < 0) {
+                to = length;
+            }
+            if (to > from) {
+                authorities.add(interner.get(names.substring(from, to)));
+            }
+            from = to + 1;
+        }
+    }
+}
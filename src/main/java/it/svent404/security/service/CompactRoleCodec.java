@@ -0,0 +1,128 @@
+package it.svent404.security.service;
+
+import it.svent404.security.properties.SsoSecurityProperties;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encodes the roles of the compact token profile: roles found in the configured dictionary
+ * become bits of one {@code long}, the others travel as a plain list. Decoding returns a
+ * shared role and authority list per distinct combination. Tokens carry a fingerprint of the
+ * dictionary, and {@link #decode} refuses bits encoded under a different one rather than
+ * mapping them to the wrong roles.
+ */
+public class CompactRoleCodec {
+
+    public static final int MAX_ROLES = Long.SIZE;
+
+    private final String[] dictionary;
+    private final Map<String, Integer> positions;
+    private final String fingerprint;
+    private final int cacheSize;
+    private final Map<Key, Roles> decoded = new ConcurrentHashMap<>();
+
+    public CompactRoleCodec(List<String> dictionary, int cacheSize) {
+        if (dictionary.size() > MAX_ROLES) {
+            throw new IllegalArgumentException("At most " + MAX_ROLES + " roles in the compact role dictionary");
+        }
+        this.dictionary = dictionary.toArray(new String[0]);
+        this.positions = new HashMap<>();
+        for (int i = 0; i < this.dictionary.length; i++) {
+            if (positions.putIfAbsent(this.dictionary[i], i) != null) {
+                throw new IllegalArgumentException("Duplicate role in the compact role dictionary: " + this.dictionary[i]);
+            }
+        }
+        this.fingerprint = fingerprint(this.dictionary);
+        this.cacheSize = cacheSize;
+    }
+
+    public static CompactRoleCodec from(SsoSecurityProperties.Compact config) {
+        return new CompactRoleCodec(config.getRoles(), config.getCacheSize());
+    }
+
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    public Encoded encode(Collection<String> roles) {
+        long bits = 0;
+        List<String> others = new ArrayList<>();
+        for (String role : roles) {
+            Integer position = positions.get(role);
+            if (position != null) {
+                bits |= 1L << position;
+            } else {
+                others.add(role);
+            }
+        }
+        return new Encoded(bits, others);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token was encoded with another dictionary
+     */
+    public Roles decode(long bits, String tokenFingerprint, List<String> others) {
+        if (bits != 0 && !fingerprint.equals(tokenFingerprint)) {
+            throw new IllegalArgumentException("Token roles were encoded with a different dictionary");
+        }
+        if (dictionary.length < MAX_ROLES && bits >>> dictionary.length != 0) {
+            throw new IllegalArgumentException("Token role bits outside the dictionary");
+        }
+
+        Key key = new Key(bits, others);
+        Roles roles = decoded.get(key);
+        if (roles == null) {
+            roles = expand(bits, others);
+            if (decoded.size() >= cacheSize) {
+                decoded.clear();
+            }
+            decoded.put(key, roles);
+        }
+        return roles;
+    }
+
+    private Roles expand(long bits, List<String> others) {
+        List<String> names = new ArrayList<>(Long.bitCount(bits) + others.size());
+        for (long remaining = bits; remaining != 0; remaining &= remaining - 1) {
+            names.add(dictionary[Long.numberOfTrailingZeros(remaining)]);
+        }
+        names.addAll(others);
+
+        List<GrantedAuthority> authorities = new ArrayList<>(names.size());
+        for (String name : names) {
+            authorities.add(new SimpleGrantedAuthority(name));
+        }
+        return new Roles(List.copyOf(names), List.copyOf(authorities));
+    }
+
+    private static String fingerprint(String[] dictionary) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(String.join("\n", dictionary).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, 6));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+
+    public record Encoded(long bits, List<String> others) {
+    }
+
+    public record Roles(List<String> names, List<GrantedAuthority> authorities) {
+    }
+
+    private record Key(long bits, List<String> others) {
+    }
+}
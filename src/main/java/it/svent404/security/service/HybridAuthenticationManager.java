@@ -0,0 +1,33 @@
+package it.svent404.security.service;
+
+import lombok.AllArgsConstructor;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.server.resource.InvalidBearerTokenException;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+
+/**
+ * Verifies a bearer token on the path chosen by {@link HybridTokenRouter}: local tokens through
+ * {@link LocalJwtService}, with its cache and revocation check, the others through the OAuth2
+ * manager. Tokens from an issuer that is not accepted are rejected without verification.
+ */
+@AllArgsConstructor
+public class HybridAuthenticationManager implements AuthenticationManager {
+
+    private final HybridTokenRouter router;
+    private final LocalJwtService localJwtService;
+    private final AuthenticationManager oauth2AuthenticationManager;
+
+    @Override
+    public Authentication authenticate(Authentication authentication) {
+        if (!(authentication instanceof BearerTokenAuthenticationToken bearer)) {
+            return null;
+        }
+
+        return switch (router.route(bearer.getToken())) {
+            case LOCAL -> localJwtService.toAuthentication(bearer.getToken());
+            case OAUTH2 -> oauth2AuthenticationManager.authenticate(bearer);
+            case UNKNOWN -> throw new InvalidBearerTokenException("Token issuer is not accepted");
+        };
+    }
+}
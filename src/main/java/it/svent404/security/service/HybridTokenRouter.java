@@ -0,0 +1,153 @@
+package it.svent404.security.service;
+
+import it.svent404.security.key.SigningKeyRing;
+import it.svent404.security.metrics.SsoMetrics;
+import it.svent404.security.metrics.SsoMetrics.Outcome;
+import it.svent404.security.metrics.SsoMetrics.Stage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decides which path verifies a bearer token in {@code hybrid} mode, from its unverified
+ * {@code kid} header and, when the key is not a local one, its {@code iss} claim. Both are
+ * found by scanning the decoded segment rather than parsing it as JSON, and the token is then
+ * verified by exactly one path: a token is never tried locally and then again against the IdP.
+ * The route is only a hint, a forged {@code kid} or {@code iss} still has to pass verification.
+ */
+public class HybridTokenRouter {
+
+    public enum Route { LOCAL, OAUTH2, UNKNOWN }
+
+    private static final byte[] KID = member("kid");
+    private static final byte[] ISS = member("iss");
+
+    private final SigningKeyRing localKeys;
+    private final Map<String, Route> issuers;
+    private final Route otherIssuers;
+    private final SsoMetrics metrics;
+
+    /**
+     * @param oauth2Issuers the issuers accepted on the OAuth2 path; when empty, every token
+     *                      that is not local goes there
+     */
+    public HybridTokenRouter(SigningKeyRing localKeys, Collection<String> oauth2Issuers, SsoMetrics metrics) {
+        Map<String, Route> routes = new HashMap<>();
+        for (String issuer : oauth2Issuers) {
+            routes.put(issuer, Route.OAUTH2);
+        }
+        routes.put(LocalJwtService.ISSUER, Route.LOCAL);
+
+        this.localKeys = localKeys;
+        this.issuers = Map.copyOf(routes);
+        this.otherIssuers = oauth2Issuers.isEmpty() ? Route.OAUTH2 : Route.UNKNOWN;
+        this.metrics = metrics;
+    }
+
+    public Route route(String token) {
+        long start = System.nanoTime();
+        int headerEnd = token.indexOf('.');
+        int payloadEnd = headerEnd < 0 ? -1 : token.indexOf('.', headerEnd + 1);
+        if (payloadEnd < 0) {
+            metrics.record(Stage.DISPATCH, Outcome.MALFORMED, start);
+            return Route.UNKNOWN;
+        }
+
+        Route route;
+        try {
+            String kid = stringMember(token, 0, headerEnd, KID);
+            if (kid != null && localKeys.verificationKey(kid) != null) {
+                route = Route.LOCAL;
+            } else {
+                // a retired local key, or another issuer
+                String issuer = stringMember(token, headerEnd + 1, payloadEnd, ISS);
+                route = issuer != null ? issuers.getOrDefault(issuer, otherIssuers) : otherIssuers;
+            }
+        } catch (IllegalArgumentException ex) {
+            metrics.record(Stage.DISPATCH, Outcome.MALFORMED, start);
+            return Route.UNKNOWN;
+        }
+
+        metrics.record(Stage.DISPATCH, route == Route.UNKNOWN ? Outcome.REJECTED : Outcome.SUCCESS, start);
+        return route;
+    }
+
+    /**
+     * The string value of the member named by {@code name} in the base64url JSON segment
+     * {@code token[from, to)}, or {@code null} if it has none or uses escapes other than
+     * {@code \/}, {@code \"} and {@code \\}.
+     */
+    private static String stringMember(String token, int from, int to, byte[] name) {
+        byte[] json = Base64.getUrlDecoder().decode(token.substring(from, to));
+
+        int i = indexOf(json, name);
+        if (i < 0) {
+            return null;
+        }
+        i = skipWhitespace(json, i + name.length);
+        if (i >= json.length || json[i] != ':') {
+            return null;
+        }
+        i = skipWhitespace(json, i + 1);
+        if (i >= json.length || json[i] != '"') {
+            return null;
+        }
+
+        int start = i + 1;
+        for (i = start; i < json.length; i++) {
+            if (json[i] == '"') {
+                return new String(json, start, i - start, StandardCharsets.UTF_8);
+            }
+            if (json[i] == '\\') {
+                return unescape(json, start);
+            }
+        }
+        return null;
+    }
+
+    private static String unescape(byte[] json, int start) {
+        byte[] value = new byte[json.length - start];
+        int length = 0;
+        for (int i = start; i < json.length; i++) {
+            byte b = json[i];
+            if (b == '"') {
+                return new String(value, 0, length, StandardCharsets.UTF_8);
+            }
+            if (b == '\\') {
+                if (++i >= json.length || (json[i] != '/' && json[i] != '"' && json[i] != '\\')) {
+                    return null;
+                }
+                b = json[i];
+            }
+            value[length++] = b;
+        }
+        return null;
+    }
+
+    private static int indexOf(byte[] json, byte[] name) {
+        outer:
+        for (int i = 0; i <= json.length - name.length; i++) {
+            for (int j = 0; j < name.length; j++) {
+                if (json[i + j] != name[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(byte[] json, int i) {
+        while (i < json.length && (json[i] == ' ' || json[i] == '\t' || json[i] == '\n' || json[i] == '\r')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static byte[] member(String name) {
+        return ('"' + name + '"').getBytes(StandardCharsets.US_ASCII);
+    }
+}
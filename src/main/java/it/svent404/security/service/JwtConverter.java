@@ -1,99 +1,91 @@
 package it.svent404.security.service;
 
+import it.svent404.security.metrics.SsoMetrics;
+import it.svent404.security.metrics.SsoMetrics.Outcome;
+import it.svent404.security.metrics.SsoMetrics.Stage;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.AbstractAuthenticationToken;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtClaimNames;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
-import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class JwtConverter implements Converter<Jwt, AbstractAuthenticationToken> {
 
-    private final JwtGrantedAuthoritiesConverter scopeConverter;
     private final String principalAttribute;
-    private final String resourceId;
+    private final ClaimAuthorityPlan plan;
+    private final SsoMetrics metrics;
+    private final int authorityCacheSize;
+    private final Map<List<Object>, Set<GrantedAuthority>> authoritySets;
 
     public JwtConverter(String principalAttribute, String resourceId) {
-        this.principalAttribute = principalAttribute;
-        this.resourceId = resourceId;
+        this(principalAttribute, resourceId, SsoMetrics.NOOP);
+    }
 
-        this.scopeConverter = new JwtGrantedAuthoritiesConverter();
-        this.scopeConverter.setAuthorityPrefix("SCOPE_");
-        this.scopeConverter.setAuthoritiesClaimName("scope");
+    public JwtConverter(String principalAttribute, String resourceId, SsoMetrics metrics) {
+        this(principalAttribute, ClaimAuthorityPlan.defaults(resourceId), 0, metrics);
+    }
+
+    /**
+     * @param authorityCacheSize how many distinct combinations of the claims read by {@code plan}
+     *                           to remember; {@code 0} disables the cache
+     */
+    public JwtConverter(String principalAttribute, ClaimAuthorityPlan plan, int authorityCacheSize, SsoMetrics metrics) {
+        this.principalAttribute = principalAttribute;
+        this.plan = plan;
+        this.metrics = metrics;
+        this.authorityCacheSize = authorityCacheSize;
+        this.authoritySets = authorityCacheSize > 0 ? new ConcurrentHashMap<>() : null;
     }
 
     @Override
     public AbstractAuthenticationToken convert(@NonNull Jwt jwt) {
 
-        Set<GrantedAuthority> authorities = Stream.of(
-                        scopeConverter.convert(jwt),
-                        extractRealmRoles(jwt),
-                        extractClientRoles(jwt)
-                )
-                .filter(Objects::nonNull)
-                .flatMap(Collection::stream)
-                .collect(Collectors.toSet());
+        long start = System.nanoTime();
+        Object[] claims = plan.extract(jwt.getClaims());
+        Collection<GrantedAuthority> authorities = authoritySets == null
+                ? plan.authorities(claims)
+                : cachedAuthorities(claims);
 
-        return new JwtAuthenticationToken(
+        JwtAuthenticationToken authentication = new JwtAuthenticationToken(
                 jwt,
                 authorities,
                 getPrincipalName(jwt)
         );
+        metrics.record(Stage.CONVERT, Outcome.SUCCESS, start);
+        return authentication;
     }
 
-    private String getPrincipalName(Jwt jwt) {
-        String claim = principalAttribute != null
-                ? principalAttribute
-                : JwtClaimNames.SUB;
-
-        return jwt.getClaimAsString(claim);
-    }
-
-    private Collection<GrantedAuthority> extractRealmRoles(Jwt jwt) {
-        Map<String, Object> realmAccess = jwt.getClaim("realm_access");
-        if (realmAccess == null) {
-            return Set.of();
+    private Set<GrantedAuthority> cachedAuthorities(Object[] claims) {
+        List<Object> key = Arrays.asList(claims);
+        Set<GrantedAuthority> authorities = authoritySets.get(key);
+        if (authorities != null) {
+            return authorities;
         }
-
-        Object roles = realmAccess.get("roles");
-        if (!(roles instanceof Collection<?> roleList)) {
-            return Set.of();
+        authorities = Set.copyOf(plan.authorities(claims));
+        if (authoritySets.size() >= authorityCacheSize) {
+            authoritySets.clear();
         }
-
-        return roleList.stream()
-                .map(Object::toString)
-                .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
-                .collect(Collectors.toSet());
+        authoritySets.put(key, authorities);
+        return authorities;
     }
 
-    private Collection<GrantedAuthority> extractClientRoles(Jwt jwt) {
-        Map<String, Object> resourceAccess = jwt.getClaim("resource_access");
-        if (resourceAccess == null || !resourceAccess.containsKey(resourceId)) {
-            return Set.of();
-        }
-
-        Object resource = resourceAccess.get(resourceId);
-        if (!(resource instanceof Map<?, ?> resourceMap)) {
-            return Set.of();
-        }
+    int cachedAuthoritySets() {
+        return authoritySets == null ? 0 : authoritySets.size();
+    }
 
-        Object roles = resourceMap.get("roles");
-        if (!(roles instanceof Collection<?> roleList)) {
-            return Set.of();
-        }
+    private String getPrincipalName(Jwt jwt) {
+        String claim = principalAttribute != null
+                ? principalAttribute
+                : JwtClaimNames.SUB;
 
-        return roleList.stream()
-                .map(Object::toString)
-                .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
-                .collect(Collectors.toSet());
+        return jwt.getClaimAsString(claim);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,102 @@
+package it.svent404.security.service;
+
+import it.svent404.security.support.AuthorityInterner;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An authenticated local token. It keeps the role list exactly as parsed from the token and
+ * only builds the {@link GrantedAuthority} list when {@link #getAuthorities()} is first
+ * called, so requests that just need the principal name never pay for it.
+ */
+public final class LocalJwtAuthentication implements Authentication {
+
+    private static final AuthorityInterner AUTHORITIES = new AuthorityInterner("");
+
+    private final String subject;
+    private final String token;
+    private final Instant expiresAt;
+    private final List<String> roles;
+    private volatile List<GrantedAuthority> authorities;
+
+    LocalJwtAuthentication(String subject, String token, Instant expiresAt, List<String> roles) {
+        this(subject, token, expiresAt, roles, null);
+    }
+
+    LocalJwtAuthentication(String subject, String token, Instant expiresAt,
+                           List<String> roles, List<GrantedAuthority> authorities) {
+        this.subject = subject;
+        this.token = token;
+        this.expiresAt = expiresAt;
+        this.roles = Collections.unmodifiableList(roles);
+        this.authorities = authorities;
+    }
+
+    /**
+     * The role names carried by the token, without building authorities.
+     */
+    public List<String> getRoles() {
+        return roles;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        List<GrantedAuthority> current = authorities;
+        if (current == null) {
+            List<GrantedAuthority> decoded = new ArrayList<>(roles.size());
+            for (String role : roles) {
+                decoded.add(AUTHORITIES.get(role));
+            }
+            current = List.copyOf(decoded);
+            authorities = current;
+        }
+        return current;
+    }
+
+    @Override
+    public Object getCredentials() {
+        return token;
+    }
+
+    @Override
+    public Object getDetails() {
+        return null;
+    }
+
+    @Override
+    public Object getPrincipal() {
+        return subject;
+    }
+
+    @Override
+    public String getName() {
+        return subject;
+    }
+
+    @Override
+    public boolean isAuthenticated() {
+        return true;
+    }
+
+    @Override
+    public void setAuthenticated(boolean authenticated) {
+        if (!authenticated) {
+            throw new IllegalArgumentException("A verified token cannot be marked as unauthenticated");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " [Principal=" + subject + ", Roles=" + roles + "]";
+    }
+}
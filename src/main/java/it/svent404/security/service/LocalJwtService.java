@@ -1,137 +1,466 @@
 package it.svent404.security.service;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.ProtectedHeader;
+import io.jsonwebtoken.security.SecurityException;
+import it.svent404.security.cache.AuthenticationCache;
+import it.svent404.security.key.SigningKey;
+import it.svent404.security.key.SigningKeyRing;
+import it.svent404.security.metrics.SsoMetrics;
+import it.svent404.security.metrics.SsoMetrics.Outcome;
+import it.svent404.security.metrics.SsoMetrics.Stage;
 import it.svent404.security.model.response.IntrospectionResponse;
 import it.svent404.security.model.response.TokenResponse;
-import it.svent404.security.repository.InMemoryTokenRepository;
+import it.svent404.security.repository.RefreshTokenStore;
+import it.svent404.security.repository.TokenRepository;
 import it.svent404.security.properties.SsoSecurityProperties;
+import it.svent404.security.support.TokenDigest;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.BadCredentialsException;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
-import javax.crypto.SecretKey;
-import java.nio.charset.StandardCharsets;
+import java.security.Key;
 import java.time.Clock;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
 
+@Slf4j
 public class LocalJwtService {
 
+    public static final String ISSUER = "sso-security-lib";
+    private static final String ROLES = "roles";
+    private static final String ROLE_BITS = "r";
+    private static final String ROLE_DICTIONARY = "rd";
+    private static final String FACTOR_PREFIX = "FACTOR_";
+
     private final SsoSecurityProperties props;
-    private final SecretKey key;
+    private final SigningKeyRing keyRing;
+    private final JwtParser parser;
     private final Clock clock;
-    private final InMemoryTokenRepository tokenRepository;
+    private final TokenRepository tokenRepository;
+    private final RefreshTokenStore refreshTokens;
+    private final AuthenticationCache authenticationCache;
+    private final UserDetailsService users;
+    private final CompactRoleCodec roleCodec;
+    private final boolean compact;
+    private final SsoMetrics metrics;
+
+    public LocalJwtService(
+            SsoSecurityProperties props,
+            Clock clock,
+            TokenRepository tokenRepository
+    ) {
+        this(props, clock, SigningKeyRing.from(props.getJwt(), clock), tokenRepository,
+                new RefreshTokenStore(clock, props.getJwt().getRefreshExpirationSeconds(),
+                        props.getJwt().getRefreshMaxLifetimeSeconds()),
+                null, null, SsoMetrics.NOOP);
+    }
 
     public LocalJwtService(
             SsoSecurityProperties props,
             Clock clock,
-            InMemoryTokenRepository tokenRepository
+            SigningKeyRing keyRing,
+            TokenRepository tokenRepository,
+            RefreshTokenStore refreshTokens,
+            AuthenticationCache authenticationCache,
+            UserDetailsService users,
+            SsoMetrics metrics
     ) {
         this.props = props;
         this.clock = clock;
         this.tokenRepository = tokenRepository;
-        this.key = Keys.hmacShaKeyFor(props.getJwt().getSecret().getBytes(StandardCharsets.UTF_8));
+        this.refreshTokens = refreshTokens;
+        this.authenticationCache = authenticationCache;
+        this.users = users;
+        this.keyRing = keyRing;
+        this.metrics = metrics;
+
+        SsoSecurityProperties.Compact compactConfig = props.getJwt().getCompact();
+        this.compact = compactConfig.isEnabled();
+        this.roleCodec = compact || !compactConfig.getRoles().isEmpty()
+                ? CompactRoleCodec.from(compactConfig)
+                : null;
+        this.parser = Jwts.parser()
+                .keyLocator(new LocatorAdapter<Key>() {
+                    @Override
+                    protected Key locate(ProtectedHeader header) {
+                        return keyRing.verificationKey(header.getKeyId());
+                    }
+                })
+                .clock(() -> Date.from(clock.instant()))
+                .build();
     }
 
     public TokenResponse generate(Authentication auth) {
 
-        Instant now = Instant.now(clock);
-        Instant exp = now.plusSeconds(props.getJwt().getExpirationSeconds());
-
-        String token = Jwts.builder()
-                .subject(auth.getName())
-                .issuer("sso-security-lib")
-                .issuedAt(Date.from(now))
-                .expiration(Date.from(exp))
-                .claim("roles", auth.getAuthorities()
-                        .stream()
-                        .map(GrantedAuthority::getAuthority)
-                        .toList()
-                )
-                .signWith(key)
-                .compact();
+        long start = System.nanoTime();
+        List<String> roles = auth.getAuthorities()
+                .stream()
+                .map(GrantedAuthority::getAuthority)
+                .toList();
 
-        return new TokenResponse(token, null, "Bearer", props.getJwt().getExpirationSeconds());
+        TokenResponse response = new TokenResponse(
+                accessToken(auth.getName(), roles),
+                refreshTokens.issue(auth.getName(), roles),
+                "Bearer",
+                props.getJwt().getExpirationSeconds()
+        );
+        metrics.record(Stage.GENERATE, Outcome.SUCCESS, start);
+        return response;
     }
 
     public TokenResponse refresh(String refreshToken) {
-        if (!validate(refreshToken)) {
+        long start = System.nanoTime();
+        Optional<RefreshTokenStore.Rotation> rotated = refreshTokens.rotate(refreshToken);
+        if (rotated.isEmpty()) {
+            metrics.record(Stage.REFRESH, Outcome.INVALID, start);
             throw new BadCredentialsException("Invalid refresh token");
         }
 
-        Claims claims = parse(refreshToken);
-        Authentication auth = new UsernamePasswordAuthenticationToken(
-                claims.getSubject(), null,
-                extractAuthorities(claims)
-        );
+        RefreshTokenStore.Rotation rotation = rotated.get();
+        if (!stillGranted(rotation.subject(), rotation.roles())) {
+            refreshTokens.revoke(rotation.refreshToken());
+            metrics.record(Stage.REFRESH, Outcome.REJECTED, start);
+            throw new BadCredentialsException("Invalid refresh token");
+        }
 
-        return generate(auth);
+        TokenResponse response = new TokenResponse(
+                accessToken(rotation.subject(), rotation.roles()),
+                rotation.refreshToken(),
+                "Bearer",
+                props.getJwt().getExpirationSeconds()
+        );
+        metrics.record(Stage.REFRESH, Outcome.SUCCESS, start);
+        return response;
     }
 
-    public boolean validate(String token) {
+    /**
+     * Whether the user still exists, may log in and holds every role the session started with.
+     * Factor authorities ({@code FACTOR_PASSWORD}, ...) record how the user logged in rather
+     * than what the user store grants, so they are not looked up. Without a user service every
+     * session is kept.
+     */
+    private boolean stillGranted(String subject, List<String> roles) {
+        if (users == null) {
+            return true;
+        }
+
+        UserDetails user;
         try {
-            parse(token);
-            return !tokenRepository.isRevoked(token);
-        } catch (JwtException ex) {
+            user = users.loadUserByUsername(subject);
+        } catch (UsernameNotFoundException ex) {
+            return false;
+        }
+        if (!user.isEnabled() || !user.isAccountNonLocked() || !user.isAccountNonExpired()) {
             return false;
         }
+
+        Set<String> granted = new HashSet<>();
+        for (GrantedAuthority authority : user.getAuthorities()) {
+            granted.add(authority.getAuthority());
+        }
+        for (String role : roles) {
+            if (!role.startsWith(FACTOR_PREFIX) && !granted.contains(role)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String accessToken(String subject, List<String> roles) {
+
+        Instant now = Instant.now(clock);
+        Instant exp = now.plusSeconds(props.getJwt().getExpirationSeconds());
+        SigningKey signingKey = keyRing.current();
+
+        JwtBuilder builder = Jwts.builder()
+                .header().keyId(signingKey.kid()).and()
+                .subject(subject)
+                // revocation is keyed on the token itself: two logins within the same second
+                // must not produce the same token, or logging out of one revokes the other
+                .id(tokenId())
+                .issuedAt(Date.from(now))
+                .expiration(Date.from(exp));
+
+        if (compact) {
+            // no issuer, dictionary roles as bits, only the remaining roles spelled out
+            CompactRoleCodec.Encoded encoded = roleCodec.encode(roles);
+            if (encoded.bits() != 0) {
+                builder.claim(ROLE_BITS, encoded.bits())
+                        .claim(ROLE_DICTIONARY, roleCodec.fingerprint());
+            }
+            if (!encoded.others().isEmpty()) {
+                builder.claim(ROLES, encoded.others());
+            }
+        } else {
+            builder.issuer(ISSUER)
+                    .claim(ROLES, roles);
+        }
+
+        return builder
+                .signWith(signingKey.signingKey())
+                .compact();
+    }
+
+    public boolean validate(String token) {
+        return verifyActive(token).isPresent();
     }
 
     public IntrospectionResponse introspect(String token) {
+        return verifyActive(token)
+                .map(verified -> new IntrospectionResponse(
+                        true,
+                        verified.subject(),
+                        verified.expiresAt().getEpochSecond()
+                ))
+                .orElseGet(() -> new IntrospectionResponse(false, null, 0));
+    }
+
+    public Map<String, Object> jwks() {
+        return keyRing.jwks();
+    }
+
+    /**
+     * Whether verifying a token stays in memory, see {@link TokenRepository#isNonBlocking()}.
+     */
+    public boolean isNonBlocking() {
+        return tokenRepository.isNonBlocking();
+    }
+
+    public List<IntrospectionResponse> introspectAll(List<String> tokens) {
+        return inParallel(tokens, this::introspect, new IntrospectionResponse(false, null, 0));
+    }
+
+    public void invalidate(String token) {
+        Map.Entry<TokenDigest, Instant> revocation = revocationOf(token);
+        if (revocation == null) {
+            return;
+        }
+
+        tokenRepository.revoke(revocation.getKey(), revocation.getValue());
+        if (authenticationCache != null) {
+            authenticationCache.evict(revocation.getKey());
+        }
+    }
+
+    public void invalidateAll(List<String> tokens) {
+        Map<TokenDigest, Instant> revocations = new LinkedHashMap<>();
+        for (Map.Entry<TokenDigest, Instant> revocation : inParallel(tokens, this::revocationOf, null)) {
+            if (revocation != null) {
+                revocations.put(revocation.getKey(), revocation.getValue());
+            }
+        }
+
+        tokenRepository.revokeAll(revocations);
+        if (authenticationCache != null) {
+            revocations.keySet().forEach(authenticationCache::evict);
+        }
+    }
+
+    private Map.Entry<TokenDigest, Instant> revocationOf(String token) {
+        if (refreshTokens.revoke(token)) {
+            return null;
+        }
+
         try {
-            Claims claims = parse(token);
-            return new IntrospectionResponse(
-                    true,
+            return Map.entry(TokenDigest.of(token), verify(token).expiresAt());
+        } catch (JwtException | IllegalArgumentException ex) {
+            // expired or forged: it can never validate again, nothing to remember
+            return null;
+        }
+    }
+
+    /**
+     * Runs {@code task} for every token on virtual threads. A task that fails yields
+     * {@code onFailure} for its token instead of failing the whole batch.
+     */
+    private <T> List<T> inParallel(List<String> tokens, Function<String, T> task, T onFailure) {
+        if (tokens == null) {
+            throw new IllegalArgumentException("tokens is required");
+        }
+        int maxSize = props.getJwt().getBatchMaxSize();
+        if (tokens.size() > maxSize) {
+            throw new IllegalArgumentException("At most " + maxSize + " tokens per batch");
+        }
+        for (String token : tokens) {
+            if (token == null) {
+                throw new IllegalArgumentException("tokens must not contain null");
+            }
+        }
+
+        List<Future<T>> results = new ArrayList<>(tokens.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String token : tokens) {
+                results.add(executor.submit(() -> task.apply(token)));
+            }
+        }
+        List<T> values = new ArrayList<>(results.size());
+        for (Future<T> result : results) {
+            if (result.state() == Future.State.SUCCESS) {
+                values.add(result.resultNow());
+            } else {
+                log.warn("Batch token check failed", result.exceptionNow());
+                values.add(onFailure);
+            }
+        }
+        return values;
+    }
+
+    public VerifiedToken verify(String token) {
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+
+        if (claims.get(ROLE_BITS) instanceof Number bits) {
+            CompactRoleCodec.Roles roles = decodeRoles(claims, bits);
+            return new VerifiedToken(
+                    token,
                     claims.getSubject(),
-                    claims.getExpiration().toInstant().getEpochSecond()
+                    toInstant(claims.getIssuedAt()),
+                    toInstant(claims.getExpiration()),
+                    roles.names(),
+                    roles.authorities()
             );
-        } catch (JwtException ex) {
-            return new IntrospectionResponse(false, null, 0);
         }
+
+        return new VerifiedToken(
+                token,
+                claims.getSubject(),
+                toInstant(claims.getIssuedAt()),
+                toInstant(claims.getExpiration()),
+                List.copyOf(extractRoles(claims))
+        );
     }
 
-    public void invalidate(String token) {
-        tokenRepository.revoke(token);
+    /**
+     * Like {@link #verify}, but the roles are neither copied nor turned into authorities
+     * until the returned {@link LocalJwtAuthentication} is asked for them.
+     */
+    private LocalJwtAuthentication verifyAuthentication(String token) {
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+
+        if (claims.get(ROLE_BITS) instanceof Number bits) {
+            CompactRoleCodec.Roles roles = decodeRoles(claims, bits);
+            return new LocalJwtAuthentication(claims.getSubject(), token,
+                    toInstant(claims.getExpiration()), roles.names(), roles.authorities());
+        }
+
+        return new LocalJwtAuthentication(claims.getSubject(), token,
+                toInstant(claims.getExpiration()), extractRoles(claims));
     }
 
-    private Claims parse(String token) {
-        return Jwts.parser()
-                .verifyWith(key)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+    private CompactRoleCodec.Roles decodeRoles(Claims claims, Number bits) {
+        if (roleCodec == null) {
+            throw new IllegalArgumentException("Compact token without a configured role dictionary");
+        }
+        return roleCodec.decode(bits.longValue(), claims.get(ROLE_DICTIONARY, String.class), extractRoles(claims));
     }
 
-    private List<SimpleGrantedAuthority> extractAuthorities(Claims claims) {
-        List<String> roles = claims.get("roles", List.class);
-        return roles.stream()
-                .map(SimpleGrantedAuthority::new)
-                .toList();
+    private Optional<VerifiedToken> verifyActive(String token) {
+        return verifyActive(token, TokenDigest.of(token), this::verify);
     }
 
-    public Authentication toAuthentication(String token) {
+    private <T> Optional<T> verifyActive(String token, TokenDigest digest, Function<String, T> verifier) {
+        long start = System.nanoTime();
+        T verified;
+        try {
+            verified = verifier.apply(token);
+            metrics.record(Stage.PARSE, Outcome.SUCCESS, start);
+        } catch (JwtException | IllegalArgumentException ex) {
+            metrics.record(Stage.PARSE, failureOf(ex), start);
+            return Optional.empty();
+        }
+
+        return isRevoked(digest)
+                ? Optional.empty()
+                : Optional.of(verified);
+    }
 
-        if (!validate(token)) {
-            throw new BadCredentialsException("Invalid JWT token");
+    private boolean isRevoked(TokenDigest digest) {
+        long start = System.nanoTime();
+        boolean revoked = tokenRepository.isRevoked(digest);
+        metrics.record(Stage.REVOCATION_CHECK, revoked ? Outcome.REVOKED : Outcome.SUCCESS, start);
+        return revoked;
+    }
+
+    private static Outcome failureOf(RuntimeException ex) {
+        if (ex instanceof ExpiredJwtException) {
+            return Outcome.EXPIRED;
+        }
+        if (ex instanceof SecurityException) {
+            return Outcome.BAD_SIGNATURE;
+        }
+        if (ex instanceof MalformedJwtException) {
+            return Outcome.MALFORMED;
         }
+        return Outcome.INVALID;
+    }
 
-        Claims claims = parse(token);
+    @SuppressWarnings("unchecked")
+    private List<String> extractRoles(Claims claims) {
+        List<String> roles = claims.get(ROLES, List.class);
+        return roles != null ? roles : List.of();
+    }
 
-        String username = claims.getSubject();
+    /**
+     * 64 random bits: tokens only need to differ from each other, not to be unguessable.
+     */
+    private static String tokenId() {
+        byte[] id = new byte[8];
+        ThreadLocalRandom.current().nextBytes(id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id);
+    }
 
-        List<SimpleGrantedAuthority> authorities = extractAuthorities(claims);
+    private static Instant toInstant(Date date) {
+        return date != null ? date.toInstant() : Instant.EPOCH;
+    }
 
-        return new UsernamePasswordAuthenticationToken(
-                username,
-                token,
-                authorities
-        );
+    public Authentication toAuthentication(String token) {
+
+        TokenDigest digest = TokenDigest.of(token);
+
+        if (authenticationCache == null) {
+            return requireActive(token, digest);
+        }
+
+        Authentication cached = authenticationCache.get(digest);
+        if (cached != null) {
+            if (isRevoked(digest)) {
+                authenticationCache.evict(digest);
+                throw new BadCredentialsException("Invalid JWT token");
+            }
+            return cached;
+        }
+
+        LocalJwtAuthentication authentication = requireActive(token, digest);
+        authenticationCache.put(digest, authentication, authentication.getExpiresAt());
+        return authentication;
     }
-}
 
+    private LocalJwtAuthentication requireActive(String token, TokenDigest digest) {
+        return verifyActive(token, digest, this::verifyAuthentication)
+                .orElseThrow(() -> new BadCredentialsException("Invalid JWT token"));
+    }
+}
@@ -0,0 +1,37 @@
+package it.svent404.security.service;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.lang.NonNull;
+import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
+import org.springframework.security.oauth2.core.OAuth2TokenIntrospectionClaimAccessor;
+import org.springframework.security.oauth2.core.OAuth2TokenIntrospectionClaimNames;
+import org.springframework.security.oauth2.server.resource.introspection.OAuth2IntrospectionAuthenticatedPrincipal;
+
+/**
+ * Builds the principal of an introspected opaque token with the same principal attribute and
+ * role mappings {@link JwtConverter} applies to JWTs.
+ */
+public class OpaqueTokenPrincipalConverter
+        implements Converter<OAuth2TokenIntrospectionClaimAccessor, OAuth2AuthenticatedPrincipal> {
+
+    private final String principalAttribute;
+    private final ClaimAuthorityPlan plan;
+
+    public OpaqueTokenPrincipalConverter(String principalAttribute, ClaimAuthorityPlan plan) {
+        this.principalAttribute = principalAttribute;
+        this.plan = plan;
+    }
+
+    @Override
+    public OAuth2AuthenticatedPrincipal convert(@NonNull OAuth2TokenIntrospectionClaimAccessor introspection) {
+        String claim = principalAttribute != null
+                ? principalAttribute
+                : OAuth2TokenIntrospectionClaimNames.SUB;
+
+        return new OAuth2IntrospectionAuthenticatedPrincipal(
+                introspection.getClaimAsString(claim),
+                introspection.getClaims(),
+                plan.authorities(plan.extract(introspection.getClaims()))
+        );
+    }
+}
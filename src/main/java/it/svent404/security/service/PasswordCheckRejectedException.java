@@ -0,0 +1,31 @@
+package it.svent404.security.service;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Raised when {@link PasswordHashingExecutor} turns a login away without checking the password.
+ */
+@Getter
+public class PasswordCheckRejectedException extends RuntimeException {
+
+    private final Reason reason;
+    private final long retryAfterSeconds;
+
+    public PasswordCheckRejectedException(Reason reason, long retryAfterSeconds) {
+        super("Password check rejected: " + reason);
+        this.reason = reason;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public HttpStatus getStatus() {
+        return HttpStatus.SERVICE_UNAVAILABLE;
+    }
+
+    public enum Reason {
+        /** The hashing queue is full. */
+        QUEUE_FULL,
+        /** The check waited in the queue past its deadline. */
+        QUEUE_TIMEOUT
+    }
+}
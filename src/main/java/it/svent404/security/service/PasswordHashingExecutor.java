@@ -0,0 +1,179 @@
+package it.svent404.security.service;
+
+import it.svent404.security.metrics.SsoMetrics;
+import it.svent404.security.metrics.SsoMetrics.Outcome;
+import it.svent404.security.metrics.SsoMetrics.Stage;
+import it.svent404.security.properties.SsoSecurityProperties;
+import it.svent404.security.service.PasswordCheckRejectedException.Reason;
+import it.svent404.security.support.TokenDigest;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs password checks on a small fixed pool, so a login storm is bounded to a few cores
+ * instead of every request thread. Checks beyond the queue capacity, or still queued after
+ * {@code maxQueueWait}, are rejected without hashing. While a check is running, a retry with
+ * the same username and password shares its result; checks with other credentials for the
+ * same user are queued on their own, so wrong passwords cannot lock the user out.
+ */
+public class PasswordHashingExecutor implements AutoCloseable {
+
+    private final AuthenticationManager authenticationManager;
+    private final ThreadPoolExecutor pool;
+    private final long maxQueueWaitNanos;
+    private final long retryAfterSeconds;
+    private final SsoMetrics metrics;
+
+    private final Map<Credentials, CompletableFuture<Authentication>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder queueFull = new LongAdder();
+    private final LongAdder queueTimeouts = new LongAdder();
+
+    public PasswordHashingExecutor(AuthenticationManager authenticationManager, int threads, int queueCapacity,
+                                   Duration maxQueueWait, long retryAfterSeconds, SsoMetrics metrics) {
+        BlockingQueue<Runnable> queue = queueCapacity > 0
+                ? new ArrayBlockingQueue<>(queueCapacity)
+                : new SynchronousQueue<>();
+
+        this.authenticationManager = authenticationManager;
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue,
+                Thread.ofPlatform().name("sso-password-hash-", 0).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.maxQueueWaitNanos = maxQueueWait.toNanos();
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Without a configured thread count the pool takes half the processors, leaving the rest
+     * for token verification and the application's own traffic.
+     */
+    public static PasswordHashingExecutor from(AuthenticationManager authenticationManager,
+                                               SsoSecurityProperties.Password.Hashing config,
+                                               SsoMetrics metrics) {
+        int threads = config.getThreads() > 0
+                ? config.getThreads()
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+        return new PasswordHashingExecutor(authenticationManager, threads, config.getQueueCapacity(),
+                Duration.ofMillis(config.getMaxQueueWaitMillis()), config.getRetryAfterSeconds(), metrics);
+    }
+
+    public CompletableFuture<Authentication> authenticate(Authentication request) {
+        return authenticate(request.getName(),
+                request.getCredentials() instanceof String password ? password : null);
+    }
+
+    /**
+     * Completes with the authenticated user, an {@link AuthenticationException} or a
+     * {@link PasswordCheckRejectedException}. Completion happens on a pool thread unless
+     * the result was already available.
+     */
+    public CompletableFuture<Authentication> authenticate(String username, String password) {
+        if (username == null || password == null) {
+            return CompletableFuture.failedFuture(new BadCredentialsException("Bad credentials"));
+        }
+
+        Credentials credentials = new Credentials(username, TokenDigest.of(password));
+        CompletableFuture<Authentication> result = new CompletableFuture<>();
+        CompletableFuture<Authentication> running = inFlight.putIfAbsent(credentials, result);
+        if (running != null) {
+            coalesced.increment();
+            return running.copy();
+        }
+
+        long submitted = System.nanoTime();
+        try {
+            pool.execute(() -> run(username, password, credentials, result, submitted));
+        } catch (RejectedExecutionException ex) {
+            queueFull.increment();
+            metrics.record(Stage.PASSWORD_QUEUE, Outcome.REJECTED, submitted);
+            inFlight.remove(credentials, result);
+            result.completeExceptionally(rejection(Reason.QUEUE_FULL));
+        }
+        return result.copy();
+    }
+
+    public int getQueueDepth() {
+        return pool.getQueue().size();
+    }
+
+    public int getActive() {
+        return pool.getActiveCount();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getQueueFullRejections() {
+        return queueFull.sum();
+    }
+
+    public long getQueueTimeoutRejections() {
+        return queueTimeouts.sum();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private void run(String username, String password, Credentials credentials,
+                     CompletableFuture<Authentication> check, long submitted) {
+        Authentication result = null;
+        RuntimeException failure = null;
+
+        if (System.nanoTime() - submitted > maxQueueWaitNanos) {
+            queueTimeouts.increment();
+            metrics.record(Stage.PASSWORD_QUEUE, Outcome.REJECTED, submitted);
+            failure = rejection(Reason.QUEUE_TIMEOUT);
+        } else {
+            metrics.record(Stage.PASSWORD_QUEUE, Outcome.SUCCESS, submitted);
+            long start = System.nanoTime();
+            try {
+                result = authenticationManager.authenticate(
+                        UsernamePasswordAuthenticationToken.unauthenticated(username, password));
+                if (result == null) {
+                    throw new BadCredentialsException("Bad credentials");
+                }
+                metrics.record(Stage.PASSWORD_CHECK, Outcome.SUCCESS, start);
+            } catch (AuthenticationException ex) {
+                metrics.record(Stage.PASSWORD_CHECK, Outcome.BAD_CREDENTIALS, start);
+                failure = ex;
+            } catch (RuntimeException ex) {
+                metrics.record(Stage.PASSWORD_CHECK, Outcome.ERROR, start);
+                failure = ex;
+            }
+        }
+
+        inFlight.remove(credentials, check);
+        if (failure != null) {
+            check.completeExceptionally(failure);
+        } else {
+            check.complete(result);
+        }
+    }
+
+    private PasswordCheckRejectedException rejection(Reason reason) {
+        return new PasswordCheckRejectedException(reason, retryAfterSeconds);
+    }
+
+    private record Credentials(String username, TokenDigest password) {
+    }
+}
@@ -0,0 +1,32 @@
+package it.svent404.security.service;
+
+import lombok.AllArgsConstructor;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.server.resource.InvalidBearerTokenException;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import reactor.core.publisher.Mono;
+
+/**
+ * The WebFlux counterpart of {@link HybridAuthenticationManager}.
+ */
+@AllArgsConstructor
+public class ReactiveHybridAuthenticationManager implements ReactiveAuthenticationManager {
+
+    private final HybridTokenRouter router;
+    private final ReactiveAuthenticationManager localAuthenticationManager;
+    private final ReactiveAuthenticationManager oauth2AuthenticationManager;
+
+    @Override
+    public Mono<Authentication> authenticate(Authentication authentication) {
+        if (!(authentication instanceof BearerTokenAuthenticationToken bearer)) {
+            return Mono.empty();
+        }
+
+        return switch (router.route(bearer.getToken())) {
+            case LOCAL -> localAuthenticationManager.authenticate(bearer);
+            case OAUTH2 -> oauth2AuthenticationManager.authenticate(bearer);
+            case UNKNOWN -> Mono.error(new InvalidBearerTokenException("Token issuer is not accepted"));
+        };
+    }
+}
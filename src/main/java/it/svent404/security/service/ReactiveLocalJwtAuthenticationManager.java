@@ -0,0 +1,30 @@
+package it.svent404.security.service;
+
+import lombok.AllArgsConstructor;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Verifies local bearer tokens for WebFlux. Verification stays on the calling thread when the
+ * revocation store answers from memory and moves to the bounded elastic scheduler otherwise.
+ */
+@AllArgsConstructor
+public class ReactiveLocalJwtAuthenticationManager implements ReactiveAuthenticationManager {
+
+    private final LocalJwtService jwtService;
+
+    @Override
+    public Mono<Authentication> authenticate(Authentication authentication) {
+        if (!(authentication instanceof BearerTokenAuthenticationToken bearer)) {
+            return Mono.empty();
+        }
+
+        Mono<Authentication> verified = Mono.fromCallable(() -> jwtService.toAuthentication(bearer.getToken()));
+        return jwtService.isNonBlocking()
+                ? verified
+                : verified.subscribeOn(Schedulers.boundedElastic());
+    }
+}
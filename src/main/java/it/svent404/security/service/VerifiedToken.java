@@ -0,0 +1,21 @@
+package it.svent404.security.service;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.time.Instant;
+import java.util.List;
+
+public record VerifiedToken(
+        String token,
+        String subject,
+        Instant issuedAt,
+        Instant expiresAt,
+        List<String> roles,
+        List<GrantedAuthority> authorities
+) {
+    public VerifiedToken(String token, String subject, Instant issuedAt, Instant expiresAt, List<String> roles) {
+        this(token, subject, issuedAt, expiresAt, roles,
+                roles.stream().<GrantedAuthority>map(SimpleGrantedAuthority::new).toList());
+    }
+}
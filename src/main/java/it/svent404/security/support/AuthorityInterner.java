@@ -0,0 +1,46 @@
+package it.svent404.security.support;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands out one shared {@link GrantedAuthority} per role name, so the prefix concatenation
+ * and the authority allocation only happen the first time a role is seen. Once
+ * {@code maxEntries} names are interned, unknown names fall back to a fresh instance.
+ */
+public class AuthorityInterner {
+
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    private final String prefix;
+    private final int maxEntries;
+    private final Map<String, GrantedAuthority> authorities = new ConcurrentHashMap<>();
+
+    public AuthorityInterner(String prefix) {
+        this(prefix, DEFAULT_MAX_ENTRIES);
+    }
+
+    public AuthorityInterner(String prefix, int maxEntries) {
+        this.prefix = prefix;
+        this.maxEntries = maxEntries;
+    }
+
+    public GrantedAuthority get(String name) {
+        GrantedAuthority authority = authorities.get(name);
+        if (authority != null) {
+            return authority;
+        }
+        authority = new SimpleGrantedAuthority(prefix + name);
+        if (authorities.size() >= maxEntries) {
+            return authority;
+        }
+        GrantedAuthority existing = authorities.putIfAbsent(name, authority);
+        return existing != null ? existing : authority;
+    }
+
+    public int size() {
+        return authorities.size();
+    }
+}
@@ -0,0 +1,34 @@
+package it.svent404.security.support;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.util.function.SingletonSupplier;
+
+import java.util.function.Supplier;
+
+/**
+ * A {@link PasswordEncoder} created on first use, for encoders that are expensive to set up
+ * and only needed for some stored hashes.
+ */
+public class LazyPasswordEncoder implements PasswordEncoder {
+
+    private final SingletonSupplier<PasswordEncoder> delegate;
+
+    public LazyPasswordEncoder(Supplier<PasswordEncoder> factory) {
+        this.delegate = SingletonSupplier.of(factory);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return delegate.obtain().encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return delegate.obtain().matches(rawPassword, encodedPassword);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.obtain().upgradeEncoding(encodedPassword);
+    }
+}
@@ -0,0 +1,58 @@
+package it.svent404.security.support;
+
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.security.provisioning.UserDetailsManager;
+import org.springframework.util.function.SingletonSupplier;
+
+import java.util.function.Supplier;
+
+/**
+ * An {@link InMemoryUserDetailsManager} created on first use, for users whose passwords are
+ * hashed when built. It keeps the manager's {@link UserDetailsManager} and
+ * {@link UserDetailsPasswordService} roles, so hashes are upgraded on login as usual.
+ */
+public class LazyUserDetailsManager implements UserDetailsManager, UserDetailsPasswordService {
+
+    private final SingletonSupplier<InMemoryUserDetailsManager> delegate;
+
+    public LazyUserDetailsManager(Supplier<InMemoryUserDetailsManager> factory) {
+        this.delegate = SingletonSupplier.of(factory);
+    }
+
+    @Override
+    public UserDetails loadUserByUsername(String username) {
+        return delegate.obtain().loadUserByUsername(username);
+    }
+
+    @Override
+    public void createUser(UserDetails user) {
+        delegate.obtain().createUser(user);
+    }
+
+    @Override
+    public void updateUser(UserDetails user) {
+        delegate.obtain().updateUser(user);
+    }
+
+    @Override
+    public void deleteUser(String username) {
+        delegate.obtain().deleteUser(username);
+    }
+
+    @Override
+    public void changePassword(String oldPassword, String newPassword) {
+        delegate.obtain().changePassword(oldPassword, newPassword);
+    }
+
+    @Override
+    public boolean userExists(String username) {
+        return delegate.obtain().userExists(username);
+    }
+
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        return delegate.obtain().updatePassword(user, newPassword);
+    }
+}
@@ -0,0 +1,42 @@
+package it.svent404.security.support;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+public class MaintenanceScheduler implements AutoCloseable {
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform()
+                    .name("sso-maintenance")
+                    .daemon()
+                    .factory()
+    );
+
+    /**
+     * Runs {@code task} every {@code interval}; an interval of zero or less turns it off.
+     */
+    public void schedule(String name, Runnable task, Duration interval) {
+        long millis = interval.toMillis();
+        if (millis <= 0) {
+            log.debug("SSO maintenance task '{}' is off", name);
+            return;
+        }
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException ex) {
+                log.warn("SSO maintenance task '{}' failed", name, ex);
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
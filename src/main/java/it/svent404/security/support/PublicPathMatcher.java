@@ -0,0 +1,110 @@
+package it.svent404.security.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The paths that need no authentication, compiled into a character trie. A pattern is either
+ * an exact path ({@code /auth/token}) or a subtree ({@code /swagger-ui/**}, which also matches
+ * {@code /swagger-ui} itself). Matching walks the path once and does not allocate.
+ */
+public final class PublicPathMatcher {
+
+    private static final String SUBTREE = "/**";
+
+    private final Node root = new Node();
+    private final List<String> patterns;
+
+    private PublicPathMatcher(Collection<String> patterns) {
+        this.patterns = List.copyOf(patterns);
+        for (String pattern : this.patterns) {
+            add(pattern);
+        }
+    }
+
+    public static PublicPathMatcher of(Collection<String> patterns) {
+        return new PublicPathMatcher(patterns);
+    }
+
+    public static PublicPathMatcher of(Collection<String> builtIn, Collection<String> configured) {
+        List<String> patterns = new ArrayList<>(builtIn);
+        patterns.addAll(configured);
+        return new PublicPathMatcher(patterns);
+    }
+
+    public List<String> patterns() {
+        return patterns;
+    }
+
+    public boolean matches(String path) {
+        return matches(path, 0);
+    }
+
+    /**
+     * Matches {@code path} starting at {@code offset}, e.g. a request URI after its context path.
+     */
+    public boolean matches(String path, int offset) {
+        Node node = root;
+        for (int i = offset; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (node.subtree && c == '/') {
+                return true;
+            }
+            node = node.child(c);
+            if (node == null) {
+                return false;
+            }
+        }
+        return node.exact || node.subtree;
+    }
+
+    private void add(String pattern) {
+        boolean subtree = pattern.endsWith(SUBTREE);
+        String path = subtree ? pattern.substring(0, pattern.length() - SUBTREE.length()) : pattern;
+        if (!pattern.startsWith("/") || path.indexOf('*') >= 0) {
+            throw new IllegalArgumentException("Unsupported public path '" + pattern
+                    + "': use an exact path or a prefix ending in /**");
+        }
+
+        Node node = root;
+        for (int i = 0; i < path.length(); i++) {
+            node = node.childOrCreate(path.charAt(i));
+        }
+        if (subtree) {
+            node.subtree = true;
+        } else {
+            node.exact = true;
+        }
+    }
+
+    private static final class Node {
+
+        private char[] labels = new char[0];
+        private Node[] children = new Node[0];
+        private boolean exact;
+        private boolean subtree;
+
+        Node child(char c) {
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node childOrCreate(char c) {
+            Node child = child(c);
+            if (child == null) {
+                child = new Node();
+                labels = Arrays.copyOf(labels, labels.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                labels[labels.length - 1] = c;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package it.svent404.security.support;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * A {@link PasswordEncoder} that only reports a hash as outdated when the upgraded one can be
+ * stored. {@code DaoAuthenticationProvider} encodes the password again for every outdated hash
+ * on a successful login, even when its password service just throws the result away.
+ */
+public class UpgradeAwarePasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final BooleanSupplier upgradesStored;
+
+    public UpgradeAwarePasswordEncoder(PasswordEncoder delegate, BooleanSupplier upgradesStored) {
+        this.delegate = delegate;
+        this.upgradesStored = upgradesStored;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return delegate.matches(rawPassword, encodedPassword);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return upgradesStored.getAsBoolean() && delegate.upgradeEncoding(encodedPassword);
+    }
+}
@@ -0,0 +1,29 @@
+package it.svent404.security.autoconfig;
+
+import it.svent404.security.repository.InMemoryTokenRepository;
+import it.svent404.security.support.TokenDigest;
+
+import java.time.Clock;
+
+/**
+ * A revocation store that claims to block, remembering the thread of the last revocation check.
+ */
+class BlockingTokenRepository extends InMemoryTokenRepository {
+
+    volatile String checkedOn;
+
+    BlockingTokenRepository() {
+        super(Clock.systemUTC());
+    }
+
+    @Override
+    public boolean isRevoked(TokenDigest tokenId) {
+        checkedOn = Thread.currentThread().getName();
+        return super.isRevoked(tokenId);
+    }
+
+    @Override
+    public boolean isNonBlocking() {
+        return false;
+    }
+}
@@ -0,0 +1,95 @@
+package it.svent404.security.autoconfig;
+
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import it.svent404.security.support.StubJwksServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+
+import java.util.Date;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeycloakJwtAutoConfigurationTest {
+
+    private static final String ISSUER = "https://idp.example/realms/test";
+
+    private static StubJwksServer idp;
+
+    @BeforeAll
+    static void startIdp() throws Exception {
+        idp = new StubJwksServer(new RSAKeyGenerator(2048).keyID("idp").generate());
+    }
+
+    @AfterAll
+    static void stopIdp() {
+        idp.close();
+    }
+
+    private final ApplicationContextRunner runner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(KeycloakJwtAutoConfiguration.class))
+            .withPropertyValues(
+                    "sso.enabled=true",
+                    "sso.jwt.auth.converter.principle-attribute=preferred_username",
+                    "spring.security.oauth2.resourceserver.jwt.jwk-set-uri=" + idp.uri());
+
+    @Test
+    void hybridDecoderOnlyAcceptsTheListedIssuers() {
+        runner.withPropertyValues("sso.mode=hybrid", "sso.hybrid.oauth2-issuers=" + ISSUER)
+                .run(context -> {
+                    JwtDecoder decoder = context.getBean(JwtDecoder.class);
+
+                    assertThat(decoder.decode(idp.sign(claims(ISSUER).build())).getSubject()).isEqualTo("alice");
+                    assertThatThrownBy(() -> decoder.decode(idp.sign(claims("https://evil.example").build())))
+                            .isInstanceOf(JwtValidationException.class);
+                    assertThatThrownBy(() -> decoder.decode(idp.sign(new JWTClaimsSet.Builder()
+                            .subject("alice").expirationTime(expiry()).build())))
+                            .isInstanceOf(JwtValidationException.class);
+                });
+    }
+
+    @Test
+    void hybridDecoderChecksTheTopLevelIssuerNotANestedOne() {
+        runner.withPropertyValues("sso.mode=hybrid", "sso.hybrid.oauth2-issuers=" + ISSUER)
+                .run(context -> {
+                    String token = idp.sign(claims("https://evil.example").claim("act", Map.of("iss", ISSUER)).build());
+
+                    assertThatThrownBy(() -> context.getBean(JwtDecoder.class).decode(token))
+                            .isInstanceOf(JwtValidationException.class);
+                });
+    }
+
+    @Test
+    void hybridDecoderFallsBackToTheIssuerUri() {
+        runner.withPropertyValues("sso.mode=hybrid", "spring.security.oauth2.resourceserver.jwt.issuer-uri=" + ISSUER)
+                .run(context -> {
+                    JwtDecoder decoder = context.getBean(JwtDecoder.class);
+
+                    assertThat(decoder.decode(idp.sign(claims(ISSUER).build())).getSubject()).isEqualTo("alice");
+                    assertThatThrownBy(() -> decoder.decode(idp.sign(claims("https://evil.example").build())))
+                            .isInstanceOf(JwtValidationException.class);
+                });
+    }
+
+    @Test
+    void oauth2DecoderLeavesTheIssuerAlone() {
+        runner.withPropertyValues("sso.mode=oauth2", "sso.hybrid.oauth2-issuers=" + ISSUER)
+                .run(context -> assertThat(context.getBean(JwtDecoder.class)
+                        .decode(idp.sign(claims("https://other.example").build())).getSubject()).isEqualTo("alice"));
+    }
+
+    private static JWTClaimsSet.Builder claims(String issuer) {
+        return new JWTClaimsSet.Builder().issuer(issuer).subject("alice").expirationTime(expiry());
+    }
+
+    private static Date expiry() {
+        return new Date(System.currentTimeMillis() + 60_000);
+    }
+}
@@ -0,0 +1,107 @@
+package it.svent404.security.autoconfig;
+
+import it.svent404.security.ratelimit.AuthRateLimits;
+import it.svent404.security.repository.MappedFileTokenRepository;
+import it.svent404.security.repository.RevocationBloomFilter;
+import it.svent404.security.revocation.InJvmRevocationTransport;
+import it.svent404.security.revocation.RevocationBroadcaster;
+import it.svent404.security.revocation.RevocationTransport;
+import it.svent404.security.service.LocalJwtService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.provisioning.UserDetailsManager;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class LocalJwtAutoConfigurationTest {
+
+    private final ApplicationContextRunner runner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(LocalJwtAutoConfiguration.class))
+            .withPropertyValues(
+                    "sso.enabled=true",
+                    "sso.mode=local",
+                    "sso.jwt.secret=0123456789abcdef0123456789abcdef0123456789");
+
+    private final ApplicationContextRunner broadcasting = runner
+            .withPropertyValues("sso.jwt.revocation.broadcast.enabled=true");
+
+    @Test
+    void broadcastWithoutATransportFailsAtStartup() {
+        broadcasting.run(context -> assertThat(context).getFailure()
+                .rootCause()
+                .hasMessageContaining("RevocationTransport")
+                .hasMessageContaining("sso.jwt.revocation.broadcast.in-jvm"));
+    }
+
+    @Test
+    void inJvmTransportHasToBeAskedFor() {
+        broadcasting.withPropertyValues("sso.jwt.revocation.broadcast.in-jvm=true")
+                .run(context -> {
+                    assertThat(context).hasSingleBean(RevocationBroadcaster.class);
+                    assertThat(context).getBean(RevocationTransport.class).isInstanceOf(InJvmRevocationTransport.class);
+                });
+    }
+
+    @Test
+    void rateLimitingIsOptIn() {
+        runner.run(context -> assertThat(context).getBean(AuthRateLimits.class).isSameAs(AuthRateLimits.UNLIMITED));
+        runner.withPropertyValues("sso.rate-limit.enabled=true")
+                .run(context -> assertThat(context.getBean(AuthRateLimits.class).limiters()).hasSize(4));
+    }
+
+    @Test
+    void applicationTransportIsUsed() {
+        RevocationTransport transport = mock(RevocationTransport.class);
+
+        broadcasting.withBean(RevocationTransport.class, () -> transport)
+                .run(context -> {
+                    assertThat(context).hasSingleBean(RevocationBroadcaster.class);
+                    assertThat(context).getBean(RevocationTransport.class).isSameAs(transport);
+                });
+    }
+
+    @Test
+    void zeroSweepIntervalTurnsSweepingOff() {
+        runner.withPropertyValues("sso.jwt.revocation.sweep-interval-seconds=0", "sso.jwt.cache.enabled=true")
+                .run(context -> assertThat(context).hasNotFailed().hasSingleBean(LocalJwtService.class));
+    }
+
+    @Test
+    void zeroCompactionIntervalNeverCompacts(@TempDir Path dir) {
+        runner.withPropertyValues("sso.jwt.revocation.store=file",
+                        "sso.jwt.revocation.file-path=" + dir.resolve("revocations.log"),
+                        "sso.jwt.revocation.compaction-interval-seconds=0")
+                .run(context -> assertThat(context).hasNotFailed().hasSingleBean(MappedFileTokenRepository.class));
+    }
+
+    @Test
+    void zeroFilterRebuildIntervalNeverRebuilds() {
+        runner.withPropertyValues("sso.jwt.revocation.filter.enabled=true",
+                        "sso.jwt.revocation.filter.rebuild-interval-seconds=0")
+                .run(context -> assertThat(context).hasNotFailed().hasSingleBean(RevocationBloomFilter.class));
+    }
+
+    @Test
+    void zeroRateLimitSweepIntervalNeverSweeps() {
+        runner.withPropertyValues("sso.rate-limit.enabled=true", "sso.rate-limit.sweep-interval-seconds=0")
+                .run(context -> assertThat(context.getBean(AuthRateLimits.class).limiters()).hasSize(4));
+    }
+
+    @Test
+    void demoUsersKeepTheManagerAndPasswordUpgradeRoles() {
+        runner.run(context -> {
+            assertThat(context.getBean(UserDetailsService.class))
+                    .isInstanceOf(UserDetailsManager.class)
+                    .isInstanceOf(UserDetailsPasswordService.class);
+            assertThat(context.getBeanProvider(UserDetailsPasswordService.class).getIfAvailable()).isNotNull();
+            assertThat(context.getBean(UserDetailsManager.class).userExists("admin")).isTrue();
+        });
+    }
+}
@@ -0,0 +1,110 @@
+package it.svent404.security.autoconfig;
+
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import it.svent404.security.repository.TokenRepository;
+import it.svent404.security.support.StubJwksServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ReactiveWebApplicationContextRunner;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.Map;
+
+import static it.svent404.security.autoconfig.ReactiveKeycloakJwtAutoConfigurationTest.ISSUER;
+import static it.svent404.security.autoconfig.ReactiveKeycloakJwtAutoConfigurationTest.claims;
+import static it.svent404.security.autoconfig.ReactiveLocalJwtAutoConfigurationTest.client;
+import static it.svent404.security.autoconfig.ReactiveLocalJwtAutoConfigurationTest.me;
+import static it.svent404.security.autoconfig.ReactiveLocalJwtAutoConfigurationTest.token;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactiveHybridJwtAutoConfigurationTest {
+
+    private static StubJwksServer idp;
+
+    @BeforeAll
+    static void startIdp() throws Exception {
+        idp = new StubJwksServer(new RSAKeyGenerator(2048).keyID("idp").generate());
+    }
+
+    @AfterAll
+    static void stopIdp() {
+        idp.close();
+    }
+
+    private final ReactiveWebApplicationContextRunner runner = new ReactiveWebApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(
+                    LocalJwtAutoConfiguration.class,
+                    KeycloakJwtAutoConfiguration.class,
+                    HybridJwtAutoConfiguration.class,
+                    ReactiveLocalJwtAutoConfiguration.class,
+                    ReactiveKeycloakJwtAutoConfiguration.class,
+                    ReactiveHybridJwtAutoConfiguration.class))
+            .withUserConfiguration(ReactiveProbe.class)
+            .withPropertyValues(
+                    "sso.enabled=true",
+                    "sso.mode=hybrid",
+                    "sso.jwt.secret=0123456789abcdef0123456789abcdef0123456789",
+                    "sso.jwt.auth.converter.principle-attribute=preferred_username",
+                    "sso.hybrid.oauth2-issuers=" + ISSUER,
+                    "spring.security.oauth2.resourceserver.jwt.jwk-set-uri=" + idp.uri(),
+                    ReactiveProbe.PUBLIC_PATHS);
+
+    @Test
+    void acceptsLocalAndIdpTokens() {
+        runner.run(context -> {
+            WebTestClient client = client(context);
+
+            assertThat(me(client, token(context, "alice"))).startsWith("alice on ");
+            assertThat(me(client, idp.sign(claims("bob")))).startsWith("bob on ");
+        });
+    }
+
+    @Test
+    void rejectsTokensOfUnknownIssuersAndTamperedTokens() {
+        runner.run(context -> {
+            WebTestClient client = client(context);
+            String local = token(context, "alice");
+            String otherIssuer = idp.sign(new JWTClaimsSet.Builder(claims("mallory")).issuer("https://evil.example").build());
+
+            client.get().uri("/me").header(HttpHeaders.AUTHORIZATION, "Bearer " + otherIssuer)
+                    .exchange().expectStatus().isUnauthorized();
+            client.get().uri("/me").header(HttpHeaders.AUTHORIZATION, "Bearer " + local.substring(0, local.length() - 2) + "xx")
+                    .exchange().expectStatus().isUnauthorized();
+            client.get().uri("/me").exchange().expectStatus().isUnauthorized();
+        });
+    }
+
+    @Test
+    void issuerNestedInAnotherClaimIsNotTrusted() {
+        runner.run(context -> {
+            String nested = idp.sign(new JWTClaimsSet.Builder(claims("mallory"))
+                    .issuer("https://evil.example")
+                    .claim("act", Map.of("iss", ISSUER))
+                    .build());
+
+            client(context).get().uri("/me").header(HttpHeaders.AUTHORIZATION, "Bearer " + nested)
+                    .exchange().expectStatus().isUnauthorized();
+        });
+    }
+
+    @Test
+    void publicPathNeedsNoToken() {
+        runner.run(context -> client(context).get().uri("/public/ping").exchange()
+                .expectStatus().isOk().expectBody(String.class).isEqualTo("pong"));
+    }
+
+    @Test
+    void blockingRevocationStoreIsCheckedOffTheCallingThread() {
+        BlockingTokenRepository store = new BlockingTokenRepository();
+
+        runner.withBean(TokenRepository.class, () -> store)
+                .run(context -> {
+                    assertThat(me(client(context), token(context, "alice"))).startsWith("alice on ");
+                    assertThat(store.checkedOn).startsWith("boundedElastic");
+                });
+    }
+}
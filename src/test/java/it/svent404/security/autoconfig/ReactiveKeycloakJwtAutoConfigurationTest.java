@@ -0,0 +1,113 @@
+package it.svent404.security.autoconfig;
+
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import it.svent404.security.support.StubJwksServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ReactiveWebApplicationContextRunner;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static it.svent404.security.autoconfig.ReactiveLocalJwtAutoConfigurationTest.client;
+import static it.svent404.security.autoconfig.ReactiveLocalJwtAutoConfigurationTest.me;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactiveKeycloakJwtAutoConfigurationTest {
+
+    static final String ISSUER = "https://idp.example/realms/test";
+
+    private static StubJwksServer idp;
+    // same kid as the IdP's key, different key material
+    private static RSAKey stranger;
+
+    @BeforeAll
+    static void startIdp() throws Exception {
+        idp = new StubJwksServer(new RSAKeyGenerator(2048).keyID("idp").generate());
+        stranger = new RSAKeyGenerator(2048).keyID("idp").generate();
+    }
+
+    @AfterAll
+    static void stopIdp() {
+        idp.close();
+    }
+
+    private final ReactiveWebApplicationContextRunner runner = new ReactiveWebApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(KeycloakJwtAutoConfiguration.class,
+                    ReactiveKeycloakJwtAutoConfiguration.class))
+            .withUserConfiguration(ReactiveProbe.class)
+            .withPropertyValues(
+                    "sso.enabled=true",
+                    "sso.mode=oauth2",
+                    "sso.jwt.auth.converter.principle-attribute=preferred_username",
+                    "spring.security.oauth2.resourceserver.jwt.jwk-set-uri=" + idp.uri(),
+                    ReactiveProbe.PUBLIC_PATHS);
+
+    @Test
+    void acceptsATokenSignedByTheIdp() {
+        runner.run(context -> assertThat(me(client(context), idp.sign(claims("alice")))).startsWith("alice on "));
+    }
+
+    @Test
+    void rejectsATokenSignedByAnotherKey() {
+        runner.run(context -> {
+            WebTestClient client = client(context);
+            String forged = StubJwksServer.sign(stranger, claims("mallory"));
+
+            client.get().uri("/me").header(HttpHeaders.AUTHORIZATION, "Bearer " + forged)
+                    .exchange().expectStatus().isUnauthorized();
+            client.get().uri("/me").exchange().expectStatus().isUnauthorized();
+        });
+    }
+
+    @Test
+    void publicPathNeedsNoToken() {
+        runner.run(context -> client(context).get().uri("/public/ping").exchange()
+                .expectStatus().isOk().expectBody(String.class).isEqualTo("pong"));
+    }
+
+    @Test
+    void keyFetchRunsOnTheBoundedElasticSchedulerAndCachedKeysAreNotFetched() {
+        // threads of the scheduled tasks still running when the IdP was asked for its keys
+        List<String> fetchedOn = new CopyOnWriteArrayList<>();
+        Schedulers.onScheduleHook("jwks-fetch-test", task -> () -> {
+            int before = idp.requestCount();
+            task.run();
+            if (idp.requestCount() > before) {
+                fetchedOn.add(Thread.currentThread().getName());
+            }
+        });
+        try {
+            runner.run(context -> {
+                WebTestClient client = client(context);
+                int fetches = idp.requestCount();
+
+                assertThat(me(client, idp.sign(claims("alice")))).startsWith("alice on ");
+                assertThat(idp.requestCount()).isEqualTo(fetches + 1);
+                assertThat(fetchedOn).anyMatch(thread -> thread.startsWith("boundedElastic"));
+
+                assertThat(me(client, idp.sign(claims("bob")))).startsWith("bob on ");
+                assertThat(idp.requestCount()).isEqualTo(fetches + 1);
+            });
+        } finally {
+            Schedulers.resetOnScheduleHook("jwks-fetch-test");
+        }
+    }
+
+    static JWTClaimsSet claims(String username) {
+        return new JWTClaimsSet.Builder()
+                .issuer(ISSUER)
+                .subject("sub-" + username)
+                .claim("preferred_username", username)
+                .expirationTime(new Date(System.currentTimeMillis() + 60_000))
+                .build();
+    }
+}
@@ -0,0 +1,97 @@
+package it.svent404.security.autoconfig;
+
+import it.svent404.security.repository.TokenRepository;
+import it.svent404.security.service.LocalJwtService;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ReactiveWebApplicationContextRunner;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactiveLocalJwtAutoConfigurationTest {
+
+    private final ReactiveWebApplicationContextRunner runner = new ReactiveWebApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(LocalJwtAutoConfiguration.class, ReactiveLocalJwtAutoConfiguration.class))
+            .withUserConfiguration(ReactiveProbe.class)
+            .withPropertyValues(
+                    "sso.enabled=true",
+                    "sso.mode=local",
+                    "sso.jwt.secret=0123456789abcdef0123456789abcdef0123456789",
+                    ReactiveProbe.PUBLIC_PATHS);
+
+    @Test
+    void acceptsALocalToken() {
+        runner.run(context -> {
+            String token = token(context, "alice");
+
+            assertThat(me(client(context), token))
+                    .startsWith("alice on ")
+                    .doesNotContain("boundedElastic");
+        });
+    }
+
+    @Test
+    void rejectsATamperedOrRevokedToken() {
+        runner.run(context -> {
+            WebTestClient client = client(context);
+            String token = token(context, "alice");
+
+            client.get().uri("/me").header(HttpHeaders.AUTHORIZATION, "Bearer " + token.substring(0, token.length() - 2) + "xx")
+                    .exchange().expectStatus().isUnauthorized();
+            client.get().uri("/me").header(HttpHeaders.AUTHORIZATION, "Bearer not a token")
+                    .exchange().expectStatus().isUnauthorized();
+            client.get().uri("/me").exchange().expectStatus().isUnauthorized();
+
+            context.getBean(LocalJwtService.class).invalidate(token);
+            client.get().uri("/me").header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                    .exchange().expectStatus().isUnauthorized();
+        });
+    }
+
+    @Test
+    void publicPathSkipsTheToken() {
+        runner.run(context -> {
+            WebTestClient client = client(context);
+
+            client.get().uri("/public/ping").exchange()
+                    .expectStatus().isOk().expectBody(String.class).isEqualTo("pong");
+            client.get().uri("/public/ping").header(HttpHeaders.AUTHORIZATION, "Bearer not a token").exchange()
+                    .expectStatus().isOk();
+        });
+    }
+
+    @Test
+    void blockingRevocationStoreIsCheckedOffTheCallingThread() {
+        BlockingTokenRepository store = new BlockingTokenRepository();
+
+        runner.withBean(TokenRepository.class, () -> store)
+                .run(context -> {
+                    assertThat(me(client(context), token(context, "alice"))).startsWith("alice on ");
+                    assertThat(store.checkedOn).startsWith("boundedElastic");
+                });
+    }
+
+    static WebTestClient client(ApplicationContext context) {
+        return WebTestClient.bindToApplicationContext(context).build();
+    }
+
+    static String me(WebTestClient client, String token) {
+        return client.get().uri("/me").header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+    }
+
+    static String token(ApplicationContext context, String username) {
+        return context.getBean(LocalJwtService.class)
+                .generate(new UsernamePasswordAuthenticationToken(username, null, List.of(new SimpleGrantedAuthority("ROLE_USER"))))
+                .accessToken();
+    }
+}
@@ -0,0 +1,33 @@
+package it.svent404.security.autoconfig;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.reactive.config.EnableWebFlux;
+import reactor.core.publisher.Mono;
+
+/**
+ * WebFlux application for the reactive auto-configuration tests: {@code /me} answers with the
+ * authenticated name and the thread that served it, {@code /public/ping} is listed as public.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableWebFlux
+class ReactiveProbe {
+
+    static final String PUBLIC_PATHS = "sso.public-paths=/public/**";
+
+    @RestController
+    static class Endpoints {
+
+        @GetMapping("/me")
+        Mono<String> me(Authentication authentication) {
+            return Mono.just(authentication.getName() + " on " + Thread.currentThread().getName());
+        }
+
+        @GetMapping("/public/ping")
+        Mono<String> ping() {
+            return Mono.just("pong");
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package it.svent404.security.key;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.util.Resource;
+import com.nimbusds.jose.util.ResourceRetriever;
+import it.svent404.security.metrics.SsoMetrics;
+import it.svent404.security.support.MutableClock;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CachingJwkSourceTest {
+
+    private static final Duration TTL = Duration.ofMinutes(5);
+    private static final Duration COOLDOWN = Duration.ofSeconds(10);
+
+    private final MutableClock clock = new MutableClock();
+    private final FakeIdp idp = new FakeIdp();
+    private final CachingJwkSource source = new CachingJwkSource(url(), idp, clock,
+            TTL, Duration.ofSeconds(30), COOLDOWN, SsoMetrics.NOOP);
+
+    @Test
+    void keepsServingStaleKeysWhileTheIdpIsDown() throws Exception {
+        ECKey key = idp.publish("k1");
+        assertThat(source.get(byKid("k1"), null)).containsExactly(key.toPublicJWK());
+
+        clock.advance(TTL.plusSeconds(1));
+        idp.down = true;
+        source.refreshIfDue();
+
+        assertThat(source.get(byKid("k1"), null)).containsExactly(key.toPublicJWK());
+        assertThat(source.getFetchFailures()).isEqualTo(1);
+        assertThat(source.getStaleServes()).isPositive();
+        assertThat(source.getAgeSeconds()).isGreaterThan(TTL.toSeconds());
+    }
+
+    @Test
+    void failsWhenTheFirstFetchFails() {
+        idp.down = true;
+
+        assertThatThrownBy(() -> source.get(byKid("k1"), null)).isInstanceOf(KeySourceException.class);
+    }
+
+    @Test
+    void refreshesAheadOfExpiry() throws Exception {
+        idp.publish("k1");
+        source.refreshIfDue();
+        ECKey rotated = idp.publish("k2");
+
+        clock.advance(Duration.ofMinutes(4));
+        source.refreshIfDue();
+        assertThat(idp.requests.get()).isEqualTo(1);
+
+        clock.advance(Duration.ofSeconds(31));
+        source.refreshIfDue();
+        assertThat(idp.requests.get()).isEqualTo(2);
+        assertThat(source.selectCached(byKid("k2"))).containsExactly(rotated.toPublicJWK());
+    }
+
+    @Test
+    void unknownKidRefetchesAtMostOncePerCooldown() throws Exception {
+        idp.publish("k1");
+        source.refreshIfDue();
+
+        assertThat(source.get(byKid("forged"), null)).isEmpty();
+        assertThat(idp.requests.get()).isEqualTo(1);
+
+        clock.advance(COOLDOWN);
+        assertThat(source.get(byKid("forged"), null)).isEmpty();
+        assertThat(source.get(byKid("forged"), null)).isEmpty();
+
+        assertThat(idp.requests.get()).isEqualTo(2);
+        assertThat(source.getUnknownKeyMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentCallersForANewKidShareOneFetch() throws Exception {
+        idp.publish("k1");
+        source.refreshIfDue();
+        ECKey rotated = idp.publish("k2");
+        clock.advance(COOLDOWN);
+        idp.gate = new CountDownLatch(1);
+
+        List<List<JWK>> results = new CopyOnWriteArrayList<>();
+        List<Thread> callers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            callers.add(Thread.ofPlatform().start(() -> {
+                try {
+                    results.add(source.get(byKid("k2"), null));
+                } catch (KeySourceException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }));
+        }
+        // one caller waits in the fetch, the others wait for its result
+        while (!callers.stream().allMatch(thread -> thread.getState() == Thread.State.WAITING
+                || thread.getState() == Thread.State.TERMINATED)) {
+            Thread.sleep(1);
+        }
+        idp.gate.countDown();
+        for (Thread caller : callers) {
+            caller.join();
+        }
+
+        assertThat(idp.requests.get()).isEqualTo(2);
+        assertThat(results).hasSize(8).allSatisfy(keys -> assertThat(keys).containsExactly(rotated.toPublicJWK()));
+    }
+
+    private static JWKSelector byKid(String kid) {
+        return new JWKSelector(new JWKMatcher.Builder().keyID(kid).build());
+    }
+
+    private static URL url() {
+        try {
+            return URI.create("https://idp.example/realms/app/protocol/openid-connect/certs").toURL();
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /** Serves one key at a time, counting requests; can be taken down or made to wait. */
+    private static final class FakeIdp implements ResourceRetriever {
+
+        final AtomicInteger requests = new AtomicInteger();
+        volatile JWKSet keys = new JWKSet();
+        volatile boolean down;
+        volatile CountDownLatch gate;
+
+        ECKey publish(String kid) throws JOSEException {
+            ECKey key = new ECKeyGenerator(Curve.P_256).keyID(kid).generate();
+            keys = new JWKSet(key);
+            return key;
+        }
+
+        @Override
+        public Resource retrieveResource(URL url) throws IOException {
+            requests.incrementAndGet();
+            CountDownLatch waitFor = gate;
+            if (waitFor != null) {
+                try {
+                    waitFor.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(ex);
+                }
+            }
+            if (down) {
+                throw new IOException("Connection refused");
+            }
+            return new Resource(keys.toString(), "application/json");
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package it.svent404.security.key;
+
+import io.jsonwebtoken.Jwts;
+import it.svent404.security.properties.SsoSecurityProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.InstanceOfAssertFactories.LIST;
+
+class SigningKeyRingTest {
+
+    private final Clock clock = Clock.fixed(Instant.parse("2026-01-01T10:00:00Z"), ZoneOffset.UTC);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void configuredKeySurvivesARestartAndIsSharedByReplicas() throws Exception {
+        SsoSecurityProperties.Jwt jwt = jwt(SsoSecurityProperties.Jwt.Algorithm.RS256, pem("current", rsa()));
+        SigningKeyRing first = SigningKeyRing.from(jwt, clock);
+        SigningKeyRing second = SigningKeyRing.from(jwt, clock);
+
+        String token = Jwts.builder()
+                .header().keyId(first.current().kid()).and()
+                .subject("alice")
+                .signWith(first.current().signingKey())
+                .compact();
+
+        assertThat(second.current().kid()).isEqualTo(first.current().kid());
+        PublicKey verificationKey = (PublicKey) second.verificationKey(first.current().kid());
+        assertThat(Jwts.parser().verifyWith(verificationKey).build().parseSignedClaims(token).getPayload().getSubject())
+                .isEqualTo("alice");
+    }
+
+    @Test
+    void laterKeysOnlyVerifyAndAreNotRotatedAway() throws Exception {
+        SsoSecurityProperties.Jwt jwt = jwt(SsoSecurityProperties.Jwt.Algorithm.ES256,
+                pem("next", ec()), pem("previous", ec()));
+        jwt.getKeys().get(0).setKid("2026-02");
+        jwt.getKeys().get(1).setKid("2026-01");
+
+        SigningKeyRing ring = SigningKeyRing.from(jwt, clock);
+        ring.rotate();
+
+        assertThat(ring.rotates()).isFalse();
+        assertThat(ring.current().kid()).isEqualTo("2026-02");
+        assertThat(ring.verificationKey("2026-01")).isNotNull();
+        assertThat(ring.jwks().get("keys")).asInstanceOf(LIST).hasSize(2);
+    }
+
+    @Test
+    void ed25519KeysLoadFromPem() throws Exception {
+        SigningKeyRing ring = SigningKeyRing.from(
+                jwt(SsoSecurityProperties.Jwt.Algorithm.EDDSA,
+                        pem("ed", KeyPairGenerator.getInstance("Ed25519").generateKeyPair())),
+                clock);
+
+        assertThat(ring.current().verificationKey()).isInstanceOf(PublicKey.class);
+    }
+
+    @Test
+    void keystoreAliasesLoadInOrder() throws Exception {
+        Path keystore = dir.resolve("signing.p12");
+        keytool(keystore, "current");
+        keytool(keystore, "previous");
+
+        SsoSecurityProperties.Jwt jwt = jwt(SsoSecurityProperties.Jwt.Algorithm.RS256);
+        jwt.getKeyStore().setLocation(keystore.toUri().toString());
+        jwt.getKeyStore().setPassword("changeit");
+        jwt.getKeyStore().setAliases(List.of("current", "previous"));
+
+        SigningKeyRing first = SigningKeyRing.from(jwt, clock);
+        SigningKeyRing second = SigningKeyRing.from(jwt, clock);
+
+        assertThat(second.current().kid()).isEqualTo(first.current().kid());
+        assertThat(first.jwks().get("keys")).asInstanceOf(LIST).hasSize(2);
+    }
+
+    @Test
+    void mismatchedPublicKeyFailsAtStartup() throws Exception {
+        SsoSecurityProperties.PemKey key = pem("a", rsa());
+        key.setPublicKey(pem("b", rsa()).getPublicKey());
+
+        assertThatThrownBy(() -> SigningKeyRing.from(jwt(SsoSecurityProperties.Jwt.Algorithm.RS256, key), clock))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("does not match");
+    }
+
+    @Test
+    void keyOfTheWrongTypeFailsAtStartup() throws Exception {
+        assertThatThrownBy(() -> SigningKeyRing.from(jwt(SsoSecurityProperties.Jwt.Algorithm.ES256, pem("rsa", rsa())), clock))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void asymmetricAlgorithmWithoutKeysFailsUnlessGenerationIsAllowed() {
+        SsoSecurityProperties.Jwt jwt = jwt(SsoSecurityProperties.Jwt.Algorithm.RS256);
+
+        assertThatThrownBy(() -> SigningKeyRing.from(jwt, clock))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("sso.jwt.generate-keys");
+
+        jwt.setGenerateKeys(true);
+        SigningKeyRing ring = SigningKeyRing.from(jwt, clock);
+        String kid = ring.current().kid();
+        ring.rotate();
+
+        assertThat(ring.rotates()).isTrue();
+        assertThat(ring.current().kid()).isNotEqualTo(kid);
+        assertThat(ring.verificationKey(kid)).isNotNull();
+    }
+
+    private SsoSecurityProperties.Jwt jwt(SsoSecurityProperties.Jwt.Algorithm algorithm, SsoSecurityProperties.PemKey... keys) {
+        SsoSecurityProperties.Jwt jwt = new SsoSecurityProperties.Jwt();
+        jwt.setAlgorithm(algorithm);
+        jwt.setKeys(new ArrayList<>(List.of(keys)));
+        return jwt;
+    }
+
+    private SsoSecurityProperties.PemKey pem(String name, KeyPair pair) throws IOException {
+        SsoSecurityProperties.PemKey key = new SsoSecurityProperties.PemKey();
+        key.setPrivateKey(write(name + ".key", "PRIVATE KEY", pair.getPrivate().getEncoded()));
+        key.setPublicKey(write(name + ".pub", "PUBLIC KEY", pair.getPublic().getEncoded()));
+        return key;
+    }
+
+    private String write(String file, String type, byte[] der) throws IOException {
+        String body = Base64.getMimeEncoder(64, "\n".getBytes()).encodeToString(der);
+        Path path = Files.writeString(dir.resolve(file),
+                "-----BEGIN " + type + "-----\n" + body + "\n-----END " + type + "-----\n");
+        return path.toUri().toString();
+    }
+
+    private static void keytool(Path keystore, String alias) throws Exception {
+        Process process = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "keytool").toString(),
+                "-genkeypair", "-keyalg", "RSA", "-keysize", "2048", "-alias", alias, "-dname", "CN=" + alias,
+                "-keystore", keystore.toString(), "-storetype", "PKCS12", "-storepass", "changeit")
+                .redirectErrorStream(true)
+                .start();
+        assertThat(process.waitFor()).as(new String(process.getInputStream().readAllBytes())).isZero();
+    }
+
+    private static KeyPair rsa() throws NoSuchAlgorithmException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        return generator.generateKeyPair();
+    }
+
+    private static KeyPair ec() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        return generator.generateKeyPair();
+    }
+}
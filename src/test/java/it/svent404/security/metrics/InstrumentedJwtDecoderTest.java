@@ -0,0 +1,77 @@
+package it.svent404.security.metrics;
+
+import it.svent404.security.metrics.SsoMetrics.Outcome;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InstrumentedJwtDecoderTest {
+
+    /** The default timestamp validator reads the system clock, so this test does too. */
+    private final Clock clock = Clock.systemUTC();
+    private final OAuth2TokenValidator<Jwt> validator =
+            JwtValidators.createDefaultWithValidators(new ExpiredJwtValidator(clock));
+
+    @Test
+    void expiredTokenIsCountedAsExpired() {
+        Jwt jwt = jwt(clock.instant().minus(Duration.ofMinutes(5)), null);
+
+        assertThat(outcomeOf(jwt)).isEqualTo(Outcome.EXPIRED);
+    }
+
+    @Test
+    void tokenWithinTheClockSkewIsNotExpired() {
+        Jwt jwt = jwt(clock.instant().minus(Duration.ofSeconds(30)), null);
+
+        assertThat(validator.validate(jwt).hasErrors()).isFalse();
+    }
+
+    @Test
+    void tokenNotYetValidIsInvalidNotExpired() {
+        Jwt jwt = jwt(clock.instant().plus(Duration.ofHours(1)), clock.instant().plus(Duration.ofMinutes(10)));
+
+        assertThat(outcomeOf(jwt)).isEqualTo(Outcome.INVALID);
+    }
+
+    @Test
+    void descriptionMentioningExpiryDoesNotMakeATokenExpired() {
+        JwtValidationException ex = new JwtValidationException("bad audience", List.of(
+                new OAuth2Error("invalid_token", "audience expired", null)));
+
+        assertThat(InstrumentedJwtDecoder.outcomeOf(ex)).isEqualTo(Outcome.INVALID);
+    }
+
+    @Test
+    void undecodableTokenIsMalformed() {
+        assertThat(InstrumentedJwtDecoder.outcomeOf(new BadJwtException("not a JWT"))).isEqualTo(Outcome.MALFORMED);
+        assertThat(InstrumentedJwtDecoder.outcomeOf(new JwtException("JWK Set unavailable"))).isEqualTo(Outcome.ERROR);
+    }
+
+    private Outcome outcomeOf(Jwt jwt) {
+        return InstrumentedJwtDecoder.outcomeOf(new JwtValidationException("invalid", validator.validate(jwt).getErrors()));
+    }
+
+    private static Jwt jwt(Instant expiresAt, Instant notBefore) {
+        Jwt.Builder builder = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject("alice")
+                .issuedAt(expiresAt.minus(Duration.ofHours(1)))
+                .expiresAt(expiresAt);
+        if (notBefore != null) {
+            builder.notBefore(notBefore);
+        }
+        return builder.build();
+    }
+}
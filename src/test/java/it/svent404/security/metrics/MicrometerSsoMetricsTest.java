@@ -0,0 +1,36 @@
+package it.svent404.security.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.svent404.security.metrics.SsoMetrics.Outcome;
+import it.svent404.security.metrics.SsoMetrics.Stage;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MicrometerSsoMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MicrometerSsoMetrics metrics = new MicrometerSsoMetrics(registry, "local");
+
+    @Test
+    void registersNothingUntilAStageIsRecorded() {
+        assertThat(registry.getMeters()).isEmpty();
+    }
+
+    @Test
+    void registersOneTimerPerRecordedStageAndOutcome() {
+        metrics.record(Stage.PARSE, Outcome.SUCCESS, System.nanoTime());
+        metrics.record(Stage.PARSE, Outcome.SUCCESS, System.nanoTime());
+        metrics.record(Stage.REFRESH, Outcome.REJECTED, System.nanoTime());
+
+        assertThat(registry.getMeters()).hasSize(2);
+        assertThat(registry.get(MicrometerSsoMetrics.TIMER_NAME)
+                .tags("stage", "parse", "outcome", "success", "mode", "local")
+                .timer()
+                .count()).isEqualTo(2);
+        assertThat(registry.get(MicrometerSsoMetrics.TIMER_NAME)
+                .tags("stage", "refresh", "outcome", "rejected")
+                .timer()
+                .count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,106 @@
+package it.svent404.security.ratelimit;
+
+import it.svent404.security.support.MutableClock;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TokenBucketRateLimiterTest {
+
+    private final MutableClock clock = new MutableClock();
+
+    @Test
+    void allowsABurstThenRefillsAtTheRate() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter("login.user", 3, 60, 1_000, clock);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAcquire("alice", 1)).isZero();
+        }
+        assertThat(limiter.tryAcquire("alice", 1)).isEqualTo(1_000);
+        assertThat(limiter.tryAcquire("bob", 1)).isZero();
+
+        clock.advance(Duration.ofSeconds(1));
+        assertThat(limiter.tryAcquire("alice", 1)).isZero();
+        assertThat(limiter.tryAcquire("alice", 1)).isPositive();
+        assertThat(limiter.getAllowed()).isEqualTo(5);
+        assertThat(limiter.getRejected()).isEqualTo(2);
+    }
+
+    @Test
+    void batchTakesOnePermitPerTokenUpToAFullBucket() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter("introspect.client", 10, 600, 1_000, clock);
+
+        assertThat(limiter.tryAcquire("gateway", 8)).isZero();
+        assertThat(limiter.tryAcquire("gateway", 3)).isPositive();
+        assertThat(limiter.tryAcquire("gateway", 2)).isZero();
+
+        clock.advance(Duration.ofSeconds(1));
+        assertThat(limiter.tryAcquire("other", 50)).isZero();
+        assertThat(limiter.tryAcquire("other", 1)).isPositive();
+    }
+
+    @Test
+    void idleBucketsAreEvicted() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter("login.user", 3, 60, 1_000, clock);
+        limiter.tryAcquire("alice", 1);
+        limiter.tryAcquire("bob", 3);
+
+        clock.advance(Duration.ofSeconds(1));
+        limiter.evictIdle();
+        assertThat(limiter.size()).isEqualTo(1);
+
+        clock.advance(Duration.ofSeconds(2));
+        limiter.evictIdle();
+        assertThat(limiter.size()).isZero();
+        assertThat(limiter.getEvictions()).isEqualTo(2);
+    }
+
+    @Test
+    void sprayingNewKeysNeverResetsABusyBucket() {
+        // one key per stripe
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter("login.user", 3, 6, 16, clock);
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire("alice", 1);
+        }
+        assertThat(limiter.tryAcquire("alice", 1)).isPositive();
+
+        int turnedAway = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (limiter.tryAcquire("spray-" + i, 1) > 0) {
+                turnedAway++;
+            }
+        }
+
+        assertThat(limiter.tryAcquire("alice", 1)).isPositive();
+        assertThat(turnedAway).isPositive();
+        assertThat(limiter.getOverflows()).isEqualTo(turnedAway);
+        assertThat(limiter.size()).isLessThanOrEqualTo(16);
+    }
+
+    @Test
+    void fullStripeTakesNewKeysOnceABucketHasRefilled() {
+        // one key per stripe, each bucket full again 10 s after its request
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter("login.user", 1, 6, 16, clock);
+        String turnedAway = null;
+        for (int i = 0; turnedAway == null; i++) {
+            if (limiter.tryAcquire("user-" + i, 1) > 0) {
+                turnedAway = "user-" + i;
+            }
+        }
+
+        assertThat(limiter.tryAcquire(turnedAway, 1)).isEqualTo(10_000);
+
+        clock.advance(Duration.ofSeconds(10));
+        assertThat(limiter.tryAcquire(turnedAway, 1)).isZero();
+    }
+
+    @Test
+    void rejectsNonPositiveLimits() {
+        assertThatThrownBy(() -> new TokenBucketRateLimiter("login.user", 0, 60, 1_000, clock))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("login.user");
+    }
+}
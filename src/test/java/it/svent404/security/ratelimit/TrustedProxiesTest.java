@@ -0,0 +1,69 @@
+package it.svent404.security.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrustedProxiesTest {
+
+    private final TrustedProxies proxies = new TrustedProxies(List.of("10.0.0.0/8", "192.168.1.5"));
+
+    @Test
+    void withoutTrustedProxiesTheHeaderIsIgnored() {
+        assertThat(TrustedProxies.NONE.clientAddress("10.0.0.1", List.of("203.0.113.7"))).isEqualTo("10.0.0.1");
+    }
+
+    @Test
+    void directClientCannotForgeItsAddress() {
+        assertThat(proxies.clientAddress("198.51.100.9", List.of("203.0.113.7"))).isEqualTo("198.51.100.9");
+    }
+
+    @Test
+    void requestFromATrustedProxyIsKeyedOnTheAddressItForwarded() {
+        assertThat(proxies.clientAddress("10.0.0.1", List.of("203.0.113.7"))).isEqualTo("203.0.113.7");
+    }
+
+    @Test
+    void entriesWrittenByTheClientAreSkipped() {
+        assertThat(proxies.clientAddress("10.0.0.1", List.of("1.1.1.1, unknown, 203.0.113.7, 192.168.1.5")))
+                .isEqualTo("203.0.113.7");
+        assertThat(proxies.clientAddress("10.0.0.1", List.of("1.1.1.1", "203.0.113.7, 10.2.0.1")))
+                .isEqualTo("203.0.113.7");
+    }
+
+    @Test
+    void chainOfProxiesOnlyFallsBackToTheFirstHop() {
+        assertThat(proxies.clientAddress("10.0.0.1", List.of("10.9.9.9, 192.168.1.5"))).isEqualTo("10.9.9.9");
+        assertThat(proxies.clientAddress("10.0.0.1", List.of())).isEqualTo("10.0.0.1");
+    }
+
+    @Test
+    void ipv6ClientsAreKeyedOnTheirSlash64() {
+        assertThat(TrustedProxies.keyOf("2001:db8:1:2:aaaa::1")).isEqualTo("2001:db8:1:2::/64");
+        assertThat(TrustedProxies.keyOf("2001:0db8:0001:0002:ffff:0:0:9")).isEqualTo("2001:db8:1:2::/64");
+        assertThat(TrustedProxies.keyOf("[2001:db8::1]")).isEqualTo("2001:db8:0:0::/64");
+        assertThat(TrustedProxies.keyOf("0:0:0:0:0:0:0:1")).isEqualTo("0:0:0:0::/64");
+        assertThat(TrustedProxies.keyOf("fe80::1%eth7")).isEqualTo("fe80:0:0:0::/64");
+    }
+
+    @Test
+    void otherAddressesAreKeyedAsIs() {
+        assertThat(TrustedProxies.keyOf("203.0.113.7")).isEqualTo("203.0.113.7");
+        assertThat(TrustedProxies.keyOf("::ffff:203.0.113.7")).isEqualTo("::ffff:203.0.113.7");
+        assertThat(TrustedProxies.keyOf("not:an:address")).isEqualTo("not:an:address");
+        assertThat(TrustedProxies.keyOf("unknown")).isEqualTo("unknown");
+        assertThat(TrustedProxies.keyOf(null)).isNull();
+    }
+
+    @Test
+    void forwardedIpv6ClientIsKeyedOnItsSlash64() {
+        AuthRateLimits limits = new AuthRateLimits(null, null, null, null, proxies);
+
+        assertThat(limits.clientOf("10.0.0.1", List.of("2001:db8:1:2::abcd")))
+                .isEqualTo(limits.clientOf("10.0.0.1", List.of("2001:db8:1:2::1234")))
+                .isEqualTo("2001:db8:1:2::/64");
+        assertThat(limits.clientOf("2001:db8:1:3::1", List.of())).isEqualTo("2001:db8:1:3::/64");
+    }
+}
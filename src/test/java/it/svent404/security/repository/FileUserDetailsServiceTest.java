@@ -0,0 +1,111 @@
+package it.svent404.security.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FileUserDetailsServiceTest {
+
+    private static final String ARGON2 =
+            "{argon2}$argon2id$v=19$m=16384,t=2,p=1$c29tZXNhbHQ$aGFzaGhhc2hoYXNoaGFzaGhhc2hoYXNoaGFzaA";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void argon2HashWithCommasIsReadWhole() throws IOException {
+        FileUserDetailsService users = csv(
+                "alice," + ARGON2 + ",ADMIN;USER",
+                "bob," + ARGON2 + ",USER,false");
+
+        UserDetails alice = users.loadUserByUsername("alice");
+        assertThat(alice.getPassword()).isEqualTo(ARGON2);
+        assertThat(alice.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+                .containsExactly("ROLE_ADMIN", "ROLE_USER");
+        assertThat(alice.isEnabled()).isTrue();
+
+        UserDetails bob = users.loadUserByUsername("BOB");
+        assertThat(bob.getPassword()).isEqualTo(ARGON2);
+        assertThat(bob.getAuthorities()).extracting(GrantedAuthority::getAuthority).containsExactly("ROLE_USER");
+        assertThat(bob.isEnabled()).isFalse();
+    }
+
+    @Test
+    void emptyRolesColumnGivesNoRoles() throws IOException {
+        FileUserDetailsService users = csv(
+                "# username,hash,roles[,enabled]",
+                "carol,{bcrypt}$2a$10$abc,",
+                "dave,{bcrypt}$2a$10$abc,,true");
+
+        assertThat(users.loadUserByUsername("carol").getAuthorities()).isEmpty();
+        assertThat(users.loadUserByUsername("dave").getAuthorities()).isEmpty();
+        assertThat(users.size()).isEqualTo(2);
+    }
+
+    @Test
+    void missingRolesColumnIsRejected() {
+        assertThatThrownBy(() -> csv("alice,{bcrypt}$2a$10$abc"))
+                .hasMessageContaining("Line 1");
+        assertThatThrownBy(() -> csv("alice,{bcrypt}$2a$10$abc,true"))
+                .hasMessageContaining("Line 1");
+    }
+
+    @Test
+    void argon2HashWithoutRolesColumnDoesNotBecomeARole() {
+        assertThatThrownBy(() -> csv("alice," + ARGON2))
+                .hasMessageContaining("invalid role name");
+    }
+
+    @Test
+    void rolesWithThePrefixAreRejected() {
+        assertThatThrownBy(() -> csv("alice,{bcrypt}$2a$10$abc,ROLE_USER"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("ROLE_USER");
+        assertThatThrownBy(() -> json("[{\"username\": \"alice\", \"password\": \"x\", \"roles\": [\"ROLE_ADMIN\"]}]"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("ROLE_ADMIN");
+    }
+
+    @Test
+    void jsonUsersGetPrefixedRoles() throws IOException {
+        FileUserDetailsService users = json(
+                "[{\"username\": \"alice\", \"password\": \"" + ARGON2 + "\", \"roles\": [\"ADMIN\"], \"enabled\": false}]");
+
+        UserDetails alice = users.loadUserByUsername("alice");
+        assertThat(alice.getAuthorities()).extracting(GrantedAuthority::getAuthority).containsExactly("ROLE_ADMIN");
+        assertThat(alice.isEnabled()).isFalse();
+        assertThatThrownBy(() -> users.loadUserByUsername("bob")).isInstanceOf(UsernameNotFoundException.class);
+    }
+
+    @Test
+    void brokenReloadKeepsTheCurrentUsers() throws IOException {
+        Path file = dir.resolve("users.csv");
+        Files.writeString(file, "alice,{bcrypt}$2a$10$abc,USER\n");
+        FileUserDetailsService users = new FileUserDetailsService(file);
+
+        Files.writeString(file, "alice,{bcrypt}$2a$10$abc,ROLE_USER\nbob,{bcrypt}$2a$10$abc,USER\n");
+
+        assertThat(users.reloadIfChanged()).isFalse();
+        assertThat(users.loadUserByUsername("alice").getAuthorities())
+                .extracting(GrantedAuthority::getAuthority).containsExactly("ROLE_USER");
+        assertThat(users.size()).isEqualTo(1);
+    }
+
+    private FileUserDetailsService csv(String... lines) throws IOException {
+        return new FileUserDetailsService(Files.write(dir.resolve("users.csv"), List.of(lines)));
+    }
+
+    private FileUserDetailsService json(String content) throws IOException {
+        return new FileUserDetailsService(Files.writeString(dir.resolve("users.json"), content));
+    }
+}
@@ -0,0 +1,128 @@
+package it.svent404.security.repository;
+
+import it.svent404.security.support.MutableClock;
+import it.svent404.security.support.TokenDigest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MappedFileTokenRepositoryTest {
+
+    private static final TokenDigest FIRST = TokenDigest.of("first");
+    private static final TokenDigest SECOND = TokenDigest.of("second");
+
+    @TempDir
+    Path dir;
+
+    private final MutableClock clock = new MutableClock();
+
+    @Test
+    void revocationsSurviveARestart() throws IOException {
+        Path log = dir.resolve("revocations.log");
+        try (MappedFileTokenRepository store = new MappedFileTokenRepository(log, clock)) {
+            store.revoke(FIRST, in(Duration.ofMinutes(5)));
+            store.revokeAll(Map.of(SECOND, in(Duration.ofMinutes(5))));
+        }
+
+        try (MappedFileTokenRepository store = new MappedFileTokenRepository(log, clock)) {
+            assertThat(store.isRevoked(FIRST)).isTrue();
+            assertThat(store.isRevoked(SECOND)).isTrue();
+            assertThat(store.isRevoked(TokenDigest.of("other"))).isFalse();
+        }
+    }
+
+    @Test
+    void recoveryReadsPastTheInitialMapping() throws IOException {
+        Path log = dir.resolve("revocations.log");
+        Map<TokenDigest, Instant> many = new LinkedHashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            many.put(TokenDigest.of("token-" + i), in(Duration.ofMinutes(5)));
+        }
+        try (MappedFileTokenRepository store = new MappedFileTokenRepository(log, clock)) {
+            store.revokeAll(many);
+        }
+
+        try (MappedFileTokenRepository store = new MappedFileTokenRepository(log, clock)) {
+            assertThat(store.size()).isEqualTo(10_000);
+            assertThat(store.isRevoked(TokenDigest.of("token-9999"))).isTrue();
+        }
+    }
+
+    @Test
+    void compactionKeepsOnlyLiveRevocations() throws IOException {
+        Path log = dir.resolve("revocations.log");
+        try (MappedFileTokenRepository store = new MappedFileTokenRepository(log, clock)) {
+            store.revoke(FIRST, in(Duration.ofMinutes(1)));
+            store.revoke(SECOND, in(Duration.ofMinutes(10)));
+
+            clock.advance(Duration.ofMinutes(2));
+            assertThat(store.purgeExpired()).isEqualTo(1);
+            assertThat(store.isRevoked(FIRST)).isFalse();
+            assertThat(store.isRevoked(SECOND)).isTrue();
+
+            store.revoke(FIRST, in(Duration.ofMinutes(10)));
+        }
+        assertThat(records(log)).isEqualTo(2);
+
+        try (MappedFileTokenRepository store = new MappedFileTokenRepository(log, clock)) {
+            assertThat(store.isRevoked(FIRST)).isTrue();
+            assertThat(store.isRevoked(SECOND)).isTrue();
+        }
+    }
+
+    @Test
+    void recordsThatExpiredWhileStoppedAreCompactedAway() throws IOException {
+        Path log = dir.resolve("revocations.log");
+        try (MappedFileTokenRepository store = new MappedFileTokenRepository(log, clock)) {
+            store.revoke(FIRST, in(Duration.ofMinutes(1)));
+            store.revoke(SECOND, in(Duration.ofMinutes(10)));
+        }
+        clock.advance(Duration.ofMinutes(2));
+
+        try (MappedFileTokenRepository store = new MappedFileTokenRepository(log, clock)) {
+            assertThat(store.isRevoked(FIRST)).isFalse();
+            assertThat(store.purgeExpired()).isEqualTo(1);
+        }
+        assertThat(records(log)).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsAFileThatIsNotARevocationLog() throws IOException {
+        Path log = dir.resolve("other.bin");
+        Files.write(log, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+        assertThatThrownBy(() -> new MappedFileTokenRepository(log, clock))
+                .isInstanceOf(UncheckedIOException.class);
+    }
+
+    private Instant in(Duration duration) {
+        return clock.instant().plus(duration);
+    }
+
+    /**
+     * Records up to the end marker, read straight from the file.
+     */
+    private static int records(Path log) throws IOException {
+        ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(log));
+        int records = 0;
+        for (int offset = Long.BYTES; offset + 3 * Long.BYTES <= file.limit(); offset += 3 * Long.BYTES) {
+            if (file.getLong(offset + 2 * Long.BYTES) == 0) {
+                break;
+            }
+            records++;
+        }
+        return records;
+    }
+}
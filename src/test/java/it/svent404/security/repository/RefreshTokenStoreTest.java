@@ -0,0 +1,87 @@
+package it.svent404.security.repository;
+
+import it.svent404.security.support.MutableClock;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RefreshTokenStoreTest {
+
+    private final MutableClock clock = new MutableClock();
+    private final RefreshTokenStore store = new RefreshTokenStore(clock, 3600, 4 * 3600);
+
+    @Test
+    void rotationIssuesASuccessorAndRetiresThePresentedToken() {
+        String first = store.issue("alice", List.of("ROLE_USER"));
+
+        RefreshTokenStore.Rotation rotation = store.rotate(first).orElseThrow();
+
+        assertThat(rotation.subject()).isEqualTo("alice");
+        assertThat(rotation.roles()).containsExactly("ROLE_USER");
+        assertThat(rotation.refreshToken()).isNotEqualTo(first);
+        assertThat(store.rotate(rotation.refreshToken())).isPresent();
+    }
+
+    @Test
+    void reusingARotatedTokenRevokesTheWholeFamily() {
+        String first = store.issue("alice", List.of("ROLE_USER"));
+        String second = store.rotate(first).orElseThrow().refreshToken();
+
+        assertThat(store.rotate(first)).isEmpty();
+        assertThat(store.rotate(second)).isEmpty();
+    }
+
+    @Test
+    void otherFamiliesSurviveAReuse() {
+        String stolen = store.issue("alice", List.of("ROLE_USER"));
+        String other = store.issue("alice", List.of("ROLE_USER"));
+        store.rotate(stolen);
+        store.rotate(stolen);
+
+        assertThat(store.rotate(other)).isPresent();
+    }
+
+    @Test
+    void tokensExpireWhenNotRotatedInTime() {
+        String token = store.issue("alice", List.of("ROLE_USER"));
+
+        clock.advance(Duration.ofSeconds(3600));
+
+        assertThat(store.rotate(token)).isEmpty();
+    }
+
+    @Test
+    void rotationNeverExtendsAFamilyPastItsMaximumLifetime() {
+        String token = store.issue("alice", List.of("ROLE_USER"));
+        for (int i = 0; i < 7; i++) {
+            clock.advance(Duration.ofMinutes(30));
+            token = store.rotate(token).orElseThrow().refreshToken();
+        }
+
+        // 3.5 hours after login: the last token is cut to the 4 hour limit, not a full hour
+        clock.advance(Duration.ofMinutes(30));
+        assertThat(store.rotate(token)).isEmpty();
+    }
+
+    @Test
+    void revokingAnyTokenEndsItsFamily() {
+        String first = store.issue("alice", List.of("ROLE_USER"));
+        String second = store.rotate(first).orElseThrow().refreshToken();
+
+        assertThat(store.revoke(first)).isTrue();
+        assertThat(store.rotate(second)).isEmpty();
+        assertThat(store.revoke("unknown")).isFalse();
+    }
+
+    @Test
+    void purgeDropsExpiredTokens() {
+        store.issue("alice", List.of("ROLE_USER"));
+        clock.advance(Duration.ofSeconds(3601));
+
+        assertThat(store.purgeExpired()).isEqualTo(1);
+        assertThat(store.size()).isZero();
+    }
+}
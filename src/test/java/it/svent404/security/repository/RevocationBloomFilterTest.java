@@ -0,0 +1,82 @@
+package it.svent404.security.repository;
+
+import it.svent404.security.support.MutableClock;
+import it.svent404.security.support.TokenDigest;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RevocationBloomFilterTest {
+
+    private final MutableClock clock = new MutableClock();
+
+    @Test
+    void neverForgetsARevokedToken() {
+        RevocationBloomFilter filter = new RevocationBloomFilter(1_000, 0.01, clock);
+        for (int i = 0; i < 5_000; i++) {
+            filter.put(TokenDigest.of("revoked-" + i));
+        }
+
+        for (int i = 0; i < 5_000; i++) {
+            assertThat(filter.mightContain(TokenDigest.of("revoked-" + i))).isTrue();
+        }
+    }
+
+    @Test
+    void falsePositivesStayNearTheConfiguredRate() {
+        RevocationBloomFilter filter = new RevocationBloomFilter(10_000, 0.01, clock);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(TokenDigest.of("revoked-" + i));
+        }
+
+        int positives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(TokenDigest.of("valid-" + i))) {
+                positives++;
+            }
+        }
+        assertThat(positives / 100_000.0).isLessThan(0.02);
+    }
+
+    @Test
+    void rebuildDropsExpiredRevocations() {
+        InMemoryTokenRepository store = new InMemoryTokenRepository(clock);
+        store.revoke(TokenDigest.of("short"), clock.instant().plus(Duration.ofMinutes(1)));
+        store.revoke(TokenDigest.of("long"), clock.instant().plus(Duration.ofMinutes(10)));
+        RevocationBloomFilter filter = new RevocationBloomFilter(100, 0.0001, clock);
+        filter.rebuild(store);
+        assertThat(filter.mightContain(TokenDigest.of("short"))).isTrue();
+
+        clock.advance(Duration.ofMinutes(2));
+        filter.rebuild(store);
+
+        assertThat(filter.mightContain(TokenDigest.of("short"))).isFalse();
+        assertThat(filter.mightContain(TokenDigest.of("long"))).isTrue();
+    }
+
+    @Test
+    void filteredRepositoryOnlyAsksTheStoreOnPositives() {
+        InMemoryTokenRepository store = new InMemoryTokenRepository(clock);
+        RevocationBloomFilter filter = new RevocationBloomFilter(100, 0.0001, clock);
+        TokenRepository repository = new BloomFilteredTokenRepository(store, filter);
+
+        repository.revoke(TokenDigest.of("revoked"), clock.instant().plus(Duration.ofMinutes(5)));
+
+        assertThat(repository.isRevoked(TokenDigest.of("revoked"))).isTrue();
+        assertThat(repository.isRevoked(TokenDigest.of("valid"))).isFalse();
+        assertThat(filter.getTruePositives()).isEqualTo(1);
+        assertThat(filter.getNegatives()).isEqualTo(1);
+        assertThat(filter.getFalsePositiveRate()).isZero();
+    }
+
+    @Test
+    void rejectsImpossibleSizing() {
+        assertThatThrownBy(() -> new RevocationBloomFilter(0, 0.01, clock))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new RevocationBloomFilter(100, 1.0, clock))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,134 @@
+package it.svent404.security.revocation;
+
+import it.svent404.security.metrics.SsoMetrics;
+import it.svent404.security.repository.InMemoryTokenRepository;
+import it.svent404.security.repository.RefreshTokenStore;
+import it.svent404.security.repository.RevocationBloomFilter;
+import it.svent404.security.support.MutableClock;
+import it.svent404.security.support.TokenDigest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RevocationBroadcasterTest {
+
+    private final MutableClock clock = new MutableClock();
+    private final Replica a = new Replica();
+    private final Replica b = new Replica();
+
+    @AfterEach
+    void close() {
+        a.broadcaster.close();
+        b.broadcaster.close();
+    }
+
+    @Test
+    void remoteRevocationReachesTheStoreAndFilterWithoutCountingAsALookup() {
+        TokenDigest tokenId = TokenDigest.of("access-token");
+        a.broadcaster.publish(Map.of(tokenId, expiry()));
+
+        b.receive(a.flush());
+
+        assertThat(b.filter.getTruePositives() + b.filter.getFalsePositives() + b.filter.getNegatives()).isZero();
+        assertThat(b.store.isRevoked(tokenId)).isTrue();
+        assertThat(b.filter.mightContain(tokenId)).isTrue();
+        assertThat(b.broadcaster.getAppliedRevocations()).isEqualTo(1);
+    }
+
+    @Test
+    void redeliveredBatchIsOnlyAppliedOnce() {
+        a.broadcaster.publish(Map.of(TokenDigest.of("access-token"), expiry()));
+        RevocationBatch batch = a.flush();
+
+        b.receive(batch);
+        b.receive(batch);
+
+        assertThat(b.broadcaster.getAppliedRevocations()).isEqualTo(1);
+        assertThat(b.broadcaster.getDuplicateRevocations()).isEqualTo(1);
+    }
+
+    @Test
+    void refreshTokenLoggedOutOnAnotherReplicaRevokesItsFamily() {
+        String refreshToken = a.refreshTokens.issue("alice", List.of("ROLE_USER"));
+
+        assertThat(b.refreshTokens.revoke(refreshToken)).isFalse();
+        RevocationBatch batch = b.flush();
+        a.receive(batch);
+
+        assertThat(batch.refreshTokens()).containsExactly(TokenDigest.of(refreshToken));
+        assertThat(a.refreshTokens.rotate(refreshToken)).isEmpty();
+        assertThat(a.broadcaster.getAppliedRevocations()).isEqualTo(1);
+    }
+
+    @Test
+    void refreshTokenIssuedLocallyIsNotPublished() {
+        String refreshToken = a.refreshTokens.issue("alice", List.of("ROLE_USER"));
+
+        assertThat(a.refreshTokens.revoke(refreshToken)).isTrue();
+        assertThat(a.refreshTokens.revoke("header.payload.signature")).isFalse();
+        a.broadcaster.flush();
+
+        assertThat(a.transport.published).isEmpty();
+    }
+
+    @Test
+    void ownBatchesAreIgnored() {
+        a.broadcaster.publish(Map.of(TokenDigest.of("access-token"), expiry()));
+
+        a.receive(a.flush());
+
+        assertThat(a.broadcaster.getReceivedBatches()).isZero();
+    }
+
+    private Instant expiry() {
+        return clock.instant().plus(Duration.ofMinutes(15));
+    }
+
+    private final class Replica {
+
+        final InMemoryTokenRepository store = new InMemoryTokenRepository(clock);
+        final RevocationBloomFilter filter = new RevocationBloomFilter(1_000, 0.01, clock);
+        final RefreshTokenStore refreshTokens = new RefreshTokenStore(clock, 3600, 4 * 3600);
+        final RecordingTransport transport = new RecordingTransport();
+        // batches only go out when the test flushes them
+        final RevocationBroadcaster broadcaster = new RevocationBroadcaster(transport, store, filter, refreshTokens,
+                clock, Duration.ofHours(1), 1_000, SsoMetrics.NOOP);
+
+        RevocationBatch flush() {
+            broadcaster.flush();
+            assertThat(transport.published).hasSize(1);
+            return transport.published.removeFirst();
+        }
+
+        void receive(RevocationBatch batch) {
+            broadcaster.receive(batch);
+        }
+    }
+
+    /** Keeps what is published; delivery is up to the test. */
+    private static final class RecordingTransport implements RevocationTransport {
+
+        final List<RevocationBatch> published = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void publish(RevocationBatch batch) {
+            published.add(batch);
+        }
+
+        @Override
+        public void subscribe(Consumer<RevocationBatch> listener) {
+        }
+
+        @Override
+        public void unsubscribe(Consumer<RevocationBatch> listener) {
+        }
+    }
+}
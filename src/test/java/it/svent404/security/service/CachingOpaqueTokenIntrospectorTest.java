@@ -0,0 +1,144 @@
+package it.svent404.security.service;
+
+import it.svent404.security.cache.ExpiringCache;
+import it.svent404.security.metrics.SsoMetrics;
+import it.svent404.security.support.MutableClock;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
+import org.springframework.security.oauth2.core.OAuth2TokenIntrospectionClaimNames;
+import org.springframework.security.oauth2.server.resource.introspection.BadOpaqueTokenException;
+import org.springframework.security.oauth2.server.resource.introspection.OAuth2IntrospectionAuthenticatedPrincipal;
+import org.springframework.security.oauth2.server.resource.introspection.OAuth2IntrospectionException;
+import org.springframework.security.oauth2.server.resource.introspection.OpaqueTokenIntrospector;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CachingOpaqueTokenIntrospectorTest {
+
+    private static final Duration TTL = Duration.ofSeconds(60);
+    private static final Duration NEGATIVE_TTL = Duration.ofSeconds(10);
+
+    private final MutableClock clock = new MutableClock();
+    private final FakeIdp idp = new FakeIdp();
+    private final CachingOpaqueTokenIntrospector introspector = new CachingOpaqueTokenIntrospector(idp,
+            new ExpiringCache<>(100, clock), new ExpiringCache<>(10, clock), clock, TTL, NEGATIVE_TTL, SsoMetrics.NOOP);
+
+    @Test
+    void inactiveTokenIsRememberedForTheNegativeTtl() {
+        assertThatThrownBy(() -> introspector.introspect("unknown")).isInstanceOf(BadOpaqueTokenException.class);
+        assertThatThrownBy(() -> introspector.introspect("unknown")).isInstanceOf(BadOpaqueTokenException.class);
+        assertThat(idp.calls.get()).isEqualTo(1);
+
+        clock.advance(NEGATIVE_TTL);
+        assertThatThrownBy(() -> introspector.introspect("unknown")).isInstanceOf(BadOpaqueTokenException.class);
+        assertThat(idp.calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void activeResultIsReusedForTheTtl() {
+        idp.activate("alice-token", "alice", clock.instant().plus(Duration.ofHours(1)));
+
+        introspector.introspect("alice-token");
+        clock.advance(TTL.minusSeconds(1));
+        introspector.introspect("alice-token");
+        assertThat(idp.calls.get()).isEqualTo(1);
+
+        clock.advance(Duration.ofSeconds(1));
+        introspector.introspect("alice-token");
+        assertThat(idp.calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void activeResultIsNeverReusedPastTheTokensExp() {
+        idp.activate("short-lived", "alice", clock.instant().plus(Duration.ofSeconds(20)));
+        introspector.introspect("short-lived");
+
+        clock.advance(Duration.ofSeconds(20));
+        idp.revoke("short-lived");
+
+        assertThatThrownBy(() -> introspector.introspect("short-lived")).isInstanceOf(BadOpaqueTokenException.class);
+        assertThat(idp.calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void servesTheCachedResultUntilExpWhileTheIdpIsDown() {
+        idp.activate("alice-token", "alice", clock.instant().plus(Duration.ofMinutes(5)));
+        introspector.introspect("alice-token");
+
+        clock.advance(TTL);
+        idp.down = true;
+        assertThat(introspector.introspect("alice-token").getName()).isEqualTo("alice");
+        assertThat(introspector.getStaleFallbacks()).isEqualTo(1);
+
+        clock.advance(Duration.ofMinutes(4));
+        assertThatThrownBy(() -> introspector.introspect("alice-token")).isInstanceOf(OAuth2IntrospectionException.class);
+    }
+
+    @Test
+    void tokenRevokedAtTheIdpLeavesTheActiveCache() {
+        idp.activate("alice-token", "alice", clock.instant().plus(Duration.ofHours(1)));
+        introspector.introspect("alice-token");
+
+        clock.advance(TTL);
+        idp.revoke("alice-token");
+
+        assertThatThrownBy(() -> introspector.introspect("alice-token")).isInstanceOf(BadOpaqueTokenException.class);
+        assertThat(introspector.getCache().size()).isZero();
+        assertThat(introspector.getNegativeCache().size()).isEqualTo(1);
+    }
+
+    @Test
+    void floodOfUnknownTokensDoesNotEvictActiveOnes() {
+        idp.activate("alice-token", "alice", clock.instant().plus(Duration.ofHours(1)));
+        introspector.introspect("alice-token");
+
+        for (int i = 0; i < 1_000; i++) {
+            String forged = "forged-" + i;
+            assertThatThrownBy(() -> introspector.introspect(forged)).isInstanceOf(BadOpaqueTokenException.class);
+        }
+
+        assertThat(introspector.getNegativeCache().size()).isLessThanOrEqualTo(10);
+        assertThat(introspector.introspect("alice-token").getName()).isEqualTo("alice");
+        assertThat(idp.calls.get()).isEqualTo(1 + 1_000);
+    }
+
+    /** Introspection endpoint holding a set of active tokens. */
+    private static final class FakeIdp implements OpaqueTokenIntrospector {
+
+        final AtomicInteger calls = new AtomicInteger();
+        final Map<String, OAuth2AuthenticatedPrincipal> active = new ConcurrentHashMap<>();
+        volatile boolean down;
+
+        void activate(String token, String username, Instant expiresAt) {
+            active.put(token, new OAuth2IntrospectionAuthenticatedPrincipal(username,
+                    Map.of(OAuth2TokenIntrospectionClaimNames.ACTIVE, true,
+                            OAuth2TokenIntrospectionClaimNames.EXP, expiresAt),
+                    List.of()));
+        }
+
+        void revoke(String token) {
+            active.remove(token);
+        }
+
+        @Override
+        public OAuth2AuthenticatedPrincipal introspect(String token) {
+            calls.incrementAndGet();
+            if (down) {
+                throw new OAuth2IntrospectionException("Connection refused");
+            }
+            OAuth2AuthenticatedPrincipal principal = active.get(token);
+            if (principal == null) {
+                throw new BadOpaqueTokenException("Provided token isn't active");
+            }
+            return principal;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package it.svent404.security.service;
+
+import it.svent404.security.properties.SsoSecurityProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ClaimAuthorityPlanTest {
+
+    @Test
+    void defaultsReadScopeRealmAndResourceRoles() {
+        Map<String, Object> claims = Map.of(
+                "scope", "openid  profile",
+                "realm_access", Map.of("roles", List.of("user")),
+                "resource_access", Map.of(
+                        "app", Map.of("roles", List.of("admin")),
+                        "other", Map.of("roles", List.of("ignored"))));
+
+        assertThat(names(ClaimAuthorityPlan.defaults("app"), claims))
+                .containsExactlyInAnyOrder("SCOPE_openid", "SCOPE_profile", "ROLE_user", "ROLE_admin");
+        assertThat(names(ClaimAuthorityPlan.defaults(null), claims))
+                .containsExactlyInAnyOrder("SCOPE_openid", "SCOPE_profile", "ROLE_user");
+    }
+
+    @Test
+    void eachMappingHasItsOwnPrefix() {
+        ClaimAuthorityPlan plan = ClaimAuthorityPlan.from(converter(
+                mapping("groups", null, "GROUP_"),
+                mapping(null, "app", "APP_"),
+                mapping("perms", null, null)));
+        Map<String, Object> claims = Map.of(
+                "groups", List.of("staff"),
+                "resource_access", Map.of("app", Map.of("roles", List.of("admin"))),
+                "perms", "read write");
+
+        assertThat(names(plan, claims)).containsExactlyInAnyOrder("GROUP_staff", "APP_admin", "read", "write");
+    }
+
+    @Test
+    void mappingNeedsExactlyOneOfClaimOrClient() {
+        assertThatThrownBy(() -> ClaimAuthorityPlan.from(converter(mapping("groups", "app", "ROLE_"))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("exactly one");
+        assertThatThrownBy(() -> ClaimAuthorityPlan.from(converter(mapping(" ", null, "ROLE_"))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("exactly one");
+    }
+
+    @Test
+    void rejectsEmptyPathSegments() {
+        assertThatThrownBy(() -> ClaimAuthorityPlan.from(converter(mapping("realm_access..roles", null, "ROLE_"))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("realm_access..roles");
+    }
+
+    @Test
+    void missingOrOddlyTypedClaimsYieldNoAuthorities() {
+        ClaimAuthorityPlan plan = ClaimAuthorityPlan.from(converter(mapping("a.b.roles", null, "ROLE_")));
+
+        assertThat(names(plan, Map.of())).isEmpty();
+        assertThat(names(plan, Map.of("a", "not-a-map"))).isEmpty();
+        assertThat(names(plan, Map.of("a", Map.of("b", List.of("roles"))))).isEmpty();
+        assertThat(names(plan, Map.of("a", Map.of("b", Map.of("roles", 42))))).isEmpty();
+        assertThat(names(plan, Map.of("a", Map.of("b", Map.of("roles", Map.of("x", "y")))))).isEmpty();
+        assertThat(names(plan, Map.of("a", Map.of("b", Map.of("roles", Arrays.asList("ok", null, 7))))))
+                .containsExactlyInAnyOrder("ROLE_ok", "ROLE_7");
+    }
+
+    @Test
+    void extractKeepsOneSlotPerPath() {
+        ClaimAuthorityPlan plan = ClaimAuthorityPlan.defaults("app");
+
+        Object[] values = plan.extract(Map.of("scope", "openid", "realm_access", Map.of("roles", 1)));
+
+        assertThat(values).containsExactly("openid", null, null);
+    }
+
+    private static Set<String> names(ClaimAuthorityPlan plan, Map<String, Object> claims) {
+        return plan.authorities(plan.extract(claims)).stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toSet());
+    }
+
+    private static SsoSecurityProperties.Auth.Converter converter(SsoSecurityProperties.Auth.RoleMapping... mappings) {
+        SsoSecurityProperties.Auth.Converter converter = new SsoSecurityProperties.Auth.Converter();
+        converter.setRoleMappings(List.of(mappings));
+        return converter;
+    }
+
+    private static SsoSecurityProperties.Auth.RoleMapping mapping(String claim, String client, String prefix) {
+        SsoSecurityProperties.Auth.RoleMapping mapping = new SsoSecurityProperties.Auth.RoleMapping();
+        mapping.setClaim(claim);
+        mapping.setClient(client);
+        mapping.setPrefix(prefix);
+        return mapping;
+    }
+}
@@ -0,0 +1,90 @@
+package it.svent404.security.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompactRoleCodecTest {
+
+    private final CompactRoleCodec codec = new CompactRoleCodec(List.of("ROLE_USER", "ROLE_ADMIN", "ROLE_AUDIT"), 16);
+
+    @Test
+    void dictionaryRolesBecomeBitsAndOthersStayNames() {
+        CompactRoleCodec.Encoded encoded = codec.encode(List.of("ROLE_AUDIT", "ROLE_GUEST", "ROLE_USER"));
+
+        assertThat(encoded.bits()).isEqualTo(0b101);
+        assertThat(encoded.others()).containsExactly("ROLE_GUEST");
+
+        CompactRoleCodec.Roles roles = codec.decode(encoded.bits(), codec.fingerprint(), encoded.others());
+        assertThat(roles.names()).containsExactly("ROLE_USER", "ROLE_AUDIT", "ROLE_GUEST");
+        assertThat(roles.authorities()).extracting(GrantedAuthority::getAuthority)
+                .containsExactly("ROLE_USER", "ROLE_AUDIT", "ROLE_GUEST");
+    }
+
+    @Test
+    void sameCombinationSharesOneDecodedList() {
+        CompactRoleCodec.Roles first = codec.decode(0b11, codec.fingerprint(), List.of());
+        CompactRoleCodec.Roles second = codec.decode(0b11, codec.fingerprint(), List.of());
+
+        assertThat(second).isSameAs(first);
+        assertThat(codec.decode(0b01, codec.fingerprint(), List.of())).isNotSameAs(first);
+    }
+
+    @Test
+    void bitsFromAnotherDictionaryAreRefused() {
+        CompactRoleCodec reordered = new CompactRoleCodec(List.of("ROLE_ADMIN", "ROLE_USER", "ROLE_AUDIT"), 16);
+        assertThat(reordered.fingerprint()).isNotEqualTo(codec.fingerprint());
+
+        assertThatThrownBy(() -> codec.decode(0b01, reordered.fingerprint(), List.of()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("different dictionary");
+        assertThatThrownBy(() -> codec.decode(0b01, null, List.of()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void tokenWithoutBitsDoesNotNeedTheFingerprint() {
+        assertThat(codec.decode(0, "other", List.of("ROLE_GUEST")).names()).containsExactly("ROLE_GUEST");
+    }
+
+    @Test
+    void bitsPastTheEndOfTheDictionaryAreRefused() {
+        assertThatThrownBy(() -> codec.decode(0b1000, codec.fingerprint(), List.of()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("outside the dictionary");
+        assertThatThrownBy(() -> codec.decode(Long.MIN_VALUE, codec.fingerprint(), List.of()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("outside the dictionary");
+    }
+
+    @Test
+    void fullDictionaryUsesEveryBit() {
+        List<String> dictionary = new ArrayList<>();
+        for (int i = 0; i < CompactRoleCodec.MAX_ROLES; i++) {
+            dictionary.add("ROLE_" + i);
+        }
+        CompactRoleCodec full = new CompactRoleCodec(dictionary, 16);
+
+        assertThat(full.decode(Long.MIN_VALUE, full.fingerprint(), List.of()).names()).containsExactly("ROLE_63");
+        assertThat(full.decode(-1L, full.fingerprint(), List.of()).names()).hasSize(CompactRoleCodec.MAX_ROLES);
+    }
+
+    @Test
+    void rejectsOversizedOrDuplicateDictionaries() {
+        List<String> tooMany = new ArrayList<>();
+        for (int i = 0; i <= CompactRoleCodec.MAX_ROLES; i++) {
+            tooMany.add("ROLE_" + i);
+        }
+
+        assertThatThrownBy(() -> new CompactRoleCodec(tooMany, 16))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new CompactRoleCodec(List.of("ROLE_USER", "ROLE_USER"), 16))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("ROLE_USER");
+    }
+}
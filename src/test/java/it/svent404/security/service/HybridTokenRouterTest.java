@@ -0,0 +1,96 @@
+package it.svent404.security.service;
+
+import it.svent404.security.key.SigningKeyRing;
+import it.svent404.security.metrics.SsoMetrics;
+import it.svent404.security.properties.SsoSecurityProperties;
+import it.svent404.security.service.HybridTokenRouter.Route;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HybridTokenRouterTest {
+
+    private static final String IDP = "https://idp.example/realms/test";
+
+    private final SigningKeyRing localKeys = SigningKeyRing.from(jwt(), Clock.systemUTC());
+    private final HybridTokenRouter router = new HybridTokenRouter(localKeys, List.of(IDP), SsoMetrics.NOOP);
+
+    @Test
+    void localKidRoutesLocallyWhateverTheIssuer() {
+        assertThat(router.route(token("{\"alg\":\"HS256\",\"kid\":\"" + SigningKeyRing.HMAC_KEY_ID + "\"}",
+                "{\"iss\":\"" + IDP + "\"}"))).isEqualTo(Route.LOCAL);
+    }
+
+    @Test
+    void otherKidsRouteByIssuer() {
+        assertThat(router.route(token("{\"kid\":\"idp-key\"}", "{\"sub\":\"a\",\"iss\":\"" + IDP + "\"}")))
+                .isEqualTo(Route.OAUTH2);
+        assertThat(router.route(token("{\"kid\":\"idp-key\"}", "{\"iss\":\"https://evil.example\"}")))
+                .isEqualTo(Route.UNKNOWN);
+        assertThat(router.route(token("{\"kid\":\"idp-key\"}", "{\"sub\":\"a\"}"))).isEqualTo(Route.UNKNOWN);
+    }
+
+    @Test
+    void retiredLocalKidRoutesByTheLocalIssuer() {
+        assertThat(router.route(token("{\"kid\":\"retired-2025\"}", "{\"iss\":\"" + LocalJwtService.ISSUER + "\"}")))
+                .isEqualTo(Route.LOCAL);
+    }
+
+    @Test
+    void withoutConfiguredIssuersEveryOtherTokenGoesToTheIdp() {
+        HybridTokenRouter open = new HybridTokenRouter(localKeys, List.of(), SsoMetrics.NOOP);
+
+        assertThat(open.route(token("{\"kid\":\"idp-key\"}", "{\"iss\":\"https://any.example\"}")))
+                .isEqualTo(Route.OAUTH2);
+        assertThat(open.route(token("{\"kid\":\"idp-key\"}", "{}"))).isEqualTo(Route.OAUTH2);
+    }
+
+    @Test
+    void escapedIssuerIsUnescaped() {
+        String escaped = IDP.replace("/", "\\/");
+
+        assertThat(router.route(token("{\"kid\":\"idp-key\"}", "{\"iss\" : \"" + escaped + "\"}")))
+                .isEqualTo(Route.OAUTH2);
+        assertThat(router.route(token("{\"kid\":\"idp-key\"}", "{\"iss\":\"https:\\u002f\\u002fidp.example\"}")))
+                .isEqualTo(Route.UNKNOWN);
+    }
+
+    @Test
+    void nestedIssuerIsOnlyAHint() {
+        // the scan finds the first "iss" member, here the actor's; the decoder on the OAuth2
+        // path still checks the top-level claim
+        String token = token("{\"kid\":\"idp-key\"}",
+                "{\"act\":{\"iss\":\"" + IDP + "\"},\"iss\":\"https://evil.example\"}");
+
+        assertThat(router.route(token)).isEqualTo(Route.OAUTH2);
+    }
+
+    @Test
+    void malformedTokensAreUnknown() {
+        assertThat(router.route("no-dots")).isEqualTo(Route.UNKNOWN);
+        assertThat(router.route("one.dot")).isEqualTo(Route.UNKNOWN);
+        assertThat(router.route("!!!.@@@.sig")).isEqualTo(Route.UNKNOWN);
+        assertThat(router.route(base64("{\"kid\":\"idp-key\"}") + ".%%%.sig")).isEqualTo(Route.UNKNOWN);
+        assertThat(router.route(token("{\"kid\":42}", "{\"iss\":42}"))).isEqualTo(Route.UNKNOWN);
+        assertThat(router.route(token("{\"kid\":\"idp-key\"}", "{\"iss\":\"" + IDP))).isEqualTo(Route.UNKNOWN);
+    }
+
+    private static String token(String header, String payload) {
+        return base64(header) + "." + base64(payload) + ".signature";
+    }
+
+    private static String base64(String json) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static SsoSecurityProperties.Jwt jwt() {
+        SsoSecurityProperties.Jwt jwt = new SsoSecurityProperties.Jwt();
+        jwt.setSecret("test-secret-test-secret-test-secret-test-secret");
+        return jwt;
+    }
+}
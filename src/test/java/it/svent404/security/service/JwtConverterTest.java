@@ -0,0 +1,84 @@
+package it.svent404.security.service;
+
+import it.svent404.security.metrics.SsoMetrics;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JwtConverterTest {
+
+    @Test
+    void principalIsTheConfiguredClaim() {
+        Jwt jwt = jwt("alice", List.of("user"));
+
+        assertThat(new JwtConverter(null, "app").convert(jwt).getName()).isEqualTo("sub-alice");
+        assertThat(new JwtConverter("preferred_username", "app").convert(jwt).getName()).isEqualTo("alice");
+    }
+
+    @Test
+    void cachedAndUncachedConversionsAgree() {
+        JwtConverter uncached = new JwtConverter(null, ClaimAuthorityPlan.defaults("app"), 0, SsoMetrics.NOOP);
+        JwtConverter cached = new JwtConverter(null, ClaimAuthorityPlan.defaults("app"), 10, SsoMetrics.NOOP);
+        Jwt jwt = jwt("alice", List.of("user", "admin"));
+
+        assertThat(cached.convert(jwt).getAuthorities())
+                .containsExactlyInAnyOrderElementsOf(uncached.convert(jwt).getAuthorities())
+                .extracting(GrantedAuthority::getAuthority)
+                .containsExactlyInAnyOrder("SCOPE_openid", "ROLE_user", "ROLE_admin");
+    }
+
+    @Test
+    void tokensWithTheSameRolesShareOneCacheEntry() {
+        JwtConverter converter = new JwtConverter(null, ClaimAuthorityPlan.defaults("app"), 10, SsoMetrics.NOOP);
+
+        AbstractAuthenticationToken alice = converter.convert(jwt("alice", List.of("user")));
+        AbstractAuthenticationToken bob = converter.convert(jwt("bob", List.of("user")));
+        assertThat(converter.cachedAuthoritySets()).isEqualTo(1);
+
+        AbstractAuthenticationToken carol = converter.convert(jwt("carol", List.of("user", "admin")));
+        assertThat(converter.cachedAuthoritySets()).isEqualTo(2);
+
+        assertThat(bob.getName()).isEqualTo("sub-bob");
+        assertThat(bob.getAuthorities()).containsExactlyInAnyOrderElementsOf(alice.getAuthorities());
+        assertThat(carol.getAuthorities()).hasSize(3);
+    }
+
+    @Test
+    void fullCacheStartsOver() {
+        JwtConverter converter = new JwtConverter(null, ClaimAuthorityPlan.defaults("app"), 2, SsoMetrics.NOOP);
+
+        converter.convert(jwt("alice", List.of("a")));
+        converter.convert(jwt("alice", List.of("b")));
+        assertThat(converter.cachedAuthoritySets()).isEqualTo(2);
+
+        AbstractAuthenticationToken c = converter.convert(jwt("alice", List.of("c")));
+        assertThat(converter.cachedAuthoritySets()).isEqualTo(1);
+        assertThat(c.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+                .containsExactlyInAnyOrder("SCOPE_openid", "ROLE_c");
+    }
+
+    @Test
+    void cacheIsOffByDefault() {
+        JwtConverter converter = new JwtConverter(null, "app");
+
+        converter.convert(jwt("alice", List.of("user")));
+
+        assertThat(converter.cachedAuthoritySets()).isZero();
+    }
+
+    private static Jwt jwt(String user, List<String> roles) {
+        return Jwt.withTokenValue("token-" + user)
+                .header("alg", "RS256")
+                .subject("sub-" + user)
+                .claim("preferred_username", user)
+                .claim("scope", "openid")
+                .claim("realm_access", Map.of("roles", roles))
+                .build();
+    }
+}
@@ -0,0 +1,209 @@
+package it.svent404.security.service;
+
+import it.svent404.security.key.SigningKeyRing;
+import it.svent404.security.metrics.SsoMetrics;
+import it.svent404.security.model.response.IntrospectionResponse;
+import it.svent404.security.properties.SsoSecurityProperties;
+import it.svent404.security.repository.InMemoryTokenRepository;
+import it.svent404.security.repository.RefreshTokenStore;
+import it.svent404.security.support.TokenDigest;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.FactorGrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LocalJwtServiceTest {
+
+    private static final String SECRET = "test-secret-test-secret-test-secret-test-secret";
+
+    private final Clock clock = Clock.fixed(Instant.parse("2026-01-01T10:00:00Z"), ZoneOffset.UTC);
+    private final LocalJwtService service = new LocalJwtService(properties(), clock, new InMemoryTokenRepository(clock));
+
+    @Test
+    void tokensIssuedInTheSameSecondDiffer() {
+        String first = service.generate(user()).accessToken();
+        String second = service.generate(user()).accessToken();
+
+        assertThat(first).isNotEqualTo(second);
+    }
+
+    @Test
+    void loggingOutOneSessionKeepsTheOtherValid() {
+        String first = service.generate(user()).accessToken();
+        String second = service.generate(user()).accessToken();
+
+        service.invalidate(first);
+
+        assertThat(service.validate(first)).isFalse();
+        assertThat(service.validate(second)).isTrue();
+    }
+
+    @Test
+    void refreshKeepsASessionWhoseUserIsUnchanged() {
+        LocalJwtService service = withUsers(User.withUsername("alice").password("{noop}x").roles("USER").build());
+        String refreshToken = service.generate(loggedIn()).refreshToken();
+
+        assertThat(service.refresh(refreshToken).accessToken()).isNotBlank();
+    }
+
+    @Test
+    void refreshEndsTheSessionOfADisabledUser() {
+        LocalJwtService service = withUsers(User.withUsername("alice").password("{noop}x").roles("USER").disabled(true).build());
+        String refreshToken = service.generate(loggedIn()).refreshToken();
+
+        assertThatThrownBy(() -> service.refresh(refreshToken)).isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    void refreshEndsTheSessionOfADeletedUser() {
+        LocalJwtService service = withUsers();
+        String refreshToken = service.generate(loggedIn()).refreshToken();
+
+        assertThatThrownBy(() -> service.refresh(refreshToken)).isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    void refreshEndsTheSessionWhenARoleWasWithdrawn() {
+        InMemoryUserDetailsManager users = new InMemoryUserDetailsManager(
+                User.withUsername("alice").password("{noop}x").roles("USER").build());
+        LocalJwtService service = withUsers(users);
+        String refreshToken = service.generate(loggedIn()).refreshToken();
+
+        users.updateUser(User.withUsername("alice").password("{noop}x").roles("GUEST").build());
+
+        assertThatThrownBy(() -> service.refresh(refreshToken)).isInstanceOf(BadCredentialsException.class);
+        users.updateUser(User.withUsername("alice").password("{noop}x").roles("USER").build());
+        assertThatThrownBy(() -> service.refresh(refreshToken)).isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    void batchWithANullTokenIsRejectedBeforeAnyWork() {
+        List<String> tokens = Arrays.asList(service.generate(user()).accessToken(), null);
+
+        assertThatThrownBy(() -> service.introspectAll(tokens)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.invalidateAll(tokens)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(service.validate(tokens.getFirst())).isTrue();
+    }
+
+    @Test
+    void tokenWhoseCheckFailsIsReportedInactiveWithoutFailingTheBatch() {
+        String broken = service.generate(user()).accessToken();
+        String healthy = service.generate(loggedIn()).accessToken();
+        TokenDigest brokenDigest = TokenDigest.of(broken);
+        LocalJwtService service = new LocalJwtService(properties(), clock, new InMemoryTokenRepository(clock) {
+            @Override
+            public boolean isRevoked(TokenDigest tokenId) {
+                if (tokenId.equals(brokenDigest)) {
+                    throw new IllegalStateException("store unavailable");
+                }
+                return super.isRevoked(tokenId);
+            }
+        });
+
+        List<IntrospectionResponse> responses = service.introspectAll(List.of(broken, healthy));
+
+        assertThat(responses).extracting(IntrospectionResponse::active).containsExactly(false, true);
+    }
+
+    @Test
+    void compactTokenCarriesTheSameRolesAsTheDefaultProfile() {
+        LocalJwtService compact = new LocalJwtService(compactProperties(List.of("ROLE_USER", "ROLE_ADMIN")),
+                clock, new InMemoryTokenRepository(clock));
+        Authentication user = new UsernamePasswordAuthenticationToken("alice", null, List.of(
+                new SimpleGrantedAuthority("ROLE_ADMIN"), new SimpleGrantedAuthority("ROLE_GUEST")));
+
+        String token = compact.generate(user).accessToken();
+
+        assertThat(compact.verify(token).roles()).containsExactlyInAnyOrder("ROLE_ADMIN", "ROLE_GUEST");
+        Authentication authentication = compact.toAuthentication(token);
+        assertThat(authentication.getName()).isEqualTo("alice");
+        assertThat(authentication.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+                .containsExactlyInAnyOrder("ROLE_ADMIN", "ROLE_GUEST");
+        assertThat(((LocalJwtAuthentication) authentication).getRoles())
+                .containsExactlyInAnyOrder("ROLE_ADMIN", "ROLE_GUEST");
+    }
+
+    @Test
+    void compactTokenFromAnotherDictionaryIsRejected() {
+        LocalJwtService issuer = new LocalJwtService(compactProperties(List.of("ROLE_USER", "ROLE_ADMIN")),
+                clock, new InMemoryTokenRepository(clock));
+        LocalJwtService verifier = new LocalJwtService(compactProperties(List.of("ROLE_ADMIN", "ROLE_USER")),
+                clock, new InMemoryTokenRepository(clock));
+
+        String token = issuer.generate(user()).accessToken();
+
+        assertThat(verifier.validate(token)).isFalse();
+        assertThatThrownBy(() -> verifier.toAuthentication(token)).isInstanceOf(BadCredentialsException.class);
+        assertThatThrownBy(() -> service.toAuthentication(token)).isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    void lazyAuthenticationCannotHaveItsRolesChanged() {
+        Authentication user = new UsernamePasswordAuthenticationToken("alice", null, List.of(
+                new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("ROLE_ADMIN")));
+        String token = service.generate(user).accessToken();
+
+        LocalJwtAuthentication authentication = (LocalJwtAuthentication) service.toAuthentication(token);
+
+        assertThatThrownBy(() -> authentication.getRoles().add("ROLE_ROOT"))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> authentication.getRoles().set(0, "ROLE_ROOT"))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThat(authentication.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+                .containsExactlyInAnyOrder("ROLE_USER", "ROLE_ADMIN");
+    }
+
+    private LocalJwtService withUsers(UserDetails... users) {
+        return withUsers(new InMemoryUserDetailsManager(users));
+    }
+
+    private LocalJwtService withUsers(InMemoryUserDetailsManager users) {
+        SsoSecurityProperties props = properties();
+        return new LocalJwtService(props, clock, SigningKeyRing.from(props.getJwt(), clock),
+                new InMemoryTokenRepository(clock), new RefreshTokenStore(clock, 3600, 86_400),
+                null, users, SsoMetrics.NOOP);
+    }
+
+    /** Logged in with a password, as DaoAuthenticationProvider reports it. */
+    private static Authentication loggedIn() {
+        return new UsernamePasswordAuthenticationToken("alice", null, List.of(
+                new SimpleGrantedAuthority("ROLE_USER"),
+                FactorGrantedAuthority.fromAuthority(FactorGrantedAuthority.PASSWORD_AUTHORITY)));
+    }
+
+    private static Authentication user() {
+        return new UsernamePasswordAuthenticationToken("alice", null, List.of(new SimpleGrantedAuthority("ROLE_USER")));
+    }
+
+    private static SsoSecurityProperties compactProperties(List<String> dictionary) {
+        SsoSecurityProperties props = properties();
+        props.getJwt().getCompact().setEnabled(true);
+        props.getJwt().getCompact().setRoles(dictionary);
+        return props;
+    }
+
+    private static SsoSecurityProperties properties() {
+        SsoSecurityProperties.Jwt jwt = new SsoSecurityProperties.Jwt();
+        jwt.setSecret(SECRET);
+
+        SsoSecurityProperties props = new SsoSecurityProperties();
+        props.setMode("local");
+        props.setJwt(jwt);
+        return props;
+    }
+}
@@ -0,0 +1,91 @@
+package it.svent404.security.service;
+
+import it.svent404.security.metrics.SsoMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PasswordHashingExecutorTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger checks = new AtomicInteger();
+
+    /** Accepts "secret", holding every check until {@link #release} opens. */
+    private final AuthenticationManager manager = request -> {
+        checks.incrementAndGet();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (!"secret".equals(request.getCredentials())) {
+            throw new BadCredentialsException("Bad credentials");
+        }
+        return UsernamePasswordAuthenticationToken.authenticated(request.getName(), null, List.of());
+    };
+
+    private final PasswordHashingExecutor executor =
+            new PasswordHashingExecutor(manager, 2, 8, Duration.ofSeconds(5), 1, SsoMetrics.NOOP);
+
+    @AfterEach
+    void close() {
+        release.countDown();
+        executor.close();
+    }
+
+    @Test
+    void wrongPasswordsInFlightDoNotTurnAwayTheRightOne() throws Exception {
+        CompletableFuture<Authentication> attacker = executor.authenticate("alice", "guess");
+        CompletableFuture<Authentication> owner = executor.authenticate("alice", "secret");
+        release.countDown();
+
+        assertThat(owner.get(5, TimeUnit.SECONDS).getName()).isEqualTo("alice");
+        assertThatThrownBy(() -> attacker.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(BadCredentialsException.class);
+        assertThat(checks).hasValue(2);
+    }
+
+    @Test
+    void retriesWithTheSameCredentialsShareOneCheck() throws Exception {
+        CompletableFuture<Authentication> first = executor.authenticate("alice", "secret");
+        CompletableFuture<Authentication> retry = executor.authenticate("alice", "secret");
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS).getName()).isEqualTo("alice");
+        assertThat(retry.get(5, TimeUnit.SECONDS).getName()).isEqualTo("alice");
+        assertThat(checks).hasValue(1);
+        assertThat(executor.getCoalesced()).isEqualTo(1);
+    }
+
+    @Test
+    void checksBeyondTheQueueAreRejected() {
+        PasswordHashingExecutor small =
+                new PasswordHashingExecutor(manager, 1, 0, Duration.ofSeconds(5), 1, SsoMetrics.NOOP);
+        try {
+            small.authenticate("alice", "secret");
+            CompletableFuture<Authentication> rejected = small.authenticate("bob", "secret");
+
+            assertThatThrownBy(() -> rejected.get(5, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(PasswordCheckRejectedException.class);
+            assertThat(small.getQueueFullRejections()).isEqualTo(1);
+        } finally {
+            release.countDown();
+            small.close();
+        }
+    }
+}
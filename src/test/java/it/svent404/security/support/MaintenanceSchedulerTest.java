@@ -0,0 +1,49 @@
+package it.svent404.security.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MaintenanceSchedulerTest {
+
+    @Test
+    void runsTasksAtTheirInterval() throws InterruptedException {
+        CountDownLatch runs = new CountDownLatch(3);
+        try (MaintenanceScheduler scheduler = new MaintenanceScheduler()) {
+            scheduler.schedule("count", runs::countDown, Duration.ofMillis(5));
+
+            assertThat(runs.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+    }
+
+    @Test
+    void zeroOrNegativeIntervalTurnsTheTaskOff() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        try (MaintenanceScheduler scheduler = new MaintenanceScheduler()) {
+            scheduler.schedule("zero", runs::incrementAndGet, Duration.ZERO);
+            scheduler.schedule("negative", runs::incrementAndGet, Duration.ofSeconds(-1));
+
+            Thread.sleep(50);
+        }
+
+        assertThat(runs.get()).isZero();
+    }
+
+    @Test
+    void failingTaskKeepsRunning() throws InterruptedException {
+        CountDownLatch runs = new CountDownLatch(2);
+        try (MaintenanceScheduler scheduler = new MaintenanceScheduler()) {
+            scheduler.schedule("failing", () -> {
+                runs.countDown();
+                throw new IllegalStateException("boom");
+            }, Duration.ofMillis(5));
+
+            assertThat(runs.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+    }
+}
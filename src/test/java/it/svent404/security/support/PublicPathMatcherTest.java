@@ -0,0 +1,86 @@
+package it.svent404.security.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PublicPathMatcherTest {
+
+    private static final List<String> PATTERNS = List.of(
+            "/auth/token", "/auth/refresh", "/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html");
+
+    private final PublicPathMatcher matcher = PublicPathMatcher.of(PATTERNS);
+
+    @Test
+    void exactPatternMatchesOnlyThatPath() {
+        assertThat(matcher.matches("/auth/token")).isTrue();
+        assertThat(matcher.matches("/auth/token/")).isFalse();
+        assertThat(matcher.matches("/auth/tokens")).isFalse();
+        assertThat(matcher.matches("/auth/tok")).isFalse();
+        assertThat(matcher.matches("/auth")).isFalse();
+    }
+
+    @Test
+    void subtreeMatchesItsRootAndEverythingBelow() {
+        assertThat(matcher.matches("/swagger-ui")).isTrue();
+        assertThat(matcher.matches("/swagger-ui/")).isTrue();
+        assertThat(matcher.matches("/swagger-ui/index.html")).isTrue();
+        assertThat(matcher.matches("/v3/api-docs/swagger-config")).isTrue();
+    }
+
+    @Test
+    void subtreeDoesNotMatchSiblingsSharingItsPrefix() {
+        assertThat(matcher.matches("/swagger-uix")).isFalse();
+        assertThat(matcher.matches("/swagger-ui.htm")).isFalse();
+        assertThat(matcher.matches("/v3/api-docsx/secret")).isFalse();
+    }
+
+    @Test
+    void matchesFromAnOffsetPastTheContextPath() {
+        assertThat(matcher.matches("/app/auth/token", "/app".length())).isTrue();
+        assertThat(matcher.matches("/app/api/orders", "/app".length())).isFalse();
+    }
+
+    @Test
+    void rootSubtreeMatchesEveryPath() {
+        PublicPathMatcher everything = PublicPathMatcher.of(List.of("/**"));
+
+        assertThat(everything.matches("/")).isTrue();
+        assertThat(everything.matches("/api/orders")).isTrue();
+    }
+
+    @Test
+    void agreesWithAntPathMatcherOnSupportedPatterns() {
+        AntPathMatcher ant = new AntPathMatcher();
+        List<String> paths = List.of("/", "/auth/token", "/auth/token/", "/auth/refresh", "/auth/logout",
+                "/swagger-ui", "/swagger-ui/", "/swagger-ui/a/b", "/swagger-ui.html", "/swagger-uix",
+                "/v3/api-docs", "/v3/api-docs/x", "/v3/api-doc", "/api/orders");
+
+        for (String path : paths) {
+            boolean expected = PATTERNS.stream().anyMatch(pattern -> ant.match(pattern, path));
+            assertThat(matcher.matches(path)).as(path).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void combinesBuiltInAndConfiguredPatterns() {
+        PublicPathMatcher combined = PublicPathMatcher.of(List.of("/auth/token"), List.of("/health/**"));
+
+        assertThat(combined.patterns()).containsExactly("/auth/token", "/health/**");
+        assertThat(combined.matches("/health/liveness")).isTrue();
+    }
+
+    @Test
+    void rejectsUnsupportedPatterns() {
+        assertThatThrownBy(() -> PublicPathMatcher.of(List.of("/api/*/public")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PublicPathMatcher.of(List.of("auth/token")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PublicPathMatcher.of(List.of("/docs/*")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,63 @@
+package it.svent404.security.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UpgradeAwarePasswordEncoderTest {
+
+    private static final String UNPREFIXED_HASH = new BCryptPasswordEncoder(4).encode("secret");
+
+    private final AtomicInteger encodes = new AtomicInteger();
+
+    @Test
+    void loginDoesNotEncodeAgainWhenUpgradesCannotBeStored() {
+        DaoAuthenticationProvider provider = provider(new UpgradeAwarePasswordEncoder(countingEncoder(), () -> false));
+
+        // the first login also hashes the provider's timing-attack dummy password
+        provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("alice", "secret"));
+        encodes.set(0);
+        provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("alice", "secret"));
+
+        assertThat(encodes).hasValue(0);
+    }
+
+    @Test
+    void outdatedHashesAreReportedWhenUpgradesAreStored() {
+        PasswordEncoder encoder = new UpgradeAwarePasswordEncoder(countingEncoder(), () -> true);
+
+        assertThat(encoder.upgradeEncoding(UNPREFIXED_HASH)).isTrue();
+        assertThat(encoder.matches("secret", UNPREFIXED_HASH)).isTrue();
+    }
+
+    private DaoAuthenticationProvider provider(PasswordEncoder encoder) {
+        UserDetails alice = User.withUsername("alice").password(UNPREFIXED_HASH).roles("USER").build();
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider(new InMemoryUserDetailsManager(alice));
+        provider.setPasswordEncoder(encoder);
+        return provider;
+    }
+
+    private PasswordEncoder countingEncoder() {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(4) {
+            @Override
+            protected String encodeNonNullPassword(String rawPassword) {
+                encodes.incrementAndGet();
+                return super.encodeNonNullPassword(rawPassword);
+            }
+        };
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return encoder;
+    }
+}